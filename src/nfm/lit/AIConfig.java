@@ -9,6 +9,12 @@ public class AIConfig {
     public static final float DEFAULT_AI_SPEED = 1.0f;
     public static final float DEFAULT_SPEED_DEC = 2.0f;
     public static final float DEFAULT_DAMAGE_THRESHOLD = 100.0f;
+
+    // Cars far from the player that make their AI choices each tick, the others keep steering toward their
+    // last ones, 0 for every car every tick (see AIScheduler), -Dnfm.aibudget=<n>
+    public static final int AI_BUDGET = Integer.getInteger("nfm.aibudget", 0);
+    // Cars nearer the player than this always make their choices every tick
+    public static final int AI_NEAR = Integer.getInteger("nfm.ainear", 20000);
     
     private AIConfig() {}
 }
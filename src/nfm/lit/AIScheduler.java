@@ -0,0 +1,130 @@
+package nfm.lit;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decides which AI cars make their choices on a tick. Every car runs
+ * {@link Control#preform} every tick, which steers and throttles toward the
+ * point and the car it has chosen and flies the stunt it planned. What a car
+ * that is not due skips is the choosing: its status (attacks, clearance,
+ * ramps, stunt plans, fixing), the point to head for and the start of a
+ * stunt. With no budget every car is due every tick, exactly as the plain
+ * loop. With a budget, cars within {@link AIConfig#AI_NEAR} of the car the
+ * race is watched from are due every tick, and at most {@code budget} of the
+ * cars further out are, taken in turn so each far car chooses every few ticks.
+ * <p>
+ * Nearness is measured from a car rather than from what is on screen, so the
+ * schedule, and so the race, does not depend on what is drawn. A race with no
+ * car to watch from, such as a headless one, counts every car as far.
+ * <p>
+ * In parallel mode the cars are split over the simulation's ForkJoinPool in
+ * chunks. A car's preform reads the stage and what checkstat left in
+ * CheckPoints, none of which changes during the AI phase, writes only its own
+ * Control and Madness, and draws from its own random sequence, so the result
+ * is the same as the serial loop.
+ */
+public class AIScheduler {
+    /* cars per task */
+    private static final int CHUNK = 4;
+
+    private final int budget;
+    private final int near;
+    private final boolean parallel;
+    /* far car to start from next tick */
+    private int next = 0;
+    private boolean[] due = new boolean[0];
+
+    private Control[] u;
+    private Madness[] madness;
+    private ContO[] conto;
+    private CheckPoints checkpoints;
+    private Trackers trackers;
+    private int count;
+
+    public AIScheduler(int budget, int near, boolean parallel) {
+        this.budget = budget;
+        this.near = near / 100;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Runs the AI of cars {@code from} to {@code count - 1}, those that are
+     * due making their choices.
+     *
+     * @param view the car nearness is measured from, -1 to count every car as far
+     */
+    public void preform(Control[] u, Madness[] madness, ContO[] conto, CheckPoints checkpoints, Trackers trackers,
+                        int from, int count, int view) {
+        if (due.length < count) {
+            due = new boolean[count];
+        }
+        schedule(conto, from, count, view);
+        if (!parallel || count - from <= CHUNK) {
+            for (int i = from; i < count; i++) {
+                u[i].preform(madness[i], conto[i], checkpoints, trackers, count, due[i]);
+            }
+            return;
+        }
+        this.u = u;
+        this.madness = madness;
+        this.conto = conto;
+        this.checkpoints = checkpoints;
+        this.trackers = trackers;
+        this.count = count;
+        DrivePhase.pool().invoke(new Cars(from, count));
+    }
+
+    /* marks the cars that are due */
+    private void schedule(ContO[] conto, int from, int count, int view) {
+        if (budget <= 0) {
+            for (int i = from; i < count; i++) {
+                due[i] = true;
+            }
+            return;
+        }
+        int range = near * near;
+        for (int i = from; i < count; i++) {
+            due[i] = view != -1
+                    && Utility.py(conto[i].x / 100, conto[view].x / 100, conto[i].z / 100, conto[view].z / 100) < range;
+        }
+        if (next < from || next >= count) {
+            next = from;
+        }
+        int left = budget;
+        int i = next;
+        for (int k = from; k < count && left > 0; k++) {
+            if (!due[i]) {
+                due[i] = true;
+                left--;
+                next = i + 1 < count ? i + 1 : from;
+            }
+            if (++i == count) {
+                i = from;
+            }
+        }
+    }
+
+    /* splits the car range until a chunk is left */
+    private class Cars extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        Cars(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                for (int i = from; i < to; i++) {
+                    u[i].preform(madness[i], conto[i], checkpoints, trackers, count, due[i]);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Cars(from, mid), new Cars(mid, to));
+            }
+        }
+    }
+}
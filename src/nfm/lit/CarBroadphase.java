@@ -0,0 +1,214 @@
+package nfm.lit;
+
+/**
+ * Sweep-and-prune broadphase for car-to-car contact. Cars are sorted along x
+ * by their {@link Madness#reach} interval, and only pairs whose reach spheres
+ * overlap get their two Madness.colide calls. The calls run in the same
+ * order as the old all-pairs loop, so the result is unchanged. The sort
+ * order is kept between frames and fixed up by insertion sort.
+ * <p>
+ * Reach is worked out from the velocities at the start of the pass. A
+ * colide call that pushes wheels changes the two cars' velocities, so their
+ * reach is worked out again and only their pairs are swept again; any pair
+ * that now overlaps joins the calls still to come.
+ */
+public class CarBroadphase {
+    private int[] order = new int[0];
+    private float[] lo = new float[0];
+    private float[] hi = new float[0];
+    private float[] rad = new float[0];
+    private int[] calls = new int[0];
+    private int[] sorted = new int[0];
+    private int[] first = new int[1];
+    private boolean[] cand = new boolean[0];
+    /* pass in which each unordered pair was last a candidate */
+    private int[] last = new int[0];
+    private int pass = 0;
+    private int n = 0;
+    /* the largest reach this pass, bounding how far below a car's lo an overlapping car's lo can be */
+    private float maxrad = 0.0F;
+    private float comprad = 0.0F;
+
+    public void colide(Madness[] madness, ContO[] conto, int count) {
+        if (count != n) {
+            resize(count);
+        }
+        pass++;
+        comprad = 0.0F;
+        for (int i = 0; i < n; i++) {
+            comprad = Math.max(comprad, madness[i].stat.comprad);
+        }
+        maxrad = 0.0F;
+        for (int i = 0; i < n; i++) {
+            bound(madness, conto, i);
+        }
+        resort();
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int a = order[i];
+            for (int j = i + 1; j < n && lo[order[j]] <= hi[a]; j++) {
+                int b = order[j];
+                if (!overlap(conto, a, b)) {
+                    continue;
+                }
+                int pair = Math.min(a, b) * n + Math.max(a, b);
+                if (last[pair] != pass - 1) {
+                    /* apart since the last pass, where colide would have dropped the contact */
+                    madness[a].release(madness[b]);
+                    madness[b].release(madness[a]);
+                }
+                last[pair] = pass;
+                cand[a * n + b] = true;
+                cand[b * n + a] = true;
+                calls[m++] = a * n + b;
+                calls[m++] = b * n + a;
+            }
+        }
+        sort(m);
+        for (int c = 0; c < m; c++) {
+            int a = sorted[c] / n;
+            int b = sorted[c] % n;
+            if (madness[a].colide(conto[a], madness[b], conto[b])) {
+                bound(madness, conto, a);
+                bound(madness, conto, b);
+                resort();
+                m = rejoin(madness, conto, a, c, m);
+                m = rejoin(madness, conto, b, c, m);
+            }
+        }
+        for (int c = 0; c < m; c++) {
+            cand[sorted[c]] = false;
+        }
+    }
+
+    /* works out car i's reach and x interval from its velocities now */
+    private void bound(Madness[] madness, ContO[] conto, int i) {
+        rad[i] = madness[i].reach(conto[i], comprad);
+        lo[i] = conto[i].x - rad[i];
+        hi[i] = conto[i].x + rad[i];
+        maxrad = Math.max(maxrad, rad[i]);
+    }
+
+    /* insertion sorts order by lo, which is one pass when little has moved */
+    private void resort() {
+        for (int i = 1; i < n; i++) {
+            int k = order[i];
+            int j = i - 1;
+            while (j >= 0 && lo[order[j]] > lo[k]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = k;
+        }
+    }
+
+    private boolean overlap(ContO[] conto, int a, int b) {
+        float dx = conto[a].x - conto[b].x;
+        float dy = conto[a].y - conto[b].y;
+        float dz = conto[a].z - conto[b].z;
+        float r = rad[a] + rad[b];
+        return dx * dx + dy * dy + dz * dz <= r * r;
+    }
+
+    /**
+     * Sweeps car {@code a} again after its reach grew, once call {@code c}
+     * of the {@code m} in {@link #sorted} has run. A pair that overlaps now
+     * but was not a candidate has its calls still to come put in their place
+     * in the old loop order; a call already passed by was one the old loop
+     * made with the cars apart, so only its release is done. Returns the new
+     * number of calls.
+     */
+    private int rejoin(Madness[] madness, ContO[] conto, int a, int c, int m) {
+        float from = lo[a] - 2 * maxrad;
+        int i = 0;
+        int j = n;
+        while (i < j) {
+            int mid = (i + j) >>> 1;
+            if (lo[order[mid]] < from) {
+                i = mid + 1;
+            } else {
+                j = mid;
+            }
+        }
+        for (; i < n && lo[order[i]] <= hi[a]; i++) {
+            int b = order[i];
+            if (b == a || cand[a * n + b] || cand[b * n + a] || hi[b] < lo[a] || !overlap(conto, a, b)) {
+                continue;
+            }
+            int pair = Math.min(a, b) * n + Math.max(a, b);
+            boolean apart = last[pair] != pass - 1;
+            last[pair] = pass;
+            m = join(madness, a * n + b, c, m, apart);
+            m = join(madness, b * n + a, c, m, apart);
+        }
+        return m;
+    }
+
+    /* places one ordered call after position c, or releases it if its turn has gone */
+    private int join(Madness[] madness, int call, int c, int m, boolean apart) {
+        if (call < sorted[c] || apart) {
+            madness[call / n].release(madness[call % n]);
+        }
+        if (call < sorted[c]) {
+            return m;
+        }
+        int k = m;
+        while (k > c + 1 && sorted[k - 1] > call) {
+            sorted[k] = sorted[k - 1];
+            k--;
+        }
+        sorted[k] = call;
+        cand[call] = true;
+        return m + 1;
+    }
+
+    /**
+     * Sorts the first {@code m} calls into {@link #sorted}: bucketed by the
+     * first car, then insertion sorted within each bucket, which only holds
+     * that car's few neighbours. Allocates nothing, unlike Arrays.sort.
+     */
+    private void sort(int m) {
+        for (int a = 0; a <= n; a++) {
+            first[a] = 0;
+        }
+        for (int c = 0; c < m; c++) {
+            first[calls[c] / n + 1]++;
+        }
+        for (int a = 0; a < n; a++) {
+            first[a + 1] += first[a];
+        }
+        for (int c = 0; c < m; c++) {
+            sorted[first[calls[c] / n]++] = calls[c];
+        }
+        /* each first[a] now points at the end of bucket a */
+        for (int a = 0; a < n; a++) {
+            int lo = a == 0 ? 0 : first[a - 1];
+            for (int c = lo + 1; c < first[a]; c++) {
+                int v = sorted[c];
+                int k = c;
+                while (k > lo && sorted[k - 1] > v) {
+                    sorted[k] = sorted[k - 1];
+                    k--;
+                }
+                sorted[k] = v;
+            }
+        }
+    }
+
+    private void resize(int count) {
+        n = count;
+        order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        lo = new float[n];
+        hi = new float[n];
+        rad = new float[n];
+        calls = new int[n * n];
+        sorted = new int[n * n];
+        first = new int[n + 1];
+        cand = new boolean[n * n];
+        last = new int[n * n];
+        pass = 0;
+    }
+}
@@ -0,0 +1,30 @@
+package nfm.lit;
+
+/**
+ * The sounds Madness makes while a car drives. XtGraphics plays them in
+ * the game; a {@link HeadlessRace} has nothing to play them on and uses
+ * {@link #NONE}. A Madness given {@link #NONE} has no game around it either,
+ * so it also leaves the checkpoint shown by the HUD in Medium untouched.
+ */
+public interface CarSounds {
+    CarSounds NONE = new CarSounds() {
+        @Override
+        public void crash(float f, int i) {
+        }
+
+        @Override
+        public void skid(int i, float f) {
+        }
+
+        @Override
+        public void carfixed() {
+        }
+    };
+
+    void crash(float f, int i);
+
+    void skid(int i, float f);
+
+    /** The player's car has been fixed. */
+    void carfixed();
+}
@@ -56,6 +56,92 @@ class CheckPoints {
     public final int[] omxz = new int[StageConfig.MAX_CARS];
     public int catchfin = 0;
     private int postwo = 0;
+    // What the AI looks up about the checkpoints, built by index()
+    public StageNav nav;
+    // Cars from first to last as of the last checkstat, kept so the next one re-sorts little
+    private int[] order = new int[0];
+    // Each car's next real checkpoint and squared distance to it, in py's hundredths
+    private final int[] ahead = new int[StageConfig.MAX_CARS];
+    private final int[] gap = new int[StageConfig.MAX_CARS];
+
+    /** Builds {@link #nav} from the checkpoints and fix points read so far. */
+    public void index() {
+        nav = new StageNav(this);
+    }
+
+    /**
+     * Sets {@link #pos} from {@link #clear} and, among cars on the same
+     * clear, how near each is to its next real checkpoint. The cars are kept
+     * in {@link #order} from one tick to the next and insertion sorted, so on
+     * most ticks this is a single pass. The result is the one the old
+     * comparison of every pair gave: within a run of cars on the same clear
+     * that head for the same checkpoint, the nearer goes first and on a tie
+     * the lower car. A run whose cars head for different checkpoints (wasted
+     * cars, mostly) is still compared pair by pair against the lower car's
+     * checkpoint, as before.
+     */
+    private void rank(Madness amadness[], ContO aconto[], int ncars) {
+        if (order.length != ncars) {
+            order = new int[ncars];
+            for (int i = 0; i < ncars; i++) {
+                order[i] = i;
+            }
+        }
+        for (int i = 0; i < ncars; i++) {
+            int j = nav.next(amadness[i].pcleared);
+            ahead[i] = j;
+            gap[i] = j == -1 ? 0 : Utility.py(aconto[i].x / 100, x[j] / 100, aconto[i].z / 100, z[j] / 100);
+        }
+        for (int k = 1; k < ncars; k++) {
+            int car = order[k];
+            int j = k - 1;
+            while (j >= 0 && before(car, order[j])) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = car;
+        }
+        for (int a = 0; a < ncars; ) {
+            int b = a + 1;
+            boolean same = true;
+            while (b < ncars && clear[order[b]] == clear[order[a]]) {
+                if (ahead[order[b]] != ahead[order[a]]) {
+                    same = false;
+                }
+                b++;
+            }
+            for (int k = a; k < b; k++) {
+                pos[order[k]] = same ? k : a;
+            }
+            if (!same) {
+                for (int k = a; k < b; k++) {
+                    for (int m = k + 1; m < b; m++) {
+                        int i = Math.min(order[k], order[m]);
+                        int l = Math.max(order[k], order[m]);
+                        int j = ahead[i];
+                        if (j != -1 && Utility.py(aconto[i].x / 100, x[j] / 100, aconto[i].z / 100, z[j] / 100)
+                                > Utility.py(aconto[l].x / 100, x[j] / 100, aconto[l].z / 100, z[j] / 100)) {
+                            pos[i]++;
+                        } else {
+                            pos[l]++;
+                        }
+                    }
+                }
+            }
+            a = b;
+        }
+    }
+
+    /* whether car a is placed before car b */
+    private boolean before(int a, int b) {
+        if (clear[a] != clear[b]) {
+            return clear[a] > clear[b];
+        }
+        if (gap[a] != gap[b]) {
+            return gap[a] < gap[b];
+        }
+        return a < b;
+    }
 
     // Getters and setters for fields accessed by other classes
     public int[] getX() { return x; }
@@ -104,33 +190,7 @@ class CheckPoints {
                     clear[i] = -1;
                 }
             } while (++i < ncars);
-            i = 0;
-            do {
-                for (int l = i + 1; l < ncars; l++) {
-                    if (clear[i] != clear[l]) {
-                        if (clear[i] < clear[l]) {
-                            pos[i]++;
-                        } else {
-                            pos[l]++;
-                        }
-                    } else {
-                        int j1;
-                        for (j1 = amadness[i].pcleared + 1; typ[j1] <= 0; ) {
-                            if (++j1 == n) {
-                                j1 = 0;
-                            }
-                        }
-
-                        if (Utility.py(aconto[i].x / 100, x[j1] / 100, aconto[i].z / 100, z[j1] / 100) > Utility.py(aconto[l].x / 100,
-                                x[j1] / 100, aconto[l].z / 100, z[j1] / 100)) {
-                            pos[i]++;
-                        } else {
-                            pos[l]++;
-                        }
-                    }
-                }
-
-            } while (++i < ncars);
+            rank(amadness, aconto, ncars);
             if (stage > 2) {
                 int j = 0;
                 do {
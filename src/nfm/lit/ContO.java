@@ -7,6 +7,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * models
@@ -70,6 +71,238 @@ public class ContO {
 
     private boolean bool16 = false;
 
+    /* plane draw order, kept between frames so the depth sort is nearly sorted on entry */
+    private int[] pord;
+
+    /* candidate tracker ids from Trackers.near, shared by the draw path */
+    private static int[] tnear;
+
+    /* coarsest level of detail each plane is still drawn at, shared with the model, see lodlevels() */
+    private byte[] lodcut;
+    /* projected diameters in pixels below which the coarser levels are used */
+    private static final int LOD1_PX = 96;
+    private static final int LOD2_PX = 32;
+
+    /* packed per-plane vertex slots, after object rotation and camera xz (vbx/vby/vbz) and after camera zy (vby2/vbz2) */
+    private int[] vbx;
+    private int[] vby;
+    private int[] vbz;
+    private int[] vby2;
+    private int[] vbz2;
+    /* per-plane scratch for the pretransformed draw, as long as the largest plane: x, z, y, screen x, screen y */
+    private int[][] vsc;
+
+    /**
+     * Transforms the vertices of every plane that can share the object's
+     * transform into the packed buffers, with one matrix composed from the
+     * object xy, zy and xz rotations and the camera xz rotation, then the
+     * camera zy rotation. Sines and cosines are looked up once per object
+     * instead of once per plane and rotation.
+     */
+    private void transform(int lod) {
+        if (vbx == null) {
+            int slots = 0;
+            int most = 0;
+            for (int i = 0; i < npl; i++) {
+                p[i].vo = slots;
+                slots += p[i].ox.length;
+                most = Math.max(most, p[i].ox.length);
+            }
+            vbx = new int[slots];
+            vby = new int[slots];
+            vbz = new int[slots];
+            vby2 = new int[slots];
+            vbz2 = new int[slots];
+            vsc = new int[5][most];
+        }
+        float s1 = RadicalMath.sin(xy);
+        float c1 = RadicalMath.cos(xy);
+        float s2 = RadicalMath.sin(zy);
+        float c2 = RadicalMath.cos(zy);
+        float s3 = RadicalMath.sin(xz);
+        float c3 = RadicalMath.cos(xz);
+        float s4 = RadicalMath.sin(Medium.xz);
+        float c4 = RadicalMath.cos(Medium.xz);
+        float s5 = RadicalMath.sin(Medium.zy);
+        float c5 = RadicalMath.cos(Medium.zy);
+        /* object rotation: xy, then zy, then xz */
+        float oxx = c3 * c1 - s3 * s2 * s1;
+        float oxy = -c3 * s1 - s3 * s2 * c1;
+        float oxz = -s3 * c2;
+        float oyx = c2 * s1;
+        float oyy = c2 * c1;
+        float oyz = -s2;
+        float ozx = s3 * c1 + c3 * s2 * s1;
+        float ozy = -s3 * s1 + c3 * s2 * c1;
+        float ozz = c3 * c2;
+        /* camera xz about (cx, cz) folded in */
+        float mxx = c4 * oxx - s4 * ozx;
+        float mxy = c4 * oxy - s4 * ozy;
+        float mxz = c4 * oxz - s4 * ozz;
+        float mzx = s4 * oxx + c4 * ozx;
+        float mzy = s4 * oxy + c4 * ozy;
+        float mzz = s4 * oxz + c4 * ozz;
+        int ox0 = x - Medium.x - Medium.cx;
+        int oz0 = z - Medium.z - Medium.cz;
+        float tx0 = Medium.cx + ox0 * c4 - oz0 * s4;
+        float tz0 = Medium.cz + ox0 * s4 + oz0 * c4;
+        int ty0 = y - Medium.y;
+        for (int i = 0; i < npl; i++) {
+            Plane plane = p[i];
+            if (plane.embos != 0 || plane.chip != 0 || plane.wx != 0 || plane.wz != 0 || plane.master != 0) {
+                continue;
+            }
+            if (lod != 0 && lodcut[i] < lod && plane.lodskip()) {
+                continue;
+            }
+            int[] px = plane.ox;
+            int[] py = plane.oy;
+            int[] pz = plane.oz;
+            int o = plane.vo;
+            for (int k = 0; k < plane.n; k++) {
+                float fx = px[k];
+                float fy = py[k];
+                float fz = pz[k];
+                int wx = (int) (tx0 + mxx * fx + mxy * fy + mxz * fz);
+                int wy = (int) (ty0 + oyx * fx + oyy * fy + oyz * fz);
+                int wz = (int) (tz0 + mzx * fx + mzy * fy + mzz * fz);
+                vbx[o + k] = wx;
+                vby[o + k] = wy;
+                vbz[o + k] = wz;
+                vby2[o + k] = Medium.cy + (int) ((wy - Medium.cy) * c5 - (wz - Medium.cz) * s5);
+                vbz2[o + k] = Medium.cz + (int) ((wy - Medium.cy) * s5 + (wz - Medium.cz) * c5);
+            }
+        }
+    }
+
+    /**
+     * Builds the coarser levels of detail, once per model as it is loaded;
+     * copies share the result. A plane whose widest span is under a twelfth
+     * of maxR is left out of level 1, and one under a sixth of maxR out of
+     * level 2; at the pixel sizes those levels are used for such planes cover
+     * a few pixels at most. Spans are measured between vertices, so a copy
+     * turned about y measures the same. Lights are always kept so headlights
+     * stay visible at night, and so is a plane that shares edges with kept
+     * planes on two or more sides, as leaving it out would open a hole in a
+     * closed body.
+     */
+    private void lodlevels() {
+        lodcut = new byte[npl];
+        for (int i = 0; i < npl; i++) {
+            Plane plane = p[i];
+            int ext = span(plane);
+            if (plane.light != 0 || ext * 6 >= maxR) {
+                lodcut[i] = 2;
+            } else if (ext * 12 >= maxR) {
+                lodcut[i] = 1;
+            }
+        }
+        /* planes by edge, each edge keyed by its two vertex positions */
+        HashMap<Long, Integer> vertex = new HashMap<>();
+        HashMap<Long, int[]> edges = new HashMap<>();
+        long[][] pkey = new long[npl][];
+        for (int i = 0; i < npl; i++) {
+            Plane plane = p[i];
+            pkey[i] = new long[plane.n];
+            for (int k = 0; k < plane.n; k++) {
+                int a = vertexid(vertex, plane, k);
+                int b = vertexid(vertex, plane, (k + 1) % plane.n);
+                long key = a < b ? (long) a << 32 | b : (long) b << 32 | a;
+                pkey[i][k] = key;
+                int[] on = edges.get(key);
+                on = on == null ? new int[]{i} : Arrays.copyOf(on, on.length + 1);
+                on[on.length - 1] = i;
+                edges.put(key, on);
+            }
+        }
+        for (int lod = 1; lod <= 2; lod++) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 0; i < npl; i++) {
+                    if (lodcut[i] >= lod) {
+                        continue;
+                    }
+                    int sides = 0;
+                    for (long key : pkey[i]) {
+                        for (int o : edges.get(key)) {
+                            if (o != i && lodcut[o] >= lod) {
+                                sides++;
+                                break;
+                            }
+                        }
+                    }
+                    if (sides >= 2) {
+                        lodcut[i] = (byte) lod;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int vertexid(HashMap<Long, Integer> vertex, Plane plane, int k) {
+        long key = ((long) (plane.ox[k] & 0x1fffff) << 42) | ((long) (plane.oy[k] & 0x1fffff) << 21)
+                | (plane.oz[k] & 0x1fffff);
+        Integer id = vertex.get(key);
+        if (id == null) {
+            id = vertex.size();
+            vertex.put(key, id);
+        }
+        return id;
+    }
+
+    /* the largest distance between two of the plane's vertices */
+    private static int span(Plane plane) {
+        long max = 0;
+        for (int a = 0; a < plane.n; a++) {
+            for (int b = a + 1; b < plane.n; b++) {
+                long dx = plane.ox[a] - plane.ox[b];
+                long dy = plane.oy[a] - plane.oy[b];
+                long dz = plane.oz[a] - plane.oz[b];
+                max = Math.max(max, dx * dx + dy * dy + dz * dz);
+            }
+        }
+        return (int) Math.sqrt(max);
+    }
+
+    /**
+     * Brings {@link #pord} into draw order: furthest plane ({@code av}) first,
+     * lower index first on ties. Uses insertion sort on the previous frame's
+     * order, which is close to linear since the order barely changes between
+     * frames.
+     */
+    private void sortPlanes() {
+        if (pord == null || pord.length != npl) {
+            pord = new int[npl];
+            for (int i = 0; i < npl; i++) {
+                pord[i] = i;
+            }
+        }
+        for (int i = 1; i < npl; i++) {
+            int k = pord[i];
+            int av = p[k].av;
+            int j = i - 1;
+            while (j >= 0) {
+                int o = pord[j];
+                int oav = p[o].av;
+                if (oav > av || oav == av && o < k) {
+                    break;
+                }
+                pord[j + 1] = o;
+                j--;
+            }
+            pord[j + 1] = k;
+        }
+    }
+
+    private int[] near() {
+        if (tnear == null || tnear.length < t.x.length) {
+            tnear = new int[t.x.length];
+        }
+        return tnear;
+    }
+
     private void pdust(int i, Graphics2D rd, int j) {
         if (j * dov[i] > 0) {
             int k;
@@ -81,7 +314,9 @@ public class ContO {
             int l = (Medium.cgrnd[0] * k + Medium.cfade[0] * 2 + Medium.csky[0]) / (3 + k);
             int i1 = (Medium.cgrnd[1] * k + Medium.cfade[0] * 2 + Medium.csky[1]) / (3 + k);
             int j1 = (Medium.cgrnd[2] * k + Medium.cfade[0] * 2 + Medium.csky[2]) / (3 + k);
-            for (int k1 = 0; k1 < t.nt; k1++) {
+            int nnear = t.near(sx[i], sz[i], sx[i], sz[i], 0, near());
+            for (int n1 = 0; n1 < nnear; n1++) {
+                int k1 = tnear[n1];
                 if (Math.abs(t.zy[k1]) != 90 && Math.abs(t.xy[k1]) != 90 && Math.abs(sx[i] - t.x[k1]) < t.radx[k1]
                         && Math.abs(sz[i] - t.z[k1]) < t.radz[k1]) {
                     if (t.skd[k1] == 0) {
@@ -187,7 +422,7 @@ public class ContO {
             }
             if (flag) {
                 rd.setColor(new Color(l, i1, j1));
-                rd.fillPolygon(ai, ai1, 8);
+                SoftRaster.fillEffect(rd, ai, ai1, i2, 8);
             }
             if (dov[i] == 1) {
                 dov[i] = -1;
@@ -438,18 +673,14 @@ public class ContO {
             e.printStackTrace();
         }
         grat = wheels.ground;
+        if (RenderConfig.MESH_LOD) {
+            lodlevels();
+        }
     }
 
     public ContO(ContO conto, int i, int j, int k, int l) {
         t = conto.t;
-        npl = conto.npl;
-        maxR = conto.maxR;
-        disp = conto.disp;
-        disline = conto.disline;
-        noline = conto.noline;
-        shadow = conto.shadow;
-        grounded = conto.grounded;
-        grat = conto.grat;
+        copyshape(conto);
         p = new Plane[conto.npl];
         for (int i1 = 0; i1 < npl; i1++) {
             if (conto.p[i1].master != 0) {
@@ -503,12 +734,87 @@ public class ContO {
             }
 
         }
-        int l1 = 0;
+    }
+
+    /**
+     * Makes this object the same as {@code new ContO(conto, 0, 0, 0, 0)}
+     * would be, reusing its planes instead of allocating new ones. Only the
+     * model state a copy reads is set. Returns false without changing
+     * anything when the two do not share a model layout or conto carries
+     * tracker boxes.
+     */
+    public boolean recopy(ContO conto) {
+        if (conto.t != t || conto.npl != p.length || conto.tnt != 0) {
+            return false;
+        }
+        for (int i = 0; i < p.length; i++) {
+            int n = conto.p[i].master != 0 ? 16 : conto.p[i].n;
+            if (p[i].ox.length != Math.max(n, 3)) {
+                return false;
+            }
+        }
+        copyshape(conto);
+        for (int i = 0; i < npl; i++) {
+            Plane plane = conto.p[i];
+            if (plane.master != 0) {
+                plane.n = 16;
+            }
+            p[i].load(plane.ox, plane.oz, plane.oy, plane.n, plane.oc, plane.glass, plane.gr, plane.fs, plane.wx,
+                    plane.wy, plane.wz, conto.disline, plane.bfase, plane.road, plane.light, plane.solo);
+            p[i].master = plane.master;
+            p[i].loadprojf();
+        }
+        x = 0;
+        y = 0;
+        z = 0;
+        return true;
+    }
+
+    private void copyshape(ContO conto) {
+        npl = conto.npl;
+        maxR = conto.maxR;
+        disp = conto.disp;
+        disline = conto.disline;
+        noline = conto.noline;
+        shadow = conto.shadow;
+        grounded = conto.grounded;
+        grat = conto.grat;
+        lodcut = conto.lodcut;
+        int i = 0;
         do {
-            stg[l1] = 0;
-            keyx[l1] = conto.keyx[l1];
-            keyz[l1] = conto.keyz[l1];
-        } while (++l1 < 4);
+            stg[i] = 0;
+            keyx[i] = conto.keyx[i];
+            keyz[i] = conto.keyz[i];
+        } while (++i < 4);
+    }
+
+    int disline() {
+        return disline;
+    }
+
+    /**
+     * Does to the state the race reads what {@link #d} would, without
+     * drawing: works out {@link #dist} and, for a car in view going through a
+     * fix hoop, steps the fix count. For ticks that are run but not drawn,
+     * so the race does not depend on which ticks got a frame.
+     */
+    public void look() {
+        dist = 0;
+        int i = Medium.cx + (int) ((x - Medium.x - Medium.cx) * RadicalMath.cos(Medium.xz) - (z - Medium.z - Medium.cz) * RadicalMath.sin(Medium.xz));
+        int j = Medium.cz + (int) ((x - Medium.x - Medium.cx) * RadicalMath.sin(Medium.xz) + (z - Medium.z - Medium.cz) * RadicalMath.cos(Medium.xz));
+        int k = Medium.cz + (int) ((y - Medium.y - Medium.cy) * RadicalMath.sin(Medium.zy) + (j - Medium.cz) * RadicalMath.cos(Medium.zy));
+        int l = Utility.cXs(i + maxR, k) - Utility.cXs(i - maxR, k);
+        if (Utility.cXs(i + maxR * 2, k) > 0 && Utility.cXs(i - maxR * 2, k) < Medium.w && k > -maxR && (k < Medium.fade[disline] + maxR || Medium.trk)
+                && (l > disp || Medium.trk)) {
+            int j1 = Medium.cy + (int) ((y - Medium.y - Medium.cy) * RadicalMath.cos(Medium.zy) - (j - Medium.cz) * RadicalMath.sin(Medium.zy));
+            if (Utility.cYs(j1 + maxR, k) > 0 && Utility.cYs(j1 - maxR, k) < Medium.h) {
+                if (fix) {
+                    fixstep();
+                }
+                dist = (int) (Math.sqrt((int) Math.sqrt(((Medium.x + Medium.cx) - x) * ((Medium.x + Medium.cx) - x) + (Medium.z - z) * (Medium.z - z)
+                        + ((Medium.y + Medium.cy) - y) * ((Medium.y + Medium.cy) - y))) * grounded);
+            }
+        }
     }
 
     public void d(Graphics2D rd) {
@@ -525,7 +831,9 @@ public class ContO {
                 if (!Medium.crs) {
                     if (k < 2000) {
                         boolean flag = false;
-                        for (int l1 = t.nt - 1; l1 >= 0; l1--) {
+                        int nnear = t.near(x - maxR, z - maxR, x + maxR, z + maxR, 0, near());
+                        for (int n1 = nnear - 1; n1 >= 0; n1--) {
+                            int l1 = tnear[n1];
                             if (Math.abs(t.zy[l1]) == 90 || Math.abs(t.xy[l1]) == 90
                                     || Math.abs(x - t.x[l1]) >= t.radx[l1] + maxR
                                     || Math.abs(z - t.z[l1]) >= t.radz[l1] + maxR) {
@@ -575,40 +883,36 @@ public class ContO {
                 if (checkpoint != 0 && checkpoint - 1 == Medium.checkpoint) {
                     l = -1;
                 }
-                int ai[] = new int[npl];
-                int ai1[] = new int[npl];
                 int i3 = 0;
                 do {
                     if (stg[i3] != 0) {
                         pdust(i3, rd, -1);
                     }
                 } while (++i3 < 4);
-                for (int j3 = 0; j3 < npl; j3++) {
-                    ai[j3] = 0;
+                boolean sorted = !SoftRaster.inDepthScene();
+                if (sorted) {
+                    sortPlanes();
                 }
-
-                for (int k3 = 0; k3 < npl; k3++) {
-                    for (int i4 = k3 + 1; i4 < npl; i4++) {
-                        if (p[k3].av != p[i4].av) {
-                            if (p[k3].av < p[i4].av) {
-                                ai[k3]++;
-                            } else {
-                                ai[i4]++;
-                            }
-                        } else if (k3 > i4) {
-                            ai[k3]++;
-                        } else {
-                            ai[i4]++;
-                        }
-                    }
-
-                    ai1[ai[k3]] = k3;
+                int lod = 0;
+                if (lodcut != null && l >= 0) {
+                    lod = l < LOD2_PX ? 2 : l < LOD1_PX ? 1 : 0;
                 }
-
+                transform(lod);
+                boolean rotated = xz != 0 || xy != 0 || zy != 0;
                 for (int l3 = 0; l3 < npl; l3++) {
-                    p[ai1[l3]].d(rd, x - Medium.x, y - Medium.y, z - Medium.z, xz, xy, zy, wxz, wzy, noline, l, blackout);
-                    if (p[ai1[l3]].master != 0 && stg[p[ai1[l3]].master - 1] != 0) {
-                        pdust(p[ai1[l3]].master - 1, rd, 1);
+                    int pi = sorted ? pord[l3] : l3;
+                    Plane plane = p[pi];
+                    if (lod != 0 && lodcut[pi] < lod && plane.lodskip()) {
+                        continue;
+                    }
+                    if (plane.pretransformable()) {
+                        plane.d(rd, vbx, vby, vbz, vby2, vbz2, rotated, vsc,
+                                noline, l, blackout);
+                    } else {
+                        plane.d(rd, x - Medium.x, y - Medium.y, z - Medium.z, xz, xy, zy, wxz, wzy, noline, l, blackout);
+                    }
+                    if (plane.master != 0 && stg[plane.master - 1] != 0) {
+                        pdust(plane.master - 1, rd, 1);
                     }
                 }
 
@@ -679,7 +983,13 @@ public class ContO {
         do {
             ai1[j1] = Medium.ground;
         } while (++j1 < 4);
-        for (int k1 = t.nt - 1; k1 >= 0; k1--) {
+        int nx0 = Math.min(Math.min(ai[0], ai[1]), Math.min(ai[2], ai[3])) + Medium.x;
+        int nz0 = Math.min(Math.min(ai2[0], ai2[1]), Math.min(ai2[2], ai2[3])) + Medium.z;
+        int nx1 = Math.max(Math.max(ai[0], ai[1]), Math.max(ai[2], ai[3])) + Medium.x;
+        int nz1 = Math.max(Math.max(ai2[0], ai2[1]), Math.max(ai2[2], ai2[3])) + Medium.z;
+        int nnear = t.near(nx0, nz0, nx1, nz1, 0, near());
+        for (int n1 = nnear - 1; n1 >= 0; n1--) {
+            int k1 = tnear[n1];
             int l1 = 0;
             int j2 = 0;
             do {
@@ -747,7 +1057,7 @@ public class ContO {
                 }
             } while (++k3 < 8);
             rd.setColor(new Color(k, l, i1));
-            rd.fillPolygon(ai, ai1, 4);
+            SoftRaster.fillDecal(rd, ai, ai1, ai2, 4);
         }
     }
 
@@ -910,7 +1220,7 @@ public class ContO {
                 l3 = 0;
             }
             rd.setColor(new Color(j3, k3, l3));
-            rd.fillPolygon(ai, ai1, 8);
+            SoftRaster.fillEffect(rd, ai, ai1, l2, 8);
             ai[0] = Utility.cXs((int) (j2 - j1 - Medium.random() * (j1 / 4)), l2);
             ai1[0] = Utility.cYs((int) (i3 - l1 / 2.3999999999999999D
                     - Medium.random() * (l1 / 9.5999999999999996D)), l2);
@@ -957,8 +1267,13 @@ public class ContO {
                 l3 = 0;
             }
             rd.setColor(new Color(j3, k3, l3));
-            rd.fillPolygon(ai, ai1, 8);
+            SoftRaster.fillEffect(rd, ai, ai1, l2, 8);
         }
+        fixstep();
+    }
+
+    /* one step of the fix hoop flash, whose count Madness.drive repairs the car on */
+    private void fixstep() {
         if (fcnt > 7) {
             fcnt = 0;
             fix = false;
@@ -1064,7 +1379,7 @@ public class ContO {
                     l3 = 0;
                 }
                 rd.setColor(new Color(l2, j3, l3));
-                rd.fillPolygon(ai3, ai4, 8);
+                SoftRaster.fillEffect(rd, ai3, ai4, ai2, 8);
                 if (ai2[0] < 4000) {
                     int i3 = (int) (150F + 150F * (Medium.snap[0] / 500F));
                     if (i3 > 255) {
@@ -1088,7 +1403,7 @@ public class ContO {
                         i4 = 0;
                     }
                     rd.setColor(new Color(i3, k3, i4));
-                    rd.drawPolygon(ai3, ai4, 8);
+                    SoftRaster.drawEffect(rd, ai3, ai4, ai2, 8);
                 }
             }
             if (elc[i] > Medium.random() * 60F) {
@@ -92,6 +92,12 @@ public class Control {
     private int apunch;
     private boolean exitattack;
     private int avoidnlev;
+    /* the point last chosen to head for, -1 for none yet, and whether it was chosen unfocused */
+    private int tpnt = -1;
+    private boolean tfocus;
+
+    // This car's own random sequence, so the AI can run while a frame is drawn
+    private final RandomCycle rnd = new RandomCycle();
 
     // Getters and setters for fields accessed by other classes
     public boolean isLeft() { return left; }
@@ -124,12 +130,27 @@ public class Control {
     public int getWall() { return wall; }
     public void setWall(int wall) { this.wall = wall; }
 
+    /** Restarts the AI's random sequence, for repeatable runs. */
+    public void seed(long seed) { rnd.reseed(seed); }
+
     /**
      * This void is the entire code for the AI in NFM.
      * 
      * @author Omar Waly
      */
     public void preform(Madness madness, ContO conto, CheckPoints checkpoints, Trackers trackers, int ncars) {
+        preform(madness, conto, checkpoints, trackers, ncars, true);
+    }
+
+    /**
+     * Runs the AI for a tick. The steering and throttle toward the point and
+     * the car it has chosen, and the stunt it is flying, are worked out every
+     * tick; with {@code decide} false the choices themselves are left as they
+     * are: the status (attacks, clearance, ramps, stunt plans, fixing), the
+     * point to head for and the start of a stunt. See {@link AIScheduler}.
+     */
+    public void preform(Madness madness, ContO conto, CheckPoints checkpoints, Trackers trackers, int ncars,
+                        boolean decide) {
         left = false;
         right = false;
         up = false;
@@ -137,7 +158,7 @@ public class Control {
         handb = false;
         if (!madness.dest) {
             if (madness.mtouch) {
-                if (stcnt > statusque) {
+                if (stcnt > statusque && decide) {
                     acuracy = (GameFacts.numberOfPlayers - checkpoints.pos[madness.im]) * checkpoints.pos[0] * (6 - checkpoints.stage * 2);
                     if (acuracy < 0) {
                         acuracy = 0;
@@ -223,7 +244,7 @@ public class Control {
                     if (checkpoints.stage == 16 || checkpoints.stage == 15 || checkpoints.stage == 10) {
                         skiplev = 0.0F;
                     }
-                    rampp = (int) (Medium.random() * 4F - 2.0F);
+                    rampp = (int) (rnd.next() * 4F - 2.0F);
                     if (madness.power == 98F) {
                         rampp = -1;
                     }
@@ -244,7 +265,7 @@ public class Control {
                     }
                     if (cntrn == 0) {
                         agressed = false;
-                        turntyp = (int) (Medium.random() * 4F);
+                        turntyp = (int) (rnd.next() * 4F);
                         if (checkpoints.stage == 3 && madness.im == 6) {
                             turntyp = 1;
                             if (attack == 0) {
@@ -252,7 +273,7 @@ public class Control {
                             }
                         }
                         if (checkpoints.pos[0] - checkpoints.pos[madness.im] < 0) {
-                            turntyp = (int) (Medium.random() * 2.0F);
+                            turntyp = (int) (rnd.next() * 2.0F);
                         }
                         if (checkpoints.stage == 8) {
                             turntyp = 2;
@@ -270,7 +291,7 @@ public class Control {
                             turntyp = 2;
                             if (checkpoints.stage == 9 || checkpoints.stage == 11 || checkpoints.stage == 13
                                     || checkpoints.stage == 17) {
-                                turntyp = (int) (Medium.random() * 3F);
+                                turntyp = (int) (rnd.next() * 3F);
                             }
                             if (checkpoints.stage == 16 && checkpoints.clear[madness.im] - checkpoints.clear[0] >= 5) {
                                 turntyp = 0;
@@ -285,7 +306,7 @@ public class Control {
                     } else {
                         cntrn--;
                     }
-                    saftey = (int) ((98F - madness.power) / 2.0F * (Medium.random() / 2.0F + 0.5D));
+                    saftey = (int) ((98F - madness.power) / 2.0F * (rnd.next() / 2.0F + 0.5D));
                     if (saftey > 20) {
                         saftey = 20;
                     }
@@ -299,7 +320,7 @@ public class Control {
                     if (checkpoints.stage == 4) {
                         f = 0.4F;
                     }
-                    mustland = f + (float) (Medium.random() / 2.0F - 0.25D);
+                    mustland = f + (float) (rnd.next() / 2.0F - 0.25D);
                     f = 1.0F;
                     if (checkpoints.stage == 1) {
                         f = 5F;
@@ -357,7 +378,7 @@ public class Control {
                         mustland = 0.0F;
                         saftey = 10;
                         if ((madness.pcleared == 15 || madness.pcleared == 51)
-                                && (Medium.random() > 0.40000000000000002D || trfix != 0)) {
+                                && (rnd.next() > 0.40000000000000002D || trfix != 0)) {
                             stuntf = 7;
                         }
                         if (madness.pcleared == 42) {
@@ -366,9 +387,9 @@ public class Control {
                         if (madness.pcleared == 77) {
                             stuntf = 7;
                         }
-                        avoidnlev = (int) (2700F * Medium.random());
+                        avoidnlev = (int) (2700F * rnd.next());
                     }
-                    trickprf = (madness.power - 38F) / 50F - Medium.random() / 2.0F;
+                    trickprf = (madness.power - 38F) / 50F - rnd.next() / 2.0F;
                     if (madness.power < 60F) {
                         trickprf = -1F;
                     }
@@ -405,15 +426,15 @@ public class Control {
                     if (checkpoints.stage == 17) {
                         trickprf = -1F;
                     }
-                    usebounce = Medium.random() > madness.power / 100F;
+                    usebounce = rnd.next() > madness.power / 100F;
                     if (checkpoints.stage == 4 || checkpoints.stage == 6) {
                         usebounce = true;
                     }
                     if (checkpoints.stage == 10 || checkpoints.stage == 14) {
                         usebounce = false;
                     }
-                    perfection = Medium.random() <= (float) madness.hitmag / (float) StatList.maxmag[madness.cn];
-                    if ((100F * madness.hitmag) / StatList.maxmag[madness.cn] > 60F) {
+                    perfection = rnd.next() <= (float) madness.hitmag / (float) EnhancedStatList.ENHANCED_MAXMAG[madness.cn];
+                    if ((100F * madness.hitmag) / EnhancedStatList.ENHANCED_MAXMAG[madness.cn] > 60F) {
                         perfection = true;
                     }
                     if (checkpoints.stage == 6 || checkpoints.stage == 8 || checkpoints.stage == 9
@@ -688,31 +709,31 @@ public class Control {
                                             f2 = 0.0F;
                                         }
                                     }
-                                    if (Medium.random() < f2) {
+                                    if (rnd.next() < f2) {
                                         attack = 40 * (Math.abs(checkpoints.clear[i4] - madness.clear) + 1);
                                         if (attack > 500) {
                                             attack = 500;
                                         }
                                         aim = 0.0F;
-                                        if (checkpoints.stage == 3 && madness.im == 6 && Medium.random() > Medium.random()) {
+                                        if (checkpoints.stage == 3 && madness.im == 6 && rnd.next() > rnd.next()) {
                                             aim = 1.0F;
                                         }
                                         if (checkpoints.stage == 4) {
                                             if (i4 == 0 && checkpoints.pos[0] < checkpoints.pos[madness.im]) {
                                                 aim = 1.5F;
                                             } else {
-                                                aim = Medium.random();
+                                                aim = rnd.next();
                                             }
                                         }
                                         if (checkpoints.stage == 5) {
-                                            aim = Medium.random() * 1.5F;
+                                            aim = rnd.next() * 1.5F;
                                         }
-                                        if (checkpoints.stage == 7 && madness.im != 6 && (Medium.random() > Medium.random()
+                                        if (checkpoints.stage == 7 && madness.im != 6 && (rnd.next() > rnd.next()
                                                 || checkpoints.pos[0] < checkpoints.pos[madness.im])) {
                                             aim = 1.0F;
                                         }
-                                        if (checkpoints.stage == 8 && madness.cn == 11 && Medium.random() > Medium.random()) {
-                                            aim = 0.76F + Medium.random() * 0.76F;
+                                        if (checkpoints.stage == 8 && madness.cn == 11 && rnd.next() > rnd.next()) {
+                                            aim = 0.76F + rnd.next() * 0.76F;
                                         }
                                         if (checkpoints.stage == 9
                                                 && (madness.pcleared == 13 || madness.pcleared == 33)) {
@@ -725,11 +746,11 @@ public class Control {
                                                     attack = 150;
                                                 }
                                             } else {
-                                                aim = Medium.random();
+                                                aim = rnd.next();
                                             }
                                         }
                                         if (checkpoints.stage == 12) {
-                                            if (Medium.random() > Medium.random()) {
+                                            if (rnd.next() > rnd.next()) {
                                                 aim = 0.7F;
                                             }
                                             if (bulistc && attack > 150) {
@@ -740,16 +761,16 @@ public class Control {
                                             attack = 60;
                                         }
                                         if (checkpoints.stage == 15) {
-                                            aim = Medium.random() * 1.5F;
+                                            aim = rnd.next() * 1.5F;
                                             attack = attack / 2;
-                                            exitattack = Medium.random() > Medium.random();
+                                            exitattack = rnd.next() > rnd.next();
                                         }
                                         if (checkpoints.stage == 16) {
                                             if (madness.cn == 13) {
                                                 aim = 0.76F;
                                                 attack = 150;
                                             } else {
-                                                aim = Medium.random() * 1.5F;
+                                                aim = rnd.next() * 1.5F;
                                                 if (Math.abs(checkpoints.clear[i4] - madness.clear) <= 2
                                                         || madness.cn == 14) {
                                                     attack = attack / 3;
@@ -757,13 +778,13 @@ public class Control {
                                             }
                                         }
                                         acr = i4;
-                                        turntyp = (int) (1.0F + Medium.random() * 2.0F);
+                                        turntyp = (int) (1.0F + rnd.next() * 2.0F);
                                     }
                                 }
                                 if (flag1 && k8 > 100
                                         && Utility.py(conto.x / 100, checkpoints.opx[i4] / 100, conto.z / 100,
                                         checkpoints.opz[i4] / 100) < 300
-                                        && Medium.random() > 0.59999999999999998D
+                                        && rnd.next() > 0.59999999999999998D
                                         - checkpoints.pos[madness.im] / 10F) {
                                     clrnce = 0;
                                     acuracy = 0;
@@ -803,7 +824,7 @@ public class Control {
                                     && madness.cn != 10 && madness.cn != 12) {
                                 k2 = 50;
                             }
-                            if ((100F * madness.hitmag) / StatList.maxmag[madness.cn] > k2) {
+                            if ((100F * madness.hitmag) / EnhancedStatList.ENHANCED_MAXMAG[madness.cn] > k2) {
                                 trfix = 2;
                             }
                         }
@@ -818,7 +839,7 @@ public class Control {
                             madness.pcleared = 73;
                             madness.clear = 0;
                             bulistc = true;
-                            runbul = (int) (100F * Medium.random());
+                            runbul = (int) (100F * rnd.next());
                         }
                         if (checkpoints.stage == 11 && madness.cn == 13) {
                             bulistc = true;
@@ -856,7 +877,7 @@ public class Control {
                         }
                     }
                     stcnt = 0;
-                    statusque = (int) (20F * Medium.random());
+                    statusque = (int) (20F * rnd.next());
                 } else {
                     stcnt++;
                 }
@@ -889,609 +910,15 @@ public class Control {
                         upcnt = 0;
                         actwait = upwait;
                     }
-                    int i = madness.point;
-                    int k1 = 50;
-                    if (checkpoints.stage == 8) {
-                        k1 = 20;
-                    }
-                    if (checkpoints.stage == 15) {
-                        k1 = 40;
-                    }
-                    if (checkpoints.stage == 16) {
-                        k1 = 20;
-                    }
-                    if (!bulistc || trfix == 2 || trfix == 3 || trfix == 4 || madness.power < k1) {
-                        if (rampp == 1 && checkpoints.typ[i] <= 0) {
-                            int l2 = i + 1;
-                            if (l2 == checkpoints.n) {
-                                l2 = 0;
-                            }
-                            if (checkpoints.typ[l2] == -2) {
-                                i = l2;
-                            }
-                        }
-                        if (rampp == -1 && checkpoints.typ[i] == -2 && ++i == checkpoints.n) {
-                            i = 0;
-                        }
-                        if (Medium.random() > skiplev) {
-                            int i3 = i;
-                            boolean flag5 = false;
-                            if (checkpoints.typ[i3] > 0) {
-                                int i6 = 0;
-                                for (int i7 = 0; i7 < checkpoints.n; i7++) {
-                                    if (checkpoints.typ[i7] > 0 && i7 < i3) {
-                                        i6++;
-                                    }
-                                }
-
-                                flag5 = madness.clear != i6 + madness.nlaps * checkpoints.nsp;
-                            }
-                            while (checkpoints.typ[i3] == 0 || checkpoints.typ[i3] == -1 || checkpoints.typ[i3] == -3
-                                    || flag5) {
-                                i = i3;
-                                if (++i3 == checkpoints.n) {
-                                    i3 = 0;
-                                }
-                                flag5 = false;
-                                if (checkpoints.typ[i3] > 0) {
-                                    int j6 = 0;
-                                    for (int j7 = 0; j7 < checkpoints.n; j7++) {
-                                        if (checkpoints.typ[j7] > 0 && j7 < i3) {
-                                            j6++;
-                                        }
-                                    }
-
-                                    flag5 = madness.clear != j6 + madness.nlaps * checkpoints.nsp;
-                                }
-                            }
-                        } else if (Medium.random() > skiplev) {
-                            while (checkpoints.typ[i] == -1) {
-                                if (++i == checkpoints.n) {
-                                    i = 0;
-                                }
-                            }
-                        }
-                        if (checkpoints.stage == 8 && madness.pcleared == 73 && trfix == 0 && madness.clear != 0) {
-                            i = 10;
-                        }
-                        if (checkpoints.stage == 9 && madness.pcleared == 18 && trfix == 0) {
-                            i = 27;
-                        }
-                        if (checkpoints.stage == 11) {
-                            if (madness.pcleared == 5 && trfix == 0 && madness.power < 70F) {
-                                if (i <= 16) {
-                                    i = 16;
-                                } else {
-                                    i = 21;
-                                }
-                            }
-                            if (madness.pcleared == 50) {
-                                i = 57;
-                            }
-                        }
-                        if (checkpoints.stage == 12 && (madness.pcleared == 27 || madness.pcleared == 37)) {
-                            while (checkpoints.typ[i] == -1) {
-                                if (++i == checkpoints.n) {
-                                    i = 0;
-                                }
-                            }
-                        }
-                        if (checkpoints.stage == 13) {
-                            while (checkpoints.typ[i] == -1) {
-                                if (++i == checkpoints.n) {
-                                    i = 0;
-                                }
-                            }
-                        }
-                        if (checkpoints.stage == 14) {
-                            while (checkpoints.typ[i] == -1) {
-                                if (++i == checkpoints.n) {
-                                    i = 0;
-                                }
-                            }
-                            if (!madness.gtouch) {
-                                while (checkpoints.typ[i] == -2) {
-                                    if (++i == checkpoints.n) {
-                                        i = 0;
-                                    }
-                                }
-                            }
-                            if (oupnt >= 68) {
-                                i = 70;
-                            } else {
-                                oupnt = i;
-                            }
-                        }
-                        if (checkpoints.stage == 15) {
-                            if (madness.pcleared != 91 && checkpoints.pos[0] < checkpoints.pos[madness.im]
-                                    && madness.cn != 13
-                                    || checkpoints.pos[madness.im] == 0
-                                    && (madness.clear == 12 || madness.clear == 20)) {
-                                while (checkpoints.typ[i] == -4) {
-                                    if (++i == checkpoints.n) {
-                                        i = 0;
-                                    }
-                                }
-                            }
-                            if (madness.pcleared == 9) {
-                                if (Utility.py(conto.x / 100, 297, conto.z / 100, 347) < 400) {
-                                    oupnt = 1;
-                                }
-                                if (oupnt == 1 && i < 22) {
-                                    i = 22;
-                                }
-                            }
-                            if (madness.pcleared == 67) {
-                                if (Utility.py(conto.x / 100, 28, conto.z / 100, 494) < 4000) {
-                                    oupnt = 2;
-                                }
-                                if (oupnt == 2) {
-                                    i = 76;
-                                }
-                            }
-                            if (madness.pcleared == 76) {
-                                if (Utility.py(conto.x / 100, -50, conto.z / 100, 0) < 2000) {
-                                    oupnt = 3;
-                                }
-                                if (oupnt == 3) {
-                                    i = 91;
-                                } else {
-                                    i = 89;
-                                }
-                            }
-                        }
-                        if (checkpoints.stage == 16) {
-                            if (madness.pcleared == 128) {
-                                if (Utility.py(conto.x / 100, 0, conto.z / 100, 229) < 1500 || conto.z > 23000) {
-                                    oupnt = 128;
-                                }
-                                if (oupnt != 128) {
-                                    i = 3;
-                                }
-                            }
-                            if (madness.pcleared == 8) {
-                                if (Utility.py(conto.x / 100, -207, conto.z / 100, 549) < 1500 || conto.x < -20700) {
-                                    oupnt = 8;
-                                }
-                                if (oupnt != 8) {
-                                    i = 12;
-                                }
-                            }
-                            if (madness.pcleared == 33) {
-                                if (Utility.py(conto.x / 100, -60, conto.z / 100, 168) < 250 || conto.z > 17000) {
-                                    oupnt = 331;
-                                }
-                                if (Utility.py(conto.x / 100, -112, conto.z / 100, 414) < 10000 || conto.z > 40000) {
-                                    oupnt = 332;
-                                }
-                                if (oupnt != 331 && oupnt != 332) {
-                                    if (trfix != 1) {
-                                        i = 38;
-                                    } else {
-                                        i = 39;
-                                    }
-                                }
-                                if (oupnt == 331) {
-                                    i = 71;
-                                }
-                            }
-                            if (madness.pcleared == 42) {
-                                if (Utility.py(conto.x / 100, -269, conto.z / 100, 493) < 100 || conto.x < -27000) {
-                                    oupnt = 142;
-                                }
-                                if (oupnt != 142) {
-                                    i = 47;
-                                }
-                            }
-                            if (madness.pcleared == 51) {
-                                if (Utility.py(conto.x / 100, -352, conto.z / 100, 260) < 100 || conto.z < 25000) {
-                                    oupnt = 511;
-                                }
-                                if (Utility.py(conto.x / 100, -325, conto.z / 100, 10) < 2000 || conto.x > -32000) {
-                                    oupnt = 512;
-                                }
-                                if (oupnt != 511 && oupnt != 512) {
-                                    i = 80;
-                                }
-                                if (oupnt == 511) {
-                                    i = 61;
-                                }
-                            }
-                            if (madness.pcleared == 77) {
-                                if (Utility.py(conto.x / 100, -371, conto.z / 100, 319) < 100 || conto.z < 31000) {
-                                    oupnt = 77;
-                                }
-                                if (oupnt != 77) {
-                                    i = 78;
-                                    madness.nofocus = true;
-                                }
-                            }
-                            if (madness.pcleared == 105) {
-                                if (Utility.py(conto.x / 100, -179, conto.z / 100, 10) < 2300 || conto.z < 1050) {
-                                    oupnt = 105;
-                                }
-                                if (oupnt != 105) {
-                                    i = 65;
-                                } else {
-                                    i = 125;
-                                }
-                            }
-                            if (trfix == 3) {
-                                if (Utility.py(conto.x / 100, -52, conto.z / 100, 448) < 100 || conto.z > 45000) {
-                                    oupnt = 176;
-                                }
-                                if (oupnt != 176) {
-                                    i = 41;
-                                } else {
-                                    i = 43;
-                                }
-                            }
-                            if (checkpoints.clear[madness.im] - checkpoints.clear[0] >= 2
-                                    && Utility.py(conto.x / 100, checkpoints.opx[0] / 100, conto.z / 100,
-                                    checkpoints.opz[0] / 100) < 1000 + avoidnlev) {
-                                int j4 = conto.xz;
-                                if (zyinv) {
-                                    j4 += 180;
-                                }
-                                for (; j4 < 0; j4 += 360) {
-                                }
-                                for (; j4 > 180; j4 -= 360) {
-                                }
-                                char c3 = '\0';
-                                if (checkpoints.opx[0] - conto.x >= 0) {
-                                    c3 = '\264';
-                                }
-                                int k7;
-                                for (k7 = (int) (90 + c3 + Math
-                                        .atan((double) (checkpoints.opz[0] - conto.z)
-                                                / (double) (checkpoints.opx[0] - conto.x))
-                                        / 0.017453292519943295D); k7 < 0; k7 += 360) {
-                                }
-                                for (; k7 > 180; k7 -= 360) {
-                                }
-                                int j8 = Math.abs(j4 - k7);
-                                if (j8 > 180) {
-                                    j8 = Math.abs(j8 - 360);
-                                }
-                                if (j8 < 90) {
-                                    wall = 0;
-                                }
-                            }
-                        }
-                        if (rampp == 2) {
-                            int j3 = i + 1;
-                            if (j3 == checkpoints.n) {
-                                j3 = 0;
-                            }
-                            if (checkpoints.typ[j3] == -2 && i != madness.point && --i < 0) {
-                                i += checkpoints.n;
-                            }
-                        }
-                        if (bulistc) {
-                            madness.nofocus = true;
-                            if (gowait) {
-                                gowait = false;
-                            }
-                        }
+                    int i = tpnt;
+                    if (decide || i < 0) {
+                        i = target(madness, conto, checkpoints);
                     } else {
-                        if (checkpoints.stage != 15 && checkpoints.stage != 16 || runbul == 0) {
-                            if ((i -= 2) < 0) {
-                                i += checkpoints.n;
-                            }
-                            while (checkpoints.typ[i] == -4) {
-                                if (--i < 0) {
-                                    i += checkpoints.n;
-                                }
-                            }
-                        }
-                        if (checkpoints.stage == 11) {
-                            if (i >= 14 && i <= 19) {
-                                i = 13;
-                            }
-                            if (oupnt == 72 && i != 56) {
-                                i = 57;
-                            } else if (oupnt == 54 && i != 52) {
-                                i = 53;
-                            } else if (oupnt == 39 && i != 37) {
-                                i = 38;
-                            } else {
-                                oupnt = i;
-                            }
-                        }
-                        if (checkpoints.stage == 12) {
-                            if (!gowait) {
-                                if (checkpoints.clear[0] == 0) {
-                                    wtx = -3500;
-                                    wtz = 19000;
-                                    frx = -3500;
-                                    frz = 39000;
-                                    frad = 12000;
-                                    oupnt = 37;
-                                    gowait = true;
-                                    afta = false;
-                                }
-                                if (checkpoints.clear[0] == 7) {
-                                    wtx = -44800;
-                                    wtz = 40320;
-                                    frx = -44800;
-                                    frz = 34720;
-                                    frad = 30000;
-                                    oupnt = 27;
-                                    gowait = true;
-                                    afta = false;
-                                }
-                                if (checkpoints.clear[0] == 10) {
-                                    wtx = 0;
-                                    wtz = 48739;
-                                    frx = 0;
-                                    frz = 38589;
-                                    frad = 0x15f90;
-                                    oupnt = 55;
-                                    gowait = true;
-                                    afta = false;
-                                }
-                                if (checkpoints.clear[0] == 14) {
-                                    wtx = -3500;
-                                    wtz = 19000;
-                                    frx = -14700;
-                                    frz = 39000;
-                                    frad = 45000;
-                                    oupnt = 37;
-                                    gowait = true;
-                                    afta = false;
-                                }
-                                if (checkpoints.clear[0] == 18) {
-                                    wtx = -48300;
-                                    wtz = -4550;
-                                    frx = -48300;
-                                    frz = 5600;
-                                    frad = 0x15f90;
-                                    oupnt = 17;
-                                    gowait = true;
-                                    afta = false;
-                                }
-                            }
-                            if (gowait) {
-                                if (Utility.py(conto.x / 100, wtx / 100, conto.z / 100, wtz / 100) < 10000
-                                        && madness.speed > 50F) {
-                                    up = false;
-                                }
-                                if (Utility.py(conto.x / 100, wtx / 100, conto.z / 100, wtz / 100) < 200) {
-                                    up = false;
-                                    handb = true;
-                                }
-                                if (checkpoints.pcleared == oupnt && Utility.py(checkpoints.opx[0] / 100, frx / 100,
-                                        checkpoints.opz[0] / 100, frz / 100) < frad) {
-                                    afta = true;
-                                    gowait = false;
-                                }
-                                if (Utility.py(conto.x / 100, checkpoints.opx[0] / 100, conto.z / 100,
-                                        checkpoints.opz[0] / 100) < 25) {
-                                    afta = true;
-                                    gowait = false;
-                                    attack = 200;
-                                    acr = 0;
-                                }
-                            }
-                        }
-                        if (checkpoints.stage == 15) {
-                            if (oupnt == -1) {
-                                int k3 = -10;
-                                for (int k4 = 0; k4 < checkpoints.n; k4++) {
-                                    if ((checkpoints.typ[k4] == -2 || checkpoints.typ[k4] == -4) && (k4 < 50 || k4 > 54)
-                                            && (Utility.py(conto.x / 100, checkpoints.x[k4] / 100, conto.z / 100,
-                                            checkpoints.z[k4] / 100) < k3 || k3 == -10)) {
-                                        k3 = Utility.py(conto.x / 100, checkpoints.x[k4] / 100, conto.z / 100,
-                                                checkpoints.z[k4] / 100);
-                                        oupnt = k4;
-                                    }
-                                }
-
-                                oupnt--;
-                                if (i < 0) {
-                                    oupnt += checkpoints.n;
-                                }
-                            }
-                            if (oupnt >= 0 && oupnt < checkpoints.n) {
-                                i = oupnt;
-                                if (Utility.py(conto.x / 100, checkpoints.x[i] / 100, conto.z / 100,
-                                        checkpoints.z[i] / 100) < 800) {
-                                    oupnt = -(int) (75F + Medium.random() * 200F);
-                                    runbul = (int) (50F + Medium.random() * 100F);
-                                }
-                            }
-                            if (oupnt < -1) {
-                                oupnt++;
-                            }
-                            if (runbul != 0) {
-                                runbul--;
-                            }
+                        if (gowait) {
+                            waitspot(madness, conto);
                         }
-                        if (checkpoints.stage == 16) {
-                            boolean flag4 = false;
-                            if (madness.cn == 13) {
-                                if (!gowait) {
-                                    if (checkpoints.clear[0] == 1) {
-                                        if (Medium.random() > 0.5D) {
-                                            wtx = -14000;
-                                            wtz = 48000;
-                                            frx = -5600;
-                                            frz = 47600;
-                                            frad = 0x157c0;
-                                            oupnt = 33;
-                                        } else {
-                                            wtx = -5600;
-                                            wtz = 8000;
-                                            frx = -7350;
-                                            frz = -4550;
-                                            frad = 22000;
-                                            oupnt = 15;
-                                        }
-                                        gowait = true;
-                                        afta = false;
-                                    }
-                                    if (checkpoints.clear[0] == 4) {
-                                        wtx = -12700;
-                                        wtz = 14000;
-                                        frx = -31000;
-                                        frz = 1050;
-                                        frad = 11000;
-                                        oupnt = 51;
-                                        gowait = true;
-                                        afta = false;
-                                    }
-                                    if (checkpoints.clear[0] == 14) {
-                                        wtx = -35350;
-                                        wtz = 6650;
-                                        frx = -48300;
-                                        frz = 54950;
-                                        frad = 11000;
-                                        oupnt = 15;
-                                        gowait = true;
-                                        afta = false;
-                                    }
-                                    if (checkpoints.clear[0] == 17) {
-                                        wtx = -42700;
-                                        wtz = 41000;
-                                        frx = -40950;
-                                        frz = 49350;
-                                        frad = 7000;
-                                        oupnt = 42;
-                                        gowait = true;
-                                        afta = false;
-                                    }
-                                    if (checkpoints.clear[0] == 21) {
-                                        wtx = -1750;
-                                        wtz = -15750;
-                                        frx = -25900;
-                                        frz = -14000;
-                                        frad = 11000;
-                                        oupnt = 125;
-                                        gowait = true;
-                                        afta = false;
-                                    }
-                                }
-                                if (gowait) {
-                                    if (Utility.py(conto.x / 100, wtx / 100, conto.z / 100, wtz / 100) < 10000
-                                            && madness.speed > 50F) {
-                                        up = false;
-                                    }
-                                    if (Utility.py(conto.x / 100, wtx / 100, conto.z / 100, wtz / 100) < 200) {
-                                        up = false;
-                                        handb = true;
-                                    }
-                                    if (checkpoints.pcleared == oupnt && Utility.py(checkpoints.opx[0] / 100, frx / 100,
-                                            checkpoints.opz[0] / 100, frz / 100) < frad) {
-                                        runbul = 0;
-                                        afta = true;
-                                        gowait = false;
-                                    }
-                                    if (Utility.py(conto.x / 100, checkpoints.opx[0] / 100, conto.z / 100,
-                                            checkpoints.opz[0] / 100) < 25) {
-                                        afta = true;
-                                        gowait = false;
-                                        attack = 200;
-                                        acr = 0;
-                                    }
-                                    if (checkpoints.clear[0] == 21 && oupnt != 125) {
-                                        gowait = false;
-                                    }
-                                }
-                                if (checkpoints.clear[0] >= 11 && !gowait
-                                        || madness.power < 60F && checkpoints.clear[0] < 21) {
-                                    flag4 = true;
-                                    if (!exitattack) {
-                                        oupnt = -1;
-                                        exitattack = true;
-                                    }
-                                } else if (exitattack) {
-                                    exitattack = false;
-                                }
-                            }
-                            if (madness.cn == 11) {
-                                flag4 = true;
-                            }
-                            if (flag4) {
-                                if (oupnt == -1) {
-                                    int l4 = -10;
-                                    for (int k6 = 0; k6 < checkpoints.n; k6++) {
-                                        if (checkpoints.typ[k6] == -4 && (Utility.py(conto.x / 100, checkpoints.x[k6] / 100,
-                                                conto.z / 100, checkpoints.z[k6] / 100) < l4
-                                                && Medium.random() > 0.59999999999999998D || l4 == -10)) {
-                                            l4 = Utility.py(conto.x / 100, checkpoints.x[k6] / 100, conto.z / 100,
-                                                    checkpoints.z[k6] / 100);
-                                            oupnt = k6;
-                                        }
-                                    }
-
-                                    oupnt--;
-                                    if (i < 0) {
-                                        oupnt += checkpoints.n;
-                                    }
-                                }
-                                if (oupnt >= 0 && oupnt < checkpoints.n) {
-                                    i = oupnt;
-                                    if (Utility.py(conto.x / 100, checkpoints.x[i] / 100, conto.z / 100,
-                                            checkpoints.z[i] / 100) < 800) {
-                                        oupnt = -(int) (75F + Medium.random() * 200F);
-                                        runbul = (int) (50F + Medium.random() * 100F);
-                                    }
-                                }
-                                if (oupnt < -1) {
-                                    oupnt++;
-                                }
-                                if (runbul != 0) {
-                                    runbul--;
-                                }
-                            }
-                        }
-                        madness.nofocus = true;
-                    }
-                    if (checkpoints.stage != 17) {
-                        if (checkpoints.stage == 9 || checkpoints.stage == 8 && madness.pcleared == 73
-                                || checkpoints.stage == 16) {
-                            forget = true;
-                        }
-                        if ((madness.missedcp == 0 || forget || trfix == 4) && trfix != 0) {
-                            byte byte1 = 0;
-                            if (checkpoints.stage == 15 || checkpoints.stage == 16) {
-                                byte1 = 3;
-                            }
-                            if (trfix == 2) {
-                                int i5 = -10;
-                                int l6 = 0;
-                                for (int l7 = byte1; l7 < checkpoints.fn; l7++) {
-                                    if (Utility.py(conto.x / 100, checkpoints.x[fpnt[l7]] / 100, conto.z / 100,
-                                            checkpoints.z[fpnt[l7]] / 100) < i5 || i5 == -10) {
-                                        i5 = Utility.py(conto.x / 100, checkpoints.x[fpnt[l7]] / 100, conto.z / 100,
-                                                checkpoints.z[fpnt[l7]] / 100);
-                                        l6 = l7;
-                                    }
-                                }
-
-                                if (checkpoints.stage == 8 || checkpoints.stage == 12) {
-                                    l6 = 1;
-                                }
-                                i = fpnt[l6];
-                                forget = checkpoints.special[l6];
-                            }
-                            for (int j5 = byte1; j5 < checkpoints.fn; j5++) {
-                                if (Utility.py(conto.x / 100, checkpoints.x[fpnt[j5]] / 100, conto.z / 100,
-                                        checkpoints.z[fpnt[j5]] / 100) < 2000) {
-                                    forget = false;
-                                    actwait = 0;
-                                    upwait = 0;
-                                    turntyp = 2;
-                                    randtcnt = -1;
-                                    acuracy = 0;
-                                    rampp = 0;
-                                    trfix = 3;
-                                }
-                            }
-
-                            if (trfix == 3) {
-                                madness.nofocus = true;
-                            }
+                        if (tfocus) {
+                            madness.nofocus = true;
                         }
                     }
                     if (turncnt > randtcnt) {
@@ -1513,7 +940,7 @@ public class Control {
                                     / 0.017453292519943295D);
                         }
                         turncnt = 0;
-                        randtcnt = (int) (acuracy * Medium.random());
+                        randtcnt = (int) (acuracy * rnd.next());
                     } else {
                         turncnt++;
                     }
@@ -1649,14 +1076,14 @@ public class Control {
                     hold--;
                 }
             } else {
-                if (trickfase == 0) {
+                if (trickfase == 0 && decide) {
                     int k = (int) (((madness.scy[0] + madness.scy[1] + madness.scy[2] + madness.scy[3])
                             * (conto.y - 300)) / 4000F);
                     int i2 = 3;
                     if (checkpoints.stage == 15) {
                         i2 = 10;
                     }
-                    if (k > 7 && (Medium.random() > trickprf / i2 || stuntf == 4 || stuntf == 3 || stuntf == 5
+                    if (k > 7 && (rnd.next() > trickprf / i2 || stuntf == 4 || stuntf == 3 || stuntf == 5
                             || stuntf == 6 || checkpoints.stage == 16)) {
                         oxy = madness.pxy;
                         ozy = madness.pzy;
@@ -1676,14 +1103,14 @@ public class Control {
                                 udstart = 0;
                                 udswt = false;
                             }
-                        } else if (Medium.random() > Medium.random() && stuntf != 1 || stuntf == 4 || stuntf == 6
+                        } else if (rnd.next() > rnd.next() && stuntf != 1 || stuntf == 4 || stuntf == 6
                                 || stuntf == 7) {
-                            if ((Medium.random() > Medium.random() || stuntf == 2 || stuntf == 7) && stuntf != 4 && stuntf != 6) {
+                            if ((rnd.next() > rnd.next() || stuntf == 2 || stuntf == 7) && stuntf != 4 && stuntf != 6) {
                                 uddirect = -1;
                             } else {
                                 uddirect = 1;
                             }
-                            udstart = (int) (10F * Medium.random() * trickprf);
+                            udstart = (int) (10F * rnd.next() * trickprf);
                             if (stuntf == 6) {
                                 udstart = 0;
                             }
@@ -1694,39 +1121,39 @@ public class Control {
                                 apunch = 20;
                                 oupnt = 70;
                             }
-                            if (Medium.random() > 0.84999999999999998D && stuntf != 4 && stuntf != 3 && stuntf != 6
+                            if (rnd.next() > 0.84999999999999998D && stuntf != 4 && stuntf != 3 && stuntf != 6
                                     && checkpoints.stage != 16) {
                                 udswt = true;
                             }
-                            if (Medium.random() > trickprf + 0.3F && stuntf != 4 && stuntf != 6) {
-                                if (Medium.random() > Medium.random()) {
+                            if (rnd.next() > trickprf + 0.3F && stuntf != 4 && stuntf != 6) {
+                                if (rnd.next() > rnd.next()) {
                                     lrdirect = -1;
                                 } else {
                                     lrdirect = 1;
                                 }
-                                lrstart = (int) (30F * Medium.random());
-                                if (Medium.random() > 0.75D) {
+                                lrstart = (int) (30F * rnd.next());
+                                if (rnd.next() > 0.75D) {
                                     lrswt = true;
                                 }
                             }
                         } else {
-                            if (Medium.random() > Medium.random()) {
+                            if (rnd.next() > rnd.next()) {
                                 lrdirect = -1;
                             } else {
                                 lrdirect = 1;
                             }
-                            lrstart = (int) (10F * Medium.random() * trickprf);
-                            if (Medium.random() > 0.75D && checkpoints.stage != 16) {
+                            lrstart = (int) (10F * rnd.next() * trickprf);
+                            if (rnd.next() > 0.75D && checkpoints.stage != 16) {
                                 lrswt = true;
                             }
-                            if (Medium.random() > trickprf + 0.3F) {
-                                if (Medium.random() > Medium.random()) {
+                            if (rnd.next() > trickprf + 0.3F) {
+                                if (rnd.next() > rnd.next()) {
                                     uddirect = -1;
                                 } else {
                                     uddirect = 1;
                                 }
-                                udstart = (int) (30F * Medium.random());
-                                if (Medium.random() > 0.84999999999999998D) {
+                                udstart = (int) (30F * rnd.next());
+                                if (rnd.next() > 0.84999999999999998D) {
                                     udswt = true;
                                 }
                             }
@@ -1854,7 +1281,7 @@ public class Control {
                             swat = 2;
                         }
                     } else if (swat == 2) {
-                        if (madness.capsized && Medium.random() > mustland) {
+                        if (madness.capsized && rnd.next() > mustland) {
                             if (udbare) {
                                 lrbare = true;
                                 udbare = false;
@@ -1895,7 +1322,7 @@ public class Control {
                                             down = true;
                                         }
                                     }
-                                } else if (Medium.random() > mustland) {
+                                } else if (rnd.next() > mustland) {
                                     up = true;
                                 }
                                 onced = true;
@@ -1919,7 +1346,7 @@ public class Control {
                                         down = true;
                                     }
                                 }
-                            } else if (Medium.random() > mustland) {
+                            } else if (rnd.next() > mustland) {
                                 down = true;
                             }
                             onceu = true;
@@ -1958,7 +1385,7 @@ public class Control {
                                             right = true;
                                         }
                                     }
-                                } else if (Medium.random() > mustland) {
+                                } else if (rnd.next() > mustland) {
                                     right = true;
                                 }
                                 oncel = true;
@@ -1982,7 +1409,7 @@ public class Control {
                                         right = true;
                                     }
                                 }
-                            } else if (Medium.random() > mustland) {
+                            } else if (rnd.next() > mustland) {
                                 left = true;
                             }
                             oncer = true;
@@ -1993,8 +1420,605 @@ public class Control {
         }
     }
 
+    /**
+     * Chooses the point to head for: skipping or taking ramps, the stage's
+     * shortcuts, waiting spots and fix hoops. This is the part of the AI the
+     * scheduler can run every few ticks; the point is kept for the ticks in
+     * between.
+     */
+    private int target(Madness madness, ContO conto, CheckPoints checkpoints) {
+        int i = madness.point;
+        int k1 = 50;
+        if (checkpoints.stage == 8) {
+            k1 = 20;
+        }
+        if (checkpoints.stage == 15) {
+            k1 = 40;
+        }
+        if (checkpoints.stage == 16) {
+            k1 = 20;
+        }
+        if (!bulistc || trfix == 2 || trfix == 3 || trfix == 4 || madness.power < k1) {
+            if (rampp == 1 && checkpoints.typ[i] <= 0) {
+                int l2 = i + 1;
+                if (l2 == checkpoints.n) {
+                    l2 = 0;
+                }
+                if (checkpoints.typ[l2] == -2) {
+                    i = l2;
+                }
+            }
+            if (rampp == -1 && checkpoints.typ[i] == -2 && ++i == checkpoints.n) {
+                i = 0;
+            }
+            if (rnd.next() > skiplev) {
+                int i3 = i;
+                boolean flag5 = false;
+                if (checkpoints.typ[i3] > 0) {
+                    flag5 = madness.clear != checkpoints.nav.rank(i3) + madness.nlaps * checkpoints.nsp;
+                }
+                while (checkpoints.typ[i3] == 0 || checkpoints.typ[i3] == -1 || checkpoints.typ[i3] == -3
+                        || flag5) {
+                    i = i3;
+                    if (++i3 == checkpoints.n) {
+                        i3 = 0;
+                    }
+                    flag5 = false;
+                    if (checkpoints.typ[i3] > 0) {
+                        flag5 = madness.clear != checkpoints.nav.rank(i3) + madness.nlaps * checkpoints.nsp;
+                    }
+                }
+            } else if (rnd.next() > skiplev) {
+                while (checkpoints.typ[i] == -1) {
+                    if (++i == checkpoints.n) {
+                        i = 0;
+                    }
+                }
+            }
+            if (checkpoints.stage == 8 && madness.pcleared == 73 && trfix == 0 && madness.clear != 0) {
+                i = 10;
+            }
+            if (checkpoints.stage == 9 && madness.pcleared == 18 && trfix == 0) {
+                i = 27;
+            }
+            if (checkpoints.stage == 11) {
+                if (madness.pcleared == 5 && trfix == 0 && madness.power < 70F) {
+                    if (i <= 16) {
+                        i = 16;
+                    } else {
+                        i = 21;
+                    }
+                }
+                if (madness.pcleared == 50) {
+                    i = 57;
+                }
+            }
+            if (checkpoints.stage == 12 && (madness.pcleared == 27 || madness.pcleared == 37)) {
+                while (checkpoints.typ[i] == -1) {
+                    if (++i == checkpoints.n) {
+                        i = 0;
+                    }
+                }
+            }
+            if (checkpoints.stage == 13) {
+                while (checkpoints.typ[i] == -1) {
+                    if (++i == checkpoints.n) {
+                        i = 0;
+                    }
+                }
+            }
+            if (checkpoints.stage == 14) {
+                while (checkpoints.typ[i] == -1) {
+                    if (++i == checkpoints.n) {
+                        i = 0;
+                    }
+                }
+                if (!madness.gtouch) {
+                    while (checkpoints.typ[i] == -2) {
+                        if (++i == checkpoints.n) {
+                            i = 0;
+                        }
+                    }
+                }
+                if (oupnt >= 68) {
+                    i = 70;
+                } else {
+                    oupnt = i;
+                }
+            }
+            if (checkpoints.stage == 15) {
+                if (madness.pcleared != 91 && checkpoints.pos[0] < checkpoints.pos[madness.im]
+                        && madness.cn != 13
+                        || checkpoints.pos[madness.im] == 0
+                        && (madness.clear == 12 || madness.clear == 20)) {
+                    while (checkpoints.typ[i] == -4) {
+                        if (++i == checkpoints.n) {
+                            i = 0;
+                        }
+                    }
+                }
+                if (madness.pcleared == 9) {
+                    if (Utility.py(conto.x / 100, 297, conto.z / 100, 347) < 400) {
+                        oupnt = 1;
+                    }
+                    if (oupnt == 1 && i < 22) {
+                        i = 22;
+                    }
+                }
+                if (madness.pcleared == 67) {
+                    if (Utility.py(conto.x / 100, 28, conto.z / 100, 494) < 4000) {
+                        oupnt = 2;
+                    }
+                    if (oupnt == 2) {
+                        i = 76;
+                    }
+                }
+                if (madness.pcleared == 76) {
+                    if (Utility.py(conto.x / 100, -50, conto.z / 100, 0) < 2000) {
+                        oupnt = 3;
+                    }
+                    if (oupnt == 3) {
+                        i = 91;
+                    } else {
+                        i = 89;
+                    }
+                }
+            }
+            if (checkpoints.stage == 16) {
+                if (madness.pcleared == 128) {
+                    if (Utility.py(conto.x / 100, 0, conto.z / 100, 229) < 1500 || conto.z > 23000) {
+                        oupnt = 128;
+                    }
+                    if (oupnt != 128) {
+                        i = 3;
+                    }
+                }
+                if (madness.pcleared == 8) {
+                    if (Utility.py(conto.x / 100, -207, conto.z / 100, 549) < 1500 || conto.x < -20700) {
+                        oupnt = 8;
+                    }
+                    if (oupnt != 8) {
+                        i = 12;
+                    }
+                }
+                if (madness.pcleared == 33) {
+                    if (Utility.py(conto.x / 100, -60, conto.z / 100, 168) < 250 || conto.z > 17000) {
+                        oupnt = 331;
+                    }
+                    if (Utility.py(conto.x / 100, -112, conto.z / 100, 414) < 10000 || conto.z > 40000) {
+                        oupnt = 332;
+                    }
+                    if (oupnt != 331 && oupnt != 332) {
+                        if (trfix != 1) {
+                            i = 38;
+                        } else {
+                            i = 39;
+                        }
+                    }
+                    if (oupnt == 331) {
+                        i = 71;
+                    }
+                }
+                if (madness.pcleared == 42) {
+                    if (Utility.py(conto.x / 100, -269, conto.z / 100, 493) < 100 || conto.x < -27000) {
+                        oupnt = 142;
+                    }
+                    if (oupnt != 142) {
+                        i = 47;
+                    }
+                }
+                if (madness.pcleared == 51) {
+                    if (Utility.py(conto.x / 100, -352, conto.z / 100, 260) < 100 || conto.z < 25000) {
+                        oupnt = 511;
+                    }
+                    if (Utility.py(conto.x / 100, -325, conto.z / 100, 10) < 2000 || conto.x > -32000) {
+                        oupnt = 512;
+                    }
+                    if (oupnt != 511 && oupnt != 512) {
+                        i = 80;
+                    }
+                    if (oupnt == 511) {
+                        i = 61;
+                    }
+                }
+                if (madness.pcleared == 77) {
+                    if (Utility.py(conto.x / 100, -371, conto.z / 100, 319) < 100 || conto.z < 31000) {
+                        oupnt = 77;
+                    }
+                    if (oupnt != 77) {
+                        i = 78;
+                        madness.nofocus = true;
+                    }
+                }
+                if (madness.pcleared == 105) {
+                    if (Utility.py(conto.x / 100, -179, conto.z / 100, 10) < 2300 || conto.z < 1050) {
+                        oupnt = 105;
+                    }
+                    if (oupnt != 105) {
+                        i = 65;
+                    } else {
+                        i = 125;
+                    }
+                }
+                if (trfix == 3) {
+                    if (Utility.py(conto.x / 100, -52, conto.z / 100, 448) < 100 || conto.z > 45000) {
+                        oupnt = 176;
+                    }
+                    if (oupnt != 176) {
+                        i = 41;
+                    } else {
+                        i = 43;
+                    }
+                }
+                if (checkpoints.clear[madness.im] - checkpoints.clear[0] >= 2
+                        && Utility.py(conto.x / 100, checkpoints.opx[0] / 100, conto.z / 100,
+                        checkpoints.opz[0] / 100) < 1000 + avoidnlev) {
+                    int j4 = conto.xz;
+                    if (zyinv) {
+                        j4 += 180;
+                    }
+                    for (; j4 < 0; j4 += 360) {
+                    }
+                    for (; j4 > 180; j4 -= 360) {
+                    }
+                    char c3 = '\0';
+                    if (checkpoints.opx[0] - conto.x >= 0) {
+                        c3 = '\264';
+                    }
+                    int k7;
+                    for (k7 = (int) (90 + c3 + Math
+                            .atan((double) (checkpoints.opz[0] - conto.z)
+                                    / (double) (checkpoints.opx[0] - conto.x))
+                            / 0.017453292519943295D); k7 < 0; k7 += 360) {
+                    }
+                    for (; k7 > 180; k7 -= 360) {
+                    }
+                    int j8 = Math.abs(j4 - k7);
+                    if (j8 > 180) {
+                        j8 = Math.abs(j8 - 360);
+                    }
+                    if (j8 < 90) {
+                        wall = 0;
+                    }
+                }
+            }
+            if (rampp == 2) {
+                int j3 = i + 1;
+                if (j3 == checkpoints.n) {
+                    j3 = 0;
+                }
+                if (checkpoints.typ[j3] == -2 && i != madness.point && --i < 0) {
+                    i += checkpoints.n;
+                }
+            }
+            if (bulistc) {
+                madness.nofocus = true;
+                if (gowait) {
+                    gowait = false;
+                }
+            }
+        } else {
+            if (checkpoints.stage != 15 && checkpoints.stage != 16 || runbul == 0) {
+                if ((i -= 2) < 0) {
+                    i += checkpoints.n;
+                }
+                while (checkpoints.typ[i] == -4) {
+                    if (--i < 0) {
+                        i += checkpoints.n;
+                    }
+                }
+            }
+            if (checkpoints.stage == 11) {
+                if (i >= 14 && i <= 19) {
+                    i = 13;
+                }
+                if (oupnt == 72 && i != 56) {
+                    i = 57;
+                } else if (oupnt == 54 && i != 52) {
+                    i = 53;
+                } else if (oupnt == 39 && i != 37) {
+                    i = 38;
+                } else {
+                    oupnt = i;
+                }
+            }
+            if (checkpoints.stage == 12) {
+                if (!gowait) {
+                    if (checkpoints.clear[0] == 0) {
+                        wtx = -3500;
+                        wtz = 19000;
+                        frx = -3500;
+                        frz = 39000;
+                        frad = 12000;
+                        oupnt = 37;
+                        gowait = true;
+                        afta = false;
+                    }
+                    if (checkpoints.clear[0] == 7) {
+                        wtx = -44800;
+                        wtz = 40320;
+                        frx = -44800;
+                        frz = 34720;
+                        frad = 30000;
+                        oupnt = 27;
+                        gowait = true;
+                        afta = false;
+                    }
+                    if (checkpoints.clear[0] == 10) {
+                        wtx = 0;
+                        wtz = 48739;
+                        frx = 0;
+                        frz = 38589;
+                        frad = 0x15f90;
+                        oupnt = 55;
+                        gowait = true;
+                        afta = false;
+                    }
+                    if (checkpoints.clear[0] == 14) {
+                        wtx = -3500;
+                        wtz = 19000;
+                        frx = -14700;
+                        frz = 39000;
+                        frad = 45000;
+                        oupnt = 37;
+                        gowait = true;
+                        afta = false;
+                    }
+                    if (checkpoints.clear[0] == 18) {
+                        wtx = -48300;
+                        wtz = -4550;
+                        frx = -48300;
+                        frz = 5600;
+                        frad = 0x15f90;
+                        oupnt = 17;
+                        gowait = true;
+                        afta = false;
+                    }
+                }
+                if (gowait) {
+                    waitspot(madness, conto);
+                    if (checkpoints.pcleared == oupnt && Utility.py(checkpoints.opx[0] / 100, frx / 100,
+                            checkpoints.opz[0] / 100, frz / 100) < frad) {
+                        afta = true;
+                        gowait = false;
+                    }
+                    if (Utility.py(conto.x / 100, checkpoints.opx[0] / 100, conto.z / 100,
+                            checkpoints.opz[0] / 100) < 25) {
+                        afta = true;
+                        gowait = false;
+                        attack = 200;
+                        acr = 0;
+                    }
+                }
+            }
+            if (checkpoints.stage == 15) {
+                if (oupnt == -1) {
+                    int k4 = checkpoints.nav.nearestRamp(conto.x, conto.z);
+                    if (k4 != -1) {
+                        oupnt = k4;
+                    }
+
+                    oupnt--;
+                    if (i < 0) {
+                        oupnt += checkpoints.n;
+                    }
+                }
+                if (oupnt >= 0 && oupnt < checkpoints.n) {
+                    i = oupnt;
+                    if (Utility.py(conto.x / 100, checkpoints.x[i] / 100, conto.z / 100,
+                            checkpoints.z[i] / 100) < 800) {
+                        oupnt = -(int) (75F + rnd.next() * 200F);
+                        runbul = (int) (50F + rnd.next() * 100F);
+                    }
+                }
+                if (oupnt < -1) {
+                    oupnt++;
+                }
+                if (runbul != 0) {
+                    runbul--;
+                }
+            }
+            if (checkpoints.stage == 16) {
+                boolean flag4 = false;
+                if (madness.cn == 13) {
+                    if (!gowait) {
+                        if (checkpoints.clear[0] == 1) {
+                            if (rnd.next() > 0.5D) {
+                                wtx = -14000;
+                                wtz = 48000;
+                                frx = -5600;
+                                frz = 47600;
+                                frad = 0x157c0;
+                                oupnt = 33;
+                            } else {
+                                wtx = -5600;
+                                wtz = 8000;
+                                frx = -7350;
+                                frz = -4550;
+                                frad = 22000;
+                                oupnt = 15;
+                            }
+                            gowait = true;
+                            afta = false;
+                        }
+                        if (checkpoints.clear[0] == 4) {
+                            wtx = -12700;
+                            wtz = 14000;
+                            frx = -31000;
+                            frz = 1050;
+                            frad = 11000;
+                            oupnt = 51;
+                            gowait = true;
+                            afta = false;
+                        }
+                        if (checkpoints.clear[0] == 14) {
+                            wtx = -35350;
+                            wtz = 6650;
+                            frx = -48300;
+                            frz = 54950;
+                            frad = 11000;
+                            oupnt = 15;
+                            gowait = true;
+                            afta = false;
+                        }
+                        if (checkpoints.clear[0] == 17) {
+                            wtx = -42700;
+                            wtz = 41000;
+                            frx = -40950;
+                            frz = 49350;
+                            frad = 7000;
+                            oupnt = 42;
+                            gowait = true;
+                            afta = false;
+                        }
+                        if (checkpoints.clear[0] == 21) {
+                            wtx = -1750;
+                            wtz = -15750;
+                            frx = -25900;
+                            frz = -14000;
+                            frad = 11000;
+                            oupnt = 125;
+                            gowait = true;
+                            afta = false;
+                        }
+                    }
+                    if (gowait) {
+                        waitspot(madness, conto);
+                        if (checkpoints.pcleared == oupnt && Utility.py(checkpoints.opx[0] / 100, frx / 100,
+                                checkpoints.opz[0] / 100, frz / 100) < frad) {
+                            runbul = 0;
+                            afta = true;
+                            gowait = false;
+                        }
+                        if (Utility.py(conto.x / 100, checkpoints.opx[0] / 100, conto.z / 100,
+                                checkpoints.opz[0] / 100) < 25) {
+                            afta = true;
+                            gowait = false;
+                            attack = 200;
+                            acr = 0;
+                        }
+                        if (checkpoints.clear[0] == 21 && oupnt != 125) {
+                            gowait = false;
+                        }
+                    }
+                    if (checkpoints.clear[0] >= 11 && !gowait
+                            || madness.power < 60F && checkpoints.clear[0] < 21) {
+                        flag4 = true;
+                        if (!exitattack) {
+                            oupnt = -1;
+                            exitattack = true;
+                        }
+                    } else if (exitattack) {
+                        exitattack = false;
+                    }
+                }
+                if (madness.cn == 11) {
+                    flag4 = true;
+                }
+                if (flag4) {
+                    if (oupnt == -1) {
+                        int l4 = -10;
+                        for (int j8 = 0; j8 < checkpoints.nav.hoops(); j8++) {
+                            int k6 = checkpoints.nav.hoop(j8);
+                            if (Utility.py(conto.x / 100, checkpoints.x[k6] / 100,
+                                    conto.z / 100, checkpoints.z[k6] / 100) < l4
+                                    && rnd.next() > 0.59999999999999998D || l4 == -10) {
+                                l4 = Utility.py(conto.x / 100, checkpoints.x[k6] / 100, conto.z / 100,
+                                        checkpoints.z[k6] / 100);
+                                oupnt = k6;
+                            }
+                        }
+
+                        oupnt--;
+                        if (i < 0) {
+                            oupnt += checkpoints.n;
+                        }
+                    }
+                    if (oupnt >= 0 && oupnt < checkpoints.n) {
+                        i = oupnt;
+                        if (Utility.py(conto.x / 100, checkpoints.x[i] / 100, conto.z / 100,
+                                checkpoints.z[i] / 100) < 800) {
+                            oupnt = -(int) (75F + rnd.next() * 200F);
+                            runbul = (int) (50F + rnd.next() * 100F);
+                        }
+                    }
+                    if (oupnt < -1) {
+                        oupnt++;
+                    }
+                    if (runbul != 0) {
+                        runbul--;
+                    }
+                }
+            }
+            madness.nofocus = true;
+        }
+        if (checkpoints.stage != 17) {
+            if (checkpoints.stage == 9 || checkpoints.stage == 8 && madness.pcleared == 73
+                    || checkpoints.stage == 16) {
+                forget = true;
+            }
+            if ((madness.missedcp == 0 || forget || trfix == 4) && trfix != 0) {
+                byte byte1 = 0;
+                if (checkpoints.stage == 15 || checkpoints.stage == 16) {
+                    byte1 = 3;
+                }
+                if (trfix == 2) {
+                    int i5 = -10;
+                    int l6 = 0;
+                    for (int l7 = byte1; l7 < checkpoints.fn; l7++) {
+                        if (Utility.py(conto.x / 100, checkpoints.x[fpnt[l7]] / 100, conto.z / 100,
+                                checkpoints.z[fpnt[l7]] / 100) < i5 || i5 == -10) {
+                            i5 = Utility.py(conto.x / 100, checkpoints.x[fpnt[l7]] / 100, conto.z / 100,
+                                    checkpoints.z[fpnt[l7]] / 100);
+                            l6 = l7;
+                        }
+                    }
+
+                    if (checkpoints.stage == 8 || checkpoints.stage == 12) {
+                        l6 = 1;
+                    }
+                    i = fpnt[l6];
+                    forget = checkpoints.special[l6];
+                }
+                for (int j5 = byte1; j5 < checkpoints.fn; j5++) {
+                    if (Utility.py(conto.x / 100, checkpoints.x[fpnt[j5]] / 100, conto.z / 100,
+                            checkpoints.z[fpnt[j5]] / 100) < 2000) {
+                        forget = false;
+                        actwait = 0;
+                        upwait = 0;
+                        turntyp = 2;
+                        randtcnt = -1;
+                        acuracy = 0;
+                        rampp = 0;
+                        trfix = 3;
+                    }
+                }
+
+                if (trfix == 3) {
+                    madness.nofocus = true;
+                }
+            }
+        }
+        tpnt = i;
+        tfocus = madness.nofocus;
+        return i;
+    }
+
+    /* slows down near the spot it waits at for the player, and stops on it */
+    private void waitspot(Madness madness, ContO conto) {
+        if (Utility.py(conto.x / 100, wtx / 100, conto.z / 100, wtz / 100) < 10000 && madness.speed > 50F) {
+            up = false;
+        }
+        if (Utility.py(conto.x / 100, wtx / 100, conto.z / 100, wtz / 100) < 200) {
+            up = false;
+            handb = true;
+        }
+    }
+
     public void reset(CheckPoints checkpoints, int i) {
         pan = 0;
+        tpnt = -1;
+        tfocus = false;
         attack = 0;
         acr = 0;
         afta = false;
@@ -2029,8 +2053,8 @@ public class Control {
         }
         if (checkpoints.stage == 12) {
             if (i != 13) {
-                hold = (int) (20F + 10F * Medium.random());
-                revstart = (int) (10F + 10F * Medium.random());
+                hold = (int) (20F + 10F * rnd.next());
+                revstart = (int) (10F + 10F * rnd.next());
             } else {
                 hold = 5;
             }
@@ -2051,16 +2075,9 @@ public class Control {
         }
         if (checkpoints.stage != 9 && checkpoints.stage != 16) {
             for (int j = 0; j < checkpoints.fn; j++) {
-                int l = -10;
-                for (int i1 = 0; i1 < checkpoints.n; i1++) {
-                    if (Utility.py(checkpoints.fx[j] / 100, checkpoints.x[i1] / 100, checkpoints.fz[j] / 100,
-                            checkpoints.z[i1] / 100) < l || l == -10) {
-                        l = Utility.py(checkpoints.fx[j] / 100, checkpoints.x[i1] / 100, checkpoints.fz[j] / 100,
-                                checkpoints.z[i1] / 100);
-                        fpnt[j] = i1;
-                    }
+                if (checkpoints.n != 0) {
+                    fpnt[j] = checkpoints.nav.fixnear(j);
                 }
-
             }
 
             for (int k = 0; k < checkpoints.fn; k++) {
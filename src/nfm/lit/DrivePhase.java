@@ -0,0 +1,97 @@
+package nfm.lit;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs Madness.drive for every car of a tick. Serially this is the old loop.
+ * In parallel mode the cars whose drive touches shared state (see
+ * {@link Madness#drivesShared}) are driven first on the calling thread, in
+ * car order, and the rest are then split over a ForkJoinPool in chunks. A
+ * car's drive otherwise reads only the stage and writes only its own car,
+ * Control and Record slots, and each car draws from its own random
+ * sequence, so the result is the same as the serial loop.
+ */
+public class DrivePhase {
+    /* cars per task */
+    private static final int CHUNK = 4;
+
+    private static ForkJoinPool pool;
+
+    private final boolean parallel;
+    private int[] rest = new int[0];
+    private int nrest = 0;
+
+    private Madness[] madness;
+    private Control[] u;
+    private ContO[] conto;
+    private Trackers trackers;
+    private CheckPoints checkpoints;
+
+    public DrivePhase(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public void drive(Madness[] madness, Control[] u, ContO[] conto, Trackers trackers, CheckPoints checkpoints,
+                      int count) {
+        if (!parallel || count <= CHUNK) {
+            for (int i = 0; i < count; i++) {
+                madness[i].drive(u[i], conto[i], trackers, checkpoints);
+            }
+            return;
+        }
+        if (rest.length < count) {
+            rest = new int[count];
+        }
+        nrest = 0;
+        for (int i = 0; i < count; i++) {
+            if (madness[i].drivesShared()) {
+                madness[i].drive(u[i], conto[i], trackers, checkpoints);
+            } else {
+                rest[nrest++] = i;
+            }
+        }
+        if (nrest == 0) {
+            return;
+        }
+        this.madness = madness;
+        this.u = u;
+        this.conto = conto;
+        this.trackers = trackers;
+        this.checkpoints = checkpoints;
+        pool().invoke(new Cars(0, nrest));
+    }
+
+    /** The pool the simulation's parallel phases share, one thread per core. */
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /* splits the car range until a chunk is left */
+    private class Cars extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        Cars(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                for (int k = from; k < to; k++) {
+                    int i = rest[k];
+                    madness[i].drive(u[i], conto[i], trackers, checkpoints);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Cars(from, mid), new Cars(mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package nfm.lit;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Regression test for frame rate leaking into the fixed tick race.
+ *
+ * Drawing a car moves state the race reads: its on-screen distance, and the
+ * fix hoop count Madness.drive repairs the car on. This runs the same race
+ * on a flat test stage, with a row of fix hoops the damaged grid drives
+ * through and the camera following the first car, three times, the way GameSparker's
+ * fixed tick loop does: drawing every tick once, drawing three more frames
+ * between ticks through {@link TickClock#blend}, and skipping the frame of
+ * every fourth tick as a slow frame's catch-up does. It checks that all
+ * three give the same {@link StateHash} on every tick.
+ *
+ * Run from the project root, with the sources on the classpath for the
+ * XtGraphics images.
+ */
+public class FixedStepTest {
+
+    private static final int CARS = 7;
+    private static final int TICKS = 1200;
+    private static final long SEED = 7L;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Fixed Step Test ===\n");
+
+        StateHash once = new StateHash();
+        StateHash often = new StateHash();
+        StateHash skipping = new StateHash();
+        int flashes = race(once, 1, 0);
+        race(often, 4, 0);
+        race(skipping, 2, 4);
+
+        System.out.println("Ticks: " + once.size());
+        System.out.println("Ticks a car in view was in a fix hoop: " + flashes);
+        boolean passed = true;
+        if (flashes == 0) {
+            System.out.println("❌ FAIL: no car went through a fix hoop in view, so nothing was tested");
+            passed = false;
+        }
+        int tick = StateHash.diverge(once, often);
+        if (tick != -1) {
+            System.out.println("❌ FAIL: four frames a tick differ from one from tick " + tick);
+            passed = false;
+        }
+        tick = StateHash.diverge(once, skipping);
+        if (tick != -1) {
+            System.out.println("❌ FAIL: skipping frames differs from drawing every tick from tick " + tick);
+            passed = false;
+        }
+        if (passed) {
+            System.out.println("✅ PASS: the race is the same however many frames are drawn");
+        } else {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the race drawing {@code frames} frames a tick, and none for every
+     * {@code skip}th tick if {@code skip} is not 0. Returns the number of
+     * ticks on which a car in view was going through a fix hoop.
+     */
+    private static int race(StateHash hashes, int frames, int skip) throws IOException {
+        new Medium();
+        BufferedImage image = new BufferedImage(GameFacts.screenWidth, GameFacts.screenHeight,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D rd = image.createGraphics();
+        XtGraphics xt = new XtGraphics(rd, null);
+        xt.mutes = true;
+        Record record = new Record();
+        Trackers trackers = new Trackers();
+        trackers.nt = 0;
+        trackers.index();
+        ContO[] models = loadModels(trackers);
+        EnhancedCarSystem.GridPosition[] grid = EnhancedCarSystem.generateGridPositions();
+        Madness[] madness = new Madness[CARS];
+        ContO[] conto = new ContO[51];
+        Control[] u = new Control[CARS];
+        Xoroshiro sim = new Xoroshiro(SEED, Xoroshiro.SIM);
+        for (int i = 0; i < CARS; i++) {
+            int cn = i % models.length;
+            madness[i] = new Madness(record, xt, i);
+            madness[i].stat = new Stat(cn);
+            madness[i].seed(sim.nextLong());
+            conto[i] = new ContO(models[cn], grid[i].x, 250 - models[cn].grat, grid[i].z, 0);
+            u[i] = new Control();
+            u[i].seed(sim.nextLong());
+        }
+        for (int i = CARS; i < conto.length; i++) {
+            conto[i] = conto[0];
+        }
+        CheckPoints checkpoints = testStage(conto[0].y);
+        for (int i = 0; i < CARS; i++) {
+            madness[i].reseto(i % models.length, conto[i], checkpoints);
+            /* damaged, so that whether the hoops repair a car shows in the race */
+            madness[i].hitmag = madness[i].stat.maxmag / 2;
+        }
+        record.reset(conto);
+        CarBroadphase broadphase = new CarBroadphase();
+        DrivePhase drivePhase = new DrivePhase(false);
+        TickClock clock = new TickClock(SimConfig.TICK_MS, SimConfig.TICK_MS);
+        Medium.follow(conto[0], madness[0].cxz, 0);
+
+        int flashes = 0;
+        for (int t = 0; t < TICKS; t++) {
+            for (int i = 0; i < CARS; i++) {
+                if (madness[i].newcar) {
+                    int xz = conto[i].xz;
+                    int xy = conto[i].xy;
+                    int zy = conto[i].zy;
+                    conto[i] = new ContO(models[madness[i].cn], conto[i].x, conto[i].y, conto[i].z, 0);
+                    conto[i].xz = xz;
+                    conto[i].xy = xy;
+                    conto[i].zy = zy;
+                    madness[i].newcar = false;
+                }
+            }
+            Medium.settle();
+            boolean flash = false;
+            for (int i = 0; i < CARS; i++) {
+                if (skip != 0 && t % skip == skip - 1) {
+                    conto[i].look();
+                } else {
+                    conto[i].d(rd);
+                }
+                flash |= conto[i].fix && conto[i].dist != 0;
+            }
+            if (flash) {
+                flashes++;
+            }
+            clock.save(conto, CARS);
+            tick(broadphase, drivePhase, madness, conto, u, record, trackers, checkpoints);
+            hashes.add(StateHash.hash(madness, conto, CARS));
+            Medium.follow(conto[0], madness[0].cxz, 0);
+            for (int f = 1; f < frames; f++) {
+                clock.blend(conto, CARS, (float) f / frames);
+                Medium.settle();
+                for (int i = 0; i < CARS; i++) {
+                    conto[i].d(rd);
+                }
+                clock.restore(conto, CARS);
+            }
+        }
+        rd.dispose();
+        return flashes;
+    }
+
+    /** The simulation part of the INGAME phase in GameSparker, with every car driven by the AI. */
+    private static void tick(CarBroadphase broadphase, DrivePhase drivePhase, Madness[] madness, ContO[] conto,
+                             Control[] u, Record record, Trackers trackers, CheckPoints checkpoints) {
+        broadphase.colide(madness, conto, CARS);
+        drivePhase.drive(madness, u, conto, trackers, checkpoints, CARS);
+        for (int i = 0; i < CARS; i++) {
+            record.rec(conto[i], i, madness[i].squash, madness[i].lastcolido, madness[i].cntdest);
+        }
+        checkpoints.checkstat(madness, conto, record, CARS);
+        for (int i = 0; i < CARS; i++) {
+            u[i].preform(madness[i], conto[i], checkpoints, trackers, CARS);
+        }
+    }
+
+    /**
+     * A flat square circuit of four checkpoints around the starting grid,
+     * with a row of fix hoops at car height {@code y} across the way to the
+     * first checkpoint.
+     */
+    private static CheckPoints testStage(int y) {
+        CheckPoints checkpoints = new CheckPoints();
+        int[][] points = {{0, 12000, 1}, {12000, 24000, 2}, {24000, 12000, 1}, {12000, -12000, 2}};
+        for (int i = 0; i < points.length; i++) {
+            checkpoints.x[i] = points[i][0];
+            checkpoints.z[i] = points[i][1];
+            checkpoints.y[i] = 250;
+            checkpoints.typ[i] = points[i][2];
+        }
+        /* the start line, which the checkpoint search wraps around on */
+        checkpoints.x[4] = 0;
+        checkpoints.z[4] = 0;
+        checkpoints.y[4] = 250;
+        checkpoints.typ[4] = 0;
+        checkpoints.n = 5;
+        checkpoints.nsp = 4;
+        checkpoints.nlaps = 1000;
+        for (int x = -1600; x <= 1600; x += 800) {
+            checkpoints.fx[checkpoints.fn] = x;
+            checkpoints.fz[checkpoints.fn] = 4000;
+            checkpoints.fy[checkpoints.fn] = y;
+            checkpoints.roted[checkpoints.fn] = false;
+            checkpoints.fn++;
+        }
+        checkpoints.index();
+        return checkpoints;
+    }
+
+    private static ContO[] loadModels(Trackers trackers) throws IOException {
+        String[] names = java.util.Arrays.copyOf(EnhancedCarSystem.ENHANCED_CAR_MODELS, 5);
+        ContO[] models = new ContO[names.length];
+        int loaded = 0;
+        try (ZipInputStream zip = new ZipInputStream(new FileInputStream("data/models.radq"))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                for (int i = 0; i < names.length; i++) {
+                    if (entry.getName().equals(names[i] + ".rad")) {
+                        models[i] = new ContO(zip.readAllBytes(), trackers);
+                        loaded++;
+                    }
+                }
+            }
+        }
+        if (loaded != names.length) {
+            throw new IOException("car models missing from data/models.radq");
+        }
+        return models;
+    }
+}
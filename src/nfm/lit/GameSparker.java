@@ -6,12 +6,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.Socket;
 import java.net.URI;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -64,6 +64,14 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
     private Graphics2D rd;
     private Graphics sg;
     private Image offImage;
+    private final RenderQueue renderQueue = new RenderQueue();
+    private final StageGrid stageGrid = new StageGrid();
+    private final CarBroadphase broadphase = new CarBroadphase();
+    private final DrivePhase drivePhase = new DrivePhase(SimConfig.PARALLEL_DRIVE);
+    private final StateHash statehash = SimConfig.HASH_LOG != null ? new StateHash() : null;
+    private final AIScheduler aischeduler = new AIScheduler(AIConfig.AI_BUDGET, AIConfig.AI_NEAR,
+            SimConfig.PARALLEL_AI);
+    private final TickClock tickClock = new TickClock(SimConfig.TICK_MS, SimConfig.FRAME_MS);
     private Thread gamer;
     private volatile boolean shouldStop = false;
     private final Control[] u;
@@ -86,24 +94,6 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
     public static int gameStateID;
     public static int ContosCount;
 
-    public String wallmodel;
-
-    public int noboffset = 10;      //this makes it so IDs are offset correctly, can be modified by stage via idoffset(x)
-    public int nobfix = carModels.length - noboffset;
-    
-    // Enhanced car system compatibility: Adjust nobfix for the 34 additional cars (50 vs 16 original)
-    // This ensures track files designed for 16-car system work with 50-car system
-    private int getCompatibleNobfix() {
-        if (carModels.length == 50) {
-            // For 50-car system, we need to adjust the offset to maintain compatibility with original track files
-            // Original: 16 cars, nobfix = 6. Enhanced: 50 cars, but tracks expect old indexing
-            return nobfix - 34; // Subtract the 34 additional cars to maintain original track compatibility
-        }
-        return nobfix;
-    }
-
-    public boolean reverseYRot = false;
-
     /**
      * Constructor for JPanel-based GameSparker
      */
@@ -275,10 +265,15 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
          */
         new FontHandler();
 
-        offImage = createImage(GameFacts.screenWidth, GameFacts.screenHeight);
+        if (SoftRaster.enabled) {
+            offImage = new BufferedImage(GameFacts.screenWidth, GameFacts.screenHeight, BufferedImage.TYPE_INT_RGB);
+        } else {
+            offImage = createImage(GameFacts.screenWidth, GameFacts.screenHeight);
+        }
         if (offImage != null) {
             sg = offImage.getGraphics();
             rd = ((Graphics2D) sg);
+            SoftRaster.bind(offImage, rd);
             rd.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
             rd.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             rd.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
@@ -319,6 +314,7 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
      */
     public void destroy() {
         stop();
+        SoftRaster.unbind();
         if (offImage != null) {
             offImage.flush();
             offImage = null;
@@ -457,41 +453,6 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
         this.cropit(graphics2d, i, i_97_);
     }
 
-    /**
-     * @param input name of model you want id of
-     * @return Position on model in array. If you spelled it wrong or if it doesn't
-     *         eist, it returns -1, so you have that to look forward to.
-     * @author Kaffeinated
-     */
-    private int getModel(String input) {
-
-        String[][] allModels = new String[][] {
-                carModels, trackModels, extraModels
-        }; /// need to have all the model arrays here
-
-        int modelId = 0;
-
-        for (int i = 0; i < allModels.length; i++) {
-            for (int j = 0; j < allModels[i].length; j++) {
-                if (Objects.equals(input, allModels[i][j])) {
-                    int addWhat = 0;
-                    if (i == 1) {
-                        addWhat = carModels.length;
-                    }
-                    if (i == 2) {
-                        addWhat = carModels.length + trackModels.length;
-                    }
-                    modelId = j + addWhat;
-                    // HLogger.info("Found model " + modelId + " matching string \"" + input +
-                    // "\"");
-                    return modelId;
-                }
-            }
-        }
-        HLogger.warn("No results for getModel | check you're speling and grammer");
-        return -1;
-    }
-
     /**
      * Loads all models
      *
@@ -504,59 +465,12 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
     private void loadbase(final ContO conto[], Trackers trackers, XtGraphics xtgraphics) {
         xtgraphics.dnload += 6;
         try {
-            ZipInputStream zipinputstream;
-            final File file = new File(new StringBuilder().append("").append("data/models.radq").toString());
-            zipinputstream = new ZipInputStream(new FileInputStream(file));
-            ZipEntry zipentry = zipinputstream.getNextEntry();
-            for (; zipentry != null; zipentry = zipinputstream.getNextEntry()) {
-                int modelId = -1;
-
-                final int carCount = carModels.length;
-                final int trackCount = trackModels.length;
-                // final int extraCount = extraModels.length;
-
-                // Debug output: Log each entry being processed
-                HLogger.info("Processing zip entry: " + zipentry.getName());
-
-                for (int car = 0; car < carModels.length; car++) {
-                    if (zipentry.getName().startsWith(carModels[car])) {
-                        modelId = car;
-                        HLogger.info("Found car model: " + carModels[car] + " at index " + car);
-                    }
-                }
-
-                for (int track = 0; track < trackModels.length; track++)
-                    if (zipentry.getName().startsWith(trackModels[track]))
-                        modelId = track + carCount;
-
-                for (int extra = 0; extra < extraModels.length; extra++)
-                    if (zipentry.getName().startsWith(extraModels[extra]))
-                        modelId = extra + trackCount + carCount;
-
-                int entireSize = (int) zipentry.getSize();
-                final byte[] modelData;
-                
-                if (entireSize <= 0) {
-                    // Size unknown, read into ByteArrayOutputStream first
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = zipinputstream.read(buffer)) != -1) {
-                        baos.write(buffer, 0, bytesRead);
-                    }
-                    modelData = baos.toByteArray();
-                } else {
-                    // Size known, read directly
-                    modelData = new byte[entireSize];
-                    int unknown1 = 0;
-                    int unknown2;
-                    for (; entireSize > 0; entireSize -= unknown2) {
-                        unknown2 = zipinputstream.read(modelData, unknown1, entireSize);
-                        unknown1 += unknown2;
-                    }
+            byte[][] modelData = StageReader.modeldata();
+            for (int modelId = 0; modelId < modelData.length; modelId++) {
+                if (modelData[modelId] != null) {
+                    conto[modelId] = new ContO(modelData[modelId], trackers);
+                    xtgraphics.dnload++;
                 }
-                conto[modelId] = new ContO(modelData, trackers);
-                xtgraphics.dnload++;
             }
             /*
              * be sure to add your added arrays here
@@ -570,7 +484,6 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
             
             HLogger.info("Contos loaded: " + (carModels.length + trackModels.length + extraModels.length));
             ContosCount = carModels.length + trackModels.length + extraModels.length;
-            zipinputstream.close();
         } catch (IOException e) {
             HLogger.error("Error Reading Models: " + e);
             e.printStackTrace();
@@ -599,8 +512,14 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
     private void loadstage(ContO aconto[], ContO aconto1[], Trackers trackers, CheckPoints checkpoints,
             XtGraphics xtgraphics, Madness amadness[], Record record, boolean custom) {
         trackers.nt = 0;
+        trackers.index();
         nob = GameFacts.numberOfPlayers;
         notb = 0;
+        long seed = SimConfig.SEED != null ? SimConfig.SEED : new Xoroshiro(System.nanoTime()).nextLong();
+        HLogger.info("Race seed: " + seed);
+        Medium.seed(seed);
+        if (statehash != null)
+            statehash.clear();
         checkpoints.n = 0;
         checkpoints.nsp = 0;
         checkpoints.fn = 0;
@@ -611,22 +530,11 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
         Medium.detailtype = 2;
         Medium.ground = 250;
 
-        reverseYRot = false;
-
-        noboffset = 10;
-        nobfix = carModels.length - noboffset;
-
-        wallmodel = "thewall";
-
         //reset noarrow and nostatus
         xtgraphics.arrowDisabled = false;
         xtgraphics.opstatusDisabled = false;
 
         view = 0;
-        int r_wall = 0;
-        int l_wall = 100;
-        int t_wall = 0;
-        int b_wall = 100;
 
         CheckPoints.customTrack = false;
 
@@ -645,341 +553,14 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
 
         String string = "";
 
+        StageReader stagereader = new StageReader(xtgraphics, nob);
         try (BufferedReader bufferedreader = new BufferedReader(new FileReader(new File(loadStage)))) {
-            for (String line; (line = bufferedreader.readLine()) != null;) {
-                line = line.trim();
-
-                if (line.startsWith("mountains"))
-                    Medium.mgen = Utility.getint("mountains", line, 0);
-                if (line.startsWith("snap"))
-                    Medium.setSnap(Utility.getint("snap", line, 0), Utility.getint("snap", line, 1),
-                            Utility.getint("snap", line, 2));
-                if (line.startsWith("sky")) {
-                    Medium.setSky(Utility.getint("sky", line, 0), Utility.getint("sky", line, 1),
-                            Utility.getint("sky", line, 2));
-                    xtgraphics.snap(checkpoints.stage);
-                }
-                if (line.startsWith("ground"))
-                    Medium.setGround(Utility.getint("ground", line, 0), Utility.getint("ground", line, 1),
-                            Utility.getint("ground", line, 2));
-                if (line.startsWith("polys"))
-                    Medium.setPolys(Utility.getint("polys", line, 0), Utility.getint("polys", line, 1),
-                            Utility.getint("polys", line, 2));
-                if (line.startsWith("fog"))
-                    Medium.setFade(Utility.getint("fog", line, 0), Utility.getint("fog", line, 1),
-                            Utility.getint("fog", line, 2));
-                if (line.startsWith("density"))
-                    Medium.fogd = Utility.getint("density", line, 0);
-                if (line.startsWith("texture")) {
-                    Medium.setTexture(Utility.getint("texture", line, 0), Utility.getint("texture", line, 1),
-                            Utility.getint("texture", line, 2),
-                            Utility.getint("texture", line, 3));
-                }
-                if (line.startsWith("clouds")) {
-                    Medium.setClouds(Utility.getint("clouds", line, 0), Utility.getint("clouds", line, 1),
-                            Utility.getint("clouds", line, 2),
-                            Utility.getint("clouds", line, 3), Utility.getint("clouds", line, 4));
-                }
-                if (line.startsWith("noclouds"))
-                    Medium.noclouds = true;
-                if (line.startsWith("fadefrom")) {
-                    Medium.fadeFrom(Utility.getint("fadefrom", line, 0));
-                    Medium.origfade = Medium.fade[0];
-                }
-                if (line.startsWith("lightson"))
-                    Medium.lightson = true;
-
-                if (line.startsWith("noarrow"))
-                    xtgraphics.arrowDisabled = true;
-                if (line.startsWith("nostatus"))
-                    xtgraphics.opstatusDisabled = true;
-
-                if (line.startsWith("idoffset")) {
-                    noboffset = Utility.getint("idoffset", line, 0);
-                    nobfix = carModels.length - noboffset;
-                }
-
-                if (line.startsWith("yrot")) {
-                    reverseYRot = true;
-                }
-
-                if (line.startsWith("set")) {
-                    int k1 = Utility.getint("set", line, 0);
-                    k1 += getCompatibleNobfix(); // Use compatibility method for enhanced car system
-                    // compute default Y (ground-height)
-                    int yVal = Medium.ground - aconto[k1].grat;
-                    int rot = Utility.getint("set", line, 3);
-                    // if there *is* a 5th comma-separated value, use that instead
-                    String inside = line.substring(line.indexOf('(') + 1, line.lastIndexOf(')'));
-                    String[] parts = inside.split("\\s*,\\s*");
-                    if (parts.length > 4) {
-                        yVal = Utility.getint("set", line, 4);
-                        if (reverseYRot) {
-                            yVal = Utility.getint("set", line, 3);
-                            rot = Utility.getint("set", line, 4);
-                        }
-                    }
-                    // now create the object, exactly as before but with our yVal
-                    aconto[nob] = new ContO(
-                        aconto[k1],
-                        Utility.getint("set", line, 1),
-                        yVal,
-                        Utility.getint("set", line, 2),
-                        rot
-                    );
-                
-                    if (line.contains(")p")) {
-                        checkpoints.x[checkpoints.n] = Utility.getint("set", line, 1);
-                        checkpoints.z[checkpoints.n] = Utility.getint("set", line, 2);
-                
-                        // same trick for the checkpoint Y (default=0)
-                        if (parts.length > 4) {
-                            checkpoints.y[checkpoints.n] = Utility.getint("set", line, 4);
-                            if (reverseYRot) {
-                                checkpoints.y[checkpoints.n] = Utility.getint("set", line, 3);
-                            }
-                        } else {
-                            checkpoints.y[checkpoints.n] = 0;
-                        }
-                
-                        checkpoints.typ[checkpoints.n] = 0;
-                        if (line.contains(")pt")) checkpoints.typ[checkpoints.n] = -1;
-                        if (line.contains(")pr")) checkpoints.typ[checkpoints.n] = -2;
-                        if (line.contains(")pl")) checkpoints.typ[checkpoints.n] = -2;
-                        if (line.contains(")po")) checkpoints.typ[checkpoints.n] = -3;
-                        if (line.contains(")ph")) checkpoints.typ[checkpoints.n] = -4;
-                
-                        checkpoints.n++;
-                        notb = nob + 1;
-                    }
-                    nob++;
-                }
-                if (line.startsWith("wall")) {
-                    String modelname = Utility.getstring("wall", line, 0);
-                    wallmodel = modelname;
-                }
-                if (line.startsWith("ds:set")) {
-                    String modelname = Utility.getstring("ds:set", line, 0);
-                    int id = getModel(modelname);
-                    int yVal = Medium.ground - aconto1[id].grat;
-                
-                    // if there *is* a 5th comma-separated value, use that instead
-                    // (splitting only the part inside the parentheses)
-                    String inside = line.substring(line.indexOf('(') + 1, line.lastIndexOf(')'));
-                    String[] parts = inside.split("\\s*,\\s*");
-                    if (parts.length > 4) {
-                        yVal = Utility.getint("ds:set", line, 4);
-                    }
-                
-                    // now create the object, exactly as before but with our yVal
-                    aconto[nob] = new ContO(
-                        aconto1[id],
-                        Utility.getint("ds:set", line, 1),
-                        yVal,
-                        Utility.getint("ds:set", line, 2),
-                        Utility.getint("ds:set", line, 3)
-                    );
-                
-                    if (line.contains(")p")) {
-                        checkpoints.x[checkpoints.n] = Utility.getint("ds:set", line, 1);
-                        checkpoints.z[checkpoints.n] = Utility.getint("ds:set", line, 2);
-                
-                        // same trick for the checkpoint Y (default=0)
-                        if (parts.length > 4) {
-                            checkpoints.y[checkpoints.n] = Utility.getint("ds:set", line, 4);
-                        } else {
-                            checkpoints.y[checkpoints.n] = 0;
-                        }
-                
-                        checkpoints.typ[checkpoints.n] = 0;
-                        if (line.contains(")pt")) checkpoints.typ[checkpoints.n] = -1;
-                        if (line.contains(")pr")) checkpoints.typ[checkpoints.n] = -2;
-                        if (line.contains(")pl")) checkpoints.typ[checkpoints.n] = -2;
-                        if (line.contains(")po")) checkpoints.typ[checkpoints.n] = -3;
-                        if (line.contains(")ph")) checkpoints.typ[checkpoints.n] = -4;
-                
-                        checkpoints.n++;
-                        notb = nob + 1;
-                    }
-                    nob++;
-                }
-                if (line.startsWith("chk")) {
-                    int l1 = Utility.getint("chk", line, 0);
-                    l1 += getCompatibleNobfix(); // Use compatibility method for enhanced car system
-                
-                    // compute default Y (ground-height)
-                    int yVal = Medium.ground - aconto1[l1].grat;
-                    int rot = Utility.getint("chk", line, 3);
-                
-                    // grab the args between '(' and ')', split on commas
-                    String inside = line.substring(line.indexOf('(') + 1, line.lastIndexOf(')'));
-                    String[] parts = inside.split("\\s*,\\s*");
-                    // if there's a 5th element, use it as Y instead
-                    if (parts.length > 4) {
-                        yVal = Utility.getint("chk", line, 4);
-                        if (reverseYRot) {
-                            yVal = Utility.getint("chk", line, 3);
-                            rot = Utility.getint("chk", line, 4);
-                        }
-                    }
-                
-                    // create your object exactly as before, but with our yVal
-                    aconto[nob] = new ContO(
-                        aconto1[l1],
-                        Utility.getint("chk", line, 1),
-                        yVal,
-                        Utility.getint("chk", line, 2),
-                        rot
-                    );
-                
-                    // now the checkpoint data:
-                    checkpoints.x[checkpoints.n] = Utility.getint("chk", line, 1);
-                    checkpoints.z[checkpoints.n] = Utility.getint("chk", line, 2);
-                    // use the same yVal
-                    checkpoints.y[checkpoints.n] = yVal;
-                
-                    // type based on rotation-arg logic unchanged
-                    if (Utility.getint("chk", line, 3) == 0)
-                        checkpoints.typ[checkpoints.n] = 1;
-                    else
-                        checkpoints.typ[checkpoints.n] = 2;
-                
-                    checkpoints.pcs = checkpoints.n;
-                    checkpoints.n++;
-                    aconto[nob].checkpoint = checkpoints.nsp + 1;
-                    checkpoints.nsp++;
-                    nob++;
-                    notb = nob;
-                }
-                if (line.startsWith("fix")) {
-                    int i2 = Utility.getint("fix", line, 0);
-                    i2 += getCompatibleNobfix(); // Use compatibility method for enhanced car system
-                    aconto[nob] = new ContO(aconto1[i2], Utility.getint("fix", line, 1), Utility.getint("fix", line, 3),
-                            Utility.getint("fix", line, 2), Utility.getint("fix", line, 4));
-                    checkpoints.fx[checkpoints.fn] = Utility.getint("fix", line, 1);
-                    checkpoints.fz[checkpoints.fn] = Utility.getint("fix", line, 2);
-                    checkpoints.fy[checkpoints.fn] = Utility.getint("fix", line, 3);
-                    aconto[nob].elec = true;
-                    if (Utility.getint("fix", line, 4) != 0) {
-                        checkpoints.roted[checkpoints.fn] = true;
-                        aconto[nob].roted = true;
-                    } else {
-                        checkpoints.roted[checkpoints.fn] = false;
-                    }
-                    checkpoints.special[checkpoints.fn] = line.contains(")s");
-                    checkpoints.fn++;
-                    nob++;
-                    notb = nob;
-                }
-                if (line.startsWith("nlaps"))
-                    checkpoints.nlaps = Utility.getint("nlaps", line, 0);
-                if (line.startsWith("name"))
-                    checkpoints.name = Utility.getstring("name", line, 0).replace('|', ',');
-                if (line.startsWith("soundtrack")) {
-                    CheckPoints.customTrack = true;
-                    CheckPoints.trackname = Utility.getstring("soundtrack", line, 0);
-                    CheckPoints.trackformat = Utility.getstring("soundtrack", line, 1);
-                    // xtGraphics.sndsize[18] = Utility.getint("soundtrack", string, 2);
-                }
-
-                int wall_id = getModel(wallmodel);
-
-                if (line.startsWith("maxr")) {
-                    int j2 = Utility.getint("maxr", line, 0);
-                    int j3 = Utility.getint("maxr", line, 1);
-                    r_wall = j3;
-                    int j4 = Utility.getint("maxr", line, 2);
-                    for (int j5 = 0; j5 < j2; j5++) {
-                        aconto[nob] = new ContO(aconto1[wall_id], j3, Medium.ground - aconto1[wall_id].grat,
-                                j5 * 4800 + j4, 0);
-                        nob++;
-                    }
-
-                    trackers.y[trackers.nt] = -5000;
-                    trackers.rady[trackers.nt] = 7100;
-                    trackers.x[trackers.nt] = j3 + 500;
-                    trackers.radx[trackers.nt] = 600;
-                    trackers.z[trackers.nt] = ((j2 * 4800) / 2 + j4) - 2400;
-                    trackers.radz[trackers.nt] = (j2 * 4800) / 2;
-                    trackers.xy[trackers.nt] = 90;
-                    trackers.zy[trackers.nt] = 0;
-                    trackers.dam[trackers.nt] = 1;
-                    trackers.nt++;
-                }
-                if (line.startsWith("maxl")) {
-                    int k2 = Utility.getint("maxl", line, 0);
-                    int k3 = Utility.getint("maxl", line, 1);
-                    l_wall = k3;
-                    int k4 = Utility.getint("maxl", line, 2);
-                    for (int k5 = 0; k5 < k2; k5++) {
-                        aconto[nob] = new ContO(aconto1[wall_id], k3, Medium.ground - aconto1[wall_id].grat,
-                                k5 * 4800 + k4, 0);
-                        nob++;
-                    }
-
-                    trackers.y[trackers.nt] = -5000;
-                    trackers.rady[trackers.nt] = 7100;
-                    trackers.x[trackers.nt] = k3 - 500;
-                    trackers.radx[trackers.nt] = 600;
-                    trackers.z[trackers.nt] = ((k2 * 4800) / 2 + k4) - 2400;
-                    trackers.radz[trackers.nt] = (k2 * 4800) / 2;
-                    trackers.xy[trackers.nt] = -90;
-                    trackers.zy[trackers.nt] = 0;
-                    trackers.dam[trackers.nt] = 1;
-                    trackers.nt++;
-                }
-
-                if (line.startsWith("maxt")) {
-                    int l2 = Utility.getint("maxt", line, 0);
-                    int l3 = Utility.getint("maxt", line, 1);
-                    t_wall = l3;
-                    int l4 = Utility.getint("maxt", line, 2);
-                    for (int l5 = 0; l5 < l2; l5++) {
-                        aconto[nob] = new ContO(aconto1[wall_id], l5 * 4800 + l4, Medium.ground - aconto1[wall_id].grat,
-                                l3, 90);
-                        nob++;
-                    }
-
-                    trackers.y[trackers.nt] = -5000;
-                    trackers.rady[trackers.nt] = 7100;
-                    trackers.z[trackers.nt] = l3 + 500;
-                    trackers.radz[trackers.nt] = 600;
-                    trackers.x[trackers.nt] = ((l2 * 4800) / 2 + l4) - 2400;
-                    trackers.radx[trackers.nt] = (l2 * 4800) / 2;
-                    trackers.zy[trackers.nt] = 90;
-                    trackers.xy[trackers.nt] = 0;
-                    trackers.dam[trackers.nt] = 1;
-                    trackers.nt++;
-                }
-                if (line.startsWith("maxb")) {
-                    int i3 = Utility.getint("maxb", line, 0);
-                    int i4 = Utility.getint("maxb", line, 1);
-                    b_wall = i4;
-                    int i5 = Utility.getint("maxb", line, 2);
-                    for (int i6 = 0; i6 < i3; i6++) {
-                        aconto[nob] = new ContO(aconto1[wall_id], i6 * 4800 + i5, Medium.ground - aconto1[wall_id].grat,
-                                i4, 90);
-                        nob++;
-                    }
-
-                    trackers.y[trackers.nt] = -5000;
-                    trackers.rady[trackers.nt] = 7100;
-                    trackers.z[trackers.nt] = i4 - 500;
-                    trackers.radz[trackers.nt] = 600;
-                    trackers.x[trackers.nt] = ((i3 * 4800) / 2 + i5) - 2400;
-                    trackers.radx[trackers.nt] = (i3 * 4800) / 2;
-                    trackers.zy[trackers.nt] = -90;
-                    trackers.xy[trackers.nt] = 0;
-                    trackers.dam[trackers.nt] = 1;
-                    trackers.nt++;
-                }
-                if (line.startsWith("detail")) {
-                    Medium.detailtype = Utility.getint("detail", line, 0);
-                }
-            }
-            Medium.newpolys(l_wall, r_wall - l_wall, b_wall, t_wall - b_wall, trackers, notb);
-            Medium.newmountains(l_wall, r_wall, b_wall, t_wall);
-            Medium.newclouds(l_wall, r_wall, b_wall, t_wall);
+            stagereader.read(bufferedreader, aconto, aconto1, trackers, checkpoints);
+            trackers.index();
+            Medium.newpolys(stagereader.lwall, stagereader.rwall - stagereader.lwall, stagereader.bwall,
+                    stagereader.twall - stagereader.bwall, trackers, stagereader.notb);
+            Medium.newmountains(stagereader.lwall, stagereader.rwall, stagereader.bwall, stagereader.twall);
+            Medium.newclouds(stagereader.lwall, stagereader.rwall, stagereader.bwall, stagereader.twall);
             Medium.newstars();
         } catch (IOException e) {
             String exceptStr = e.toString();
@@ -992,6 +573,9 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
             HLogger.error("Error loading stage " + checkpoints.stage);
             e.printStackTrace();
         }
+        nob = stagereader.nob;
+        notb = stagereader.notb;
+        stageGrid.build(aconto, GameFacts.numberOfPlayers, nob);
         if (checkpoints.stage == 16)
             Medium.lightn = 0;
         else
@@ -1019,32 +603,70 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
             xtgraphics.fase = Phase.STAGESELECT;
             mouses = 0;
         }
+        Xoroshiro sim = new Xoroshiro(seed, Xoroshiro.SIM);
         int j1 = 0;
-        do
-            u[j1].reset(checkpoints, xtgraphics.sc[j1]);
-        while (++j1 < GameFacts.numberOfPlayers);
-        xtgraphics.resetstat(checkpoints.stage);
-        j1 = 0;
         do {
-            // Only allow car model indices (0..ENHANCED_CAR_MODELS.length-1) for player and AI
-            int carModelIdx = xtgraphics.sc[j1];
-            if (carModelIdx >= 0 && carModelIdx < EnhancedCarSystem.ENHANCED_CAR_MODELS.length) {
-                // Use enhanced grid positioning system
-                EnhancedCarSystem.GridPosition pos = EnhancedCarSystem.generateGridPositions()[j1];
-                aconto[j1] = new ContO(aconto1[carModelIdx], pos.x, 250 - aconto1[carModelIdx].grat,
-                        pos.y, 0);
-                amadness[j1].reseto(carModelIdx, aconto[j1], checkpoints);
-            } else {
-                // fallback: use first car model if index is out of range
-                EnhancedCarSystem.GridPosition pos = EnhancedCarSystem.generateGridPositions()[j1];
-                aconto[j1] = new ContO(aconto1[0], pos.x, 250 - aconto1[0].grat, pos.y, 0);
-                amadness[j1].reseto(0, aconto[j1], checkpoints);
-            }
+            amadness[j1].seed(sim.nextLong());
+            u[j1].seed(sim.nextLong());
+            u[j1].reset(checkpoints, xtgraphics.sc[j1]);
         } while (++j1 < GameFacts.numberOfPlayers);
+        xtgraphics.resetstat(checkpoints.stage);
+        StageReader.grid(aconto, aconto1, xtgraphics.sc, amadness, checkpoints, GameFacts.numberOfPlayers);
         record.reset(aconto);
         System.gc();
     }
 
+    /**
+     * Swaps in a fresh model for every car flagged {@link Madness#newcar},
+     * keeping its place and angles.
+     */
+    private void newcars(Madness amadness[], ContO aconto1[], ContO aconto[]) {
+        int k3 = 0;
+        do {
+            if (amadness[k3].newcar) {
+                int j5 = aconto1[k3].xz;
+                int j6 = aconto1[k3].xy;
+                int l8 = aconto1[k3].zy;
+                aconto1[k3] = new ContO(aconto[amadness[k3].cn], aconto1[k3].x, aconto1[k3].y, aconto1[k3].z, 0);
+                aconto1[k3].xz = j5;
+                aconto1[k3].xy = j6;
+                aconto1[k3].zy = l8;
+                amadness[k3].newcar = false;
+            }
+        } while (++k3 < GameFacts.numberOfPlayers);
+    }
+
+    /**
+     * One step of the race: contact, driving, recording, checkpoints and
+     * the AI.
+     */
+    private void simtick(Madness amadness[], ContO aconto1[], Trackers trackers, CheckPoints checkpoints,
+                         Record record) {
+        broadphase.colide(amadness, aconto1, GameFacts.numberOfPlayers);
+        drivePhase.drive(amadness, u, aconto1, trackers, checkpoints, GameFacts.numberOfPlayers);
+        int l12 = 0;
+        do
+            record.rec(aconto1[l12], l12, amadness[l12].squash, amadness[l12].lastcolido, amadness[l12].cntdest);
+        while (++l12 < GameFacts.numberOfPlayers);
+        checkpoints.checkstat(amadness, aconto1, record, GameFacts.numberOfPlayers);
+        if (statehash != null)
+            statehash.add(StateHash.hash(amadness, aconto1, GameFacts.numberOfPlayers));
+
+        // This starts the AI code for all the cars.
+        aischeduler.preform(u, amadness, aconto1, checkpoints, trackers, 1, GameFacts.numberOfPlayers, 0);
+    }
+
+    /** Moves the camera after the spectated car for the current view. */
+    private void follow(XtGraphics xtgraphics, Madness amadness[], ContO aconto1[]) {
+        if (view == 0)
+            Medium.follow(aconto1[xtgraphics.spectate], amadness[xtgraphics.spectate].cxz,
+                    u[xtgraphics.spectate].lookback);
+        if (view == 1)
+            Medium.around(aconto1[xtgraphics.spectate], false);
+        if (view == 2)
+            Medium.watch(aconto1[xtgraphics.spectate], amadness[0].mxz);
+    }
+
     /**
      * motion
      *
@@ -1081,8 +703,8 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
         Record record = new Record();
         ContO aconto[] = new ContO[carModels.length + trackModels.length + extraModels.length]; // all models
         loadbase(aconto, trackers, xtgraphics);
-        // Fill aconto1[] with only car models, at the same indices as carModels
-        ContO aconto1[] = new ContO[carModels.length];
+        // Fill aconto1[] with only car models, at the same indices as carModels; the stage objects follow the cars
+        ContO aconto1[] = new ContO[StageConfig.MAX_OBJECTS];
         for (int i = 0; i < carModels.length; i++) {
             aconto1[i] = aconto[i];
         }
@@ -1397,40 +1019,7 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
                 xtgraphics.trackbg(true);
                 Medium.d(rd);
                 Medium.aroundTrack(checkpoints);
-                int i3 = 0;
-                int ai[] = new int[200];
-                for (int k5 = GameFacts.numberOfPlayers; k5 < notb; k5++)
-                    if (aconto1[k5].dist != 0) {
-                        ai[i3] = k5;
-                        i3++;
-                    } else {
-                        aconto1[k5].d(rd);
-                    }
-
-                int ai5[] = new int[i3];
-                for (int j7 = 0; j7 < i3; j7++)
-                    ai5[j7] = 0;
-
-                for (int k7 = 0; k7 < i3; k7++) {
-                    for (int i11 = k7 + 1; i11 < i3; i11++)
-                        if (aconto1[ai[k7]].dist != aconto1[ai[i11]].dist) {
-                            if (aconto1[ai[k7]].dist < aconto1[ai[i11]].dist)
-                                ai5[k7]++;
-                            else
-                                ai5[i11]++;
-                        } else if (i11 > k7)
-                            ai5[k7]++;
-                        else
-                            ai5[i11]++;
-
-                }
-
-                for (int l7 = 0; l7 < i3; l7++) {
-                    for (int j11 = 0; j11 < i3; j11++)
-                        if (ai5[j11] == l7)
-                            aconto1[ai[j11]].d(rd);
-
-                }
+                renderQueue.render(rd, aconto1, GameFacts.numberOfPlayers, notb);
 
                 rd.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                 xtgraphics.ctachm(xm, ym, mouses, u[0]);
@@ -1442,40 +1031,7 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
             }
             if (xtgraphics.fase == Phase.DRAWENVIRONMENT) {
                 Medium.d(rd);
-                int j3 = 0;
-                int ai1[] = new int[200];
-                for (int i6 = 0; i6 < nob; i6++)
-                    if (aconto1[i6].dist != 0) {
-                        ai1[j3] = i6;
-                        j3++;
-                    } else {
-                        aconto1[i6].d(rd);
-                    }
-
-                int ai6[] = new int[j3];
-                for (int i8 = 0; i8 < j3; i8++)
-                    ai6[i8] = 0;
-
-                for (int j8 = 0; j8 < j3; j8++) {
-                    for (int k11 = j8 + 1; k11 < j3; k11++)
-                        if (aconto1[ai1[j8]].dist != aconto1[ai1[k11]].dist) {
-                            if (aconto1[ai1[j8]].dist < aconto1[ai1[k11]].dist)
-                                ai6[j8]++;
-                            else
-                                ai6[k11]++;
-                        } else if (k11 > j8)
-                            ai6[j8]++;
-                        else
-                            ai6[k11]++;
-
-                }
-
-                for (int k8 = 0; k8 < j3; k8++) {
-                    for (int l11 = 0; l11 < j3; l11++)
-                        if (ai6[l11] == k8)
-                            aconto1[ai1[l11]].d(rd);
-
-                }
+                renderQueue.render(rd, aconto1, 0, nob, stageGrid);
 
                 Medium.follow(aconto1[0], 0, 0);
                 xtgraphics.hipnoload(checkpoints.stage, false);
@@ -1489,81 +1045,44 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
                     xtgraphics.fase = Phase.PREGAME;
                 }
             }
-            if (xtgraphics.fase == Phase.INGAME) {
-                int k3 = 0;
-                do {
-                    if (amadness[k3].newcar) {
-                        int j5 = aconto1[k3].xz;
-                        int j6 = aconto1[k3].xy;
-                        int l8 = aconto1[k3].zy;
-                        aconto1[k3] = new ContO(aconto[amadness[k3].cn], aconto1[k3].x, aconto1[k3].y, aconto1[k3].z,
-                                0);
-                        aconto1[k3].xz = j5;
-                        aconto1[k3].xy = j6;
-                        aconto1[k3].zy = l8;
-                        amadness[k3].newcar = false;
-                    }
-                } while (++k3 < GameFacts.numberOfPlayers);
-                Medium.d(rd);
-                k3 = 0;
-                int ai2[] = new int[200];
-                for (int k6 = 0; k6 < nob; k6++)
-                    if (aconto1[k6].dist != 0) {
-                        ai2[k3] = k6;
-                        k3++;
-                    } else {
-                        aconto1[k6].d(rd);
-                    }
-
-                int ai7[] = new int[k3];
-                int ai10[] = new int[k3];
-                for (int i12 = 0; i12 < k3; i12++)
-                    ai7[i12] = 0;
-
-                for (int j12 = 0; j12 < k3; j12++) {
-                    for (int i14 = j12 + 1; i14 < k3; i14++)
-                        if (aconto1[ai2[j12]].dist != aconto1[ai2[i14]].dist) {
-                            if (aconto1[ai2[j12]].dist < aconto1[ai2[i14]].dist)
-                                ai7[j12]++;
-                            else
-                                ai7[i14]++;
-                        } else if (i14 > j12)
-                            ai7[j12]++;
-                        else
-                            ai7[i14]++;
-
-                    ai10[ai7[j12]] = j12;
+            if (statehash != null && xtgraphics.fase != Phase.INGAME) {
+                try {
+                    statehash.save(SimConfig.HASH_LOG);
+                } catch (IOException e) {
+                    HLogger.error("Could not write hash log " + SimConfig.HASH_LOG + ": " + e);
                 }
-
-                for (int k12 = 0; k12 < k3; k12++)
-                    aconto1[ai2[ai10[k12]]].d(rd);
+            }
+            int due = 1;
+            if (SimConfig.FIXED_STEP && xtgraphics.fase == Phase.INGAME) {
+                due = tickClock.due(xtgraphics.starcnt == 0);
+                if (due == 0) {
+                    /* between ticks: only draw, part way through the last one */
+                    tickClock.blend(aconto1, GameFacts.numberOfPlayers);
+                    Medium.d(rd);
+                    renderQueue.render(rd, aconto1, 0, nob, stageGrid);
+                    tickClock.restore(aconto1, GameFacts.numberOfPlayers);
+                    if (xtgraphics.starcnt < 38)
+                        xtgraphics.stat(amadness, checkpoints, u[xtgraphics.spectate], aconto1, view == 0);
+                }
+                for (int t = 1; t < due; t++) {
+                    /* behind after a slow frame: step without drawing, but as if the last tick was drawn */
+                    newcars(amadness, aconto1, aconto);
+                    Medium.settle();
+                    for (int j16 = 0; j16 < GameFacts.numberOfPlayers; j16++)
+                        aconto1[j16].look();
+                    simtick(amadness, aconto1, trackers, checkpoints, record);
+                    follow(xtgraphics, amadness, aconto1);
+                }
+                if (due != 0)
+                    tickClock.save(aconto1, GameFacts.numberOfPlayers);
+            }
+            if (xtgraphics.fase == Phase.INGAME && due != 0) {
+                newcars(amadness, aconto1, aconto);
+                Medium.d(rd);
+                renderQueue.render(rd, aconto1, 0, nob, stageGrid);
 
                 if (xtgraphics.starcnt == 0) {
-                    int l12 = 0;
-                    do {
-                        int j14 = 0;
-                        do {
-                            if (j14 != l12) {
-                                amadness[l12].colide(aconto1[l12], amadness[j14], aconto1[j14]);
-                            }
-                        } while (++j14 < GameFacts.numberOfPlayers);
-                    } while (++l12 < GameFacts.numberOfPlayers);
-                    l12 = 0;
-                    do
-                        amadness[l12].drive(u[l12], aconto1[l12], trackers, checkpoints);
-                    while (++l12 < GameFacts.numberOfPlayers);
-                    l12 = 0;
-                    do
-                        record.rec(aconto1[l12], l12, amadness[l12].squash, amadness[l12].lastcolido,
-                                amadness[l12].cntdest);
-                    while (++l12 < GameFacts.numberOfPlayers);
-                    checkpoints.checkstat(amadness, aconto1, record, GameFacts.numberOfPlayers);
-
-                    // This starts the AI code for all the cars.
-                    l12 = 1;
-                    do
-                        u[l12].preform(amadness[l12], aconto1[l12], checkpoints, trackers, GameFacts.numberOfPlayers);
-                    while (++l12 < GameFacts.numberOfPlayers);
+                    simtick(amadness, aconto1, trackers, checkpoints, record);
                 } else {
                     if (xtgraphics.starcnt == 130) {
                         Medium.adv = 1900;
@@ -1576,20 +1095,10 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
                         xtgraphics.starcnt--;
                 }
                 if (xtgraphics.starcnt < 38) {
-                    if (view == 0) {
-                        Medium.follow(aconto1[xtgraphics.spectate], amadness[xtgraphics.spectate].cxz,
-                                u[xtgraphics.spectate].lookback);
-                        xtgraphics.stat(amadness, checkpoints, u[xtgraphics.spectate], aconto1, true);
+                    follow(xtgraphics, amadness, aconto1);
+                    xtgraphics.stat(amadness, checkpoints, u[xtgraphics.spectate], aconto1, view == 0);
+                    if (view == 0)
                         initMoto(amadness, 2, 5);
-                    }
-                    if (view == 1) {
-                        Medium.around(aconto1[xtgraphics.spectate], false);
-                        xtgraphics.stat(amadness, checkpoints, u[xtgraphics.spectate], aconto1, false);
-                    }
-                    if (view == 2) {
-                        Medium.watch(aconto1[xtgraphics.spectate], amadness[0].mxz);
-                        xtgraphics.stat(amadness, checkpoints, u[xtgraphics.spectate], aconto1, false);
-                    }
                     if (mouses == 1) {
                         u[0].enter = true;
                         mouses = 0;
@@ -1630,40 +1139,7 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
                     } while (++i4 < GameFacts.numberOfPlayers);
                 }
                 Medium.d(rd);
-                int j4 = 0;
-                int ai3[] = new int[100];
-                for (int l6 = 0; l6 < nob; l6++)
-                    if (aconto1[l6].dist != 0) {
-                        ai3[j4] = l6;
-                        j4++;
-                    } else {
-                        aconto1[l6].d(rd);
-                    }
-
-                int ai8[] = new int[j4];
-                for (int i9 = 0; i9 < j4; i9++)
-                    ai8[i9] = 0;
-
-                for (int j9 = 0; j9 < j4; j9++) {
-                    for (int i13 = j9 + 1; i13 < j4; i13++)
-                        if (aconto1[ai3[j9]].dist != aconto1[ai3[i13]].dist) {
-                            if (aconto1[ai3[j9]].dist < aconto1[ai3[i13]].dist)
-                                ai8[j9]++;
-                            else
-                                ai8[i13]++;
-                        } else if (i13 > j9)
-                            ai8[j9]++;
-                        else
-                            ai8[i13]++;
-
-                }
-
-                for (int k9 = 0; k9 < j4; k9++) {
-                    for (int j13 = 0; j13 < j4; j13++)
-                        if (ai8[j13] == k9)
-                            aconto1[ai3[j13]].d(rd);
-
-                }
+                renderQueue.render(rd, aconto1, 0, nob, stageGrid);
 
                 if (u[0].enter || u[0].handb || mouses == 1) {
                     k1 = 299;
@@ -1732,40 +1208,7 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
                     while (++k4 < GameFacts.numberOfPlayers);
                 }
                 Medium.d(rd);
-                int i5 = 0;
-                int ai4[] = new int[100];
-                for (int i7 = 0; i7 < nob; i7++)
-                    if (aconto1[i7].dist != 0) {
-                        ai4[i5] = i7;
-                        i5++;
-                    } else {
-                        aconto1[i7].d(rd);
-                    }
-
-                int ai9[] = new int[i5];
-                for (int i10 = 0; i10 < i5; i10++)
-                    ai9[i10] = 0;
-
-                for (int j10 = 0; j10 < i5; j10++) {
-                    for (int k13 = j10 + 1; k13 < i5; k13++)
-                        if (aconto1[ai4[j10]].dist != aconto1[ai4[k13]].dist) {
-                            if (aconto1[ai4[j10]].dist < aconto1[ai4[k13]].dist)
-                                ai9[j10]++;
-                            else
-                                ai9[k13]++;
-                        } else if (k13 > j10)
-                            ai9[j10]++;
-                        else
-                            ai9[k13]++;
-
-                }
-
-                for (int k10 = 0; k10 < i5; k10++) {
-                    for (int l13 = 0; l13 < i5; l13++)
-                        if (ai9[l13] == k10)
-                            aconto1[ai4[l13]].d(rd);
-
-                }
+                renderQueue.render(rd, aconto1, 0, nob, stageGrid);
 
                 int l10 = 0;
                 do {
@@ -1949,7 +1392,9 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
             xtgraphics.playsounds(amadness[0], u[0], checkpoints.stage);
             date1 = new Date();
             long l5 = date1.getTime();
-            if (xtgraphics.fase == Phase.INGAME || xtgraphics.fase == Phase.INSTANTREPLAY
+            if (SimConfig.FIXED_STEP && xtgraphics.fase == Phase.INGAME) {
+                /* paced by tickClock, and the fade is left alone */
+            } else if (xtgraphics.fase == Phase.INGAME || xtgraphics.fase == Phase.INSTANTREPLAY
                     || xtgraphics.fase == Phase.GAMEHIGHLIGHT) {
                 if (!flag1) {
                     f1 = f;
@@ -2065,9 +1510,15 @@ public class GameSparker extends JPanel implements IGameEngine, Runnable, KeyLis
                     break;
             }
 
-            long l2 = Math.round(f1) - (l5 - l4);
-            if (l2 < i)
-                l2 = i;
+            long l2;
+            if (SimConfig.FIXED_STEP && xtgraphics.fase == Phase.INGAME) {
+                l2 = tickClock.sleep();
+            } else {
+                tickClock.stop();
+                l2 = Math.round(f1) - (l5 - l4);
+                if (l2 < i)
+                    l2 = i;
+            }
             if (xtgraphics.fase != Phase.LOADING && xtgraphics.debugmode) {
                 // gameMetrics functionality removed - was unused field
             }
@@ -0,0 +1,284 @@
+package nfm.lit;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A race with no window: the stage and cars are read through StageReader
+ * without scenery, every car is driven by the AI, and each tick is the
+ * simulation half of GameSparker's INGAME phase (car swaps, contact,
+ * Madness.drive, Record.rec, CheckPoints.checkstat and Control.preform).
+ * Nothing is drawn and no sound is played, so a race runs as fast as the
+ * CPU allows. The cars are given {@link CarSounds#NONE}, so car 0 does not
+ * write the HUD's checkpoint into Medium as it does in the game, and races
+ * on different threads write no shared state the simulation reads.
+ * <p>
+ * The cars draw from their own random sequences, seeded from the
+ * {@link Xoroshiro#SIM} stream of the race seed as GameSparker seeds them,
+ * so the same stage, lineup and seed give the same race.
+ * <p>
+ * Run from the project root: {@code HeadlessRace <stage> [cars] [seed] [hashlog]},
+ * hashlog being a file to write a {@link StateHash} of every tick to.
+ */
+public class HeadlessRace {
+    public final int stage;
+    public final int cars;
+    private final ContO[] models;
+    private final ContO[] conto = new ContO[StageConfig.MAX_OBJECTS];
+    private final Trackers trackers = new Trackers();
+    private final CheckPoints checkpoints = new CheckPoints();
+    private final Record record = new Record();
+    private final Madness[] madness;
+    private final Control[] u;
+    private final CarBroadphase broadphase = new CarBroadphase();
+    private final DrivePhase drivePhase = new DrivePhase(SimConfig.PARALLEL_DRIVE);
+    private final AIScheduler aischeduler = new AIScheduler(AIConfig.AI_BUDGET, AIConfig.AI_NEAR,
+            SimConfig.PARALLEL_AI);
+    private StateHash hashes;
+    private int nob;
+
+    private int tick = 0;
+    /* tick each car finished or was wasted on, -1 if not yet */
+    private final int[] finish;
+    private final int[] wasted;
+    /* position each car was in on the tick it finished */
+    private final int[] place;
+    /* tick each car completed each lap on */
+    private final int[][] laps;
+
+    /**
+     * Reads stage {@code stage} of the nfm2 set, with car {@code i} on the
+     * grid as model {@code lineup[i]}.
+     *
+     * @param modeldata the models as read by {@link StageReader#modeldata},
+     *                  which can be shared between races
+     */
+    public HeadlessRace(byte[][] modeldata, int stage, int[] lineup, long seed) throws IOException {
+        this(modeldata, StageConfig.STAGE_DIR + "nfm2/" + stage + ".txt", stage, lineup, seed);
+    }
+
+    public HeadlessRace(byte[][] modeldata, String stagefile, int stage, int[] lineup, long seed)
+            throws IOException {
+        this.stage = stage;
+        cars = lineup.length;
+        if (cars < 2 || cars > StageConfig.MAX_CARS - 1) {
+            throw new IllegalArgumentException("a race needs 2 to " + (StageConfig.MAX_CARS - 1) + " cars");
+        }
+        for (int car : lineup) {
+            /* of the cars after the original 16 only some have a model yet */
+            if (car < 0 || car >= StageReader.carModels.length || modeldata[car] == null) {
+                throw new IllegalArgumentException("car model " + car + " is not in the model data");
+            }
+        }
+        models = new ContO[modeldata.length];
+        for (int i = 0; i < modeldata.length; i++) {
+            if (modeldata[i] != null) {
+                models[i] = new ContO(modeldata[i], trackers);
+            }
+        }
+        trackers.nt = 0;
+        trackers.index();
+        checkpoints.stage = stage;
+        StageReader stagereader = new StageReader(null, cars);
+        try (BufferedReader in = new BufferedReader(new FileReader(stagefile))) {
+            stagereader.read(in, conto, models, trackers, checkpoints);
+        }
+        trackers.index();
+        nob = stagereader.nob;
+
+        madness = new Madness[cars];
+        u = new Control[cars];
+        Xoroshiro sim = new Xoroshiro(seed, Xoroshiro.SIM);
+        int[] sc = new int[StageConfig.MAX_CARS];
+        for (int i = 0; i < cars; i++) {
+            sc[i] = lineup[i];
+            madness[i] = new Madness(record, CarSounds.NONE, i);
+            madness[i].stat = new Stat(lineup[i]);
+            madness[i].seed(sim.nextLong());
+            u[i] = new Control();
+            u[i].seed(sim.nextLong());
+            u[i].reset(checkpoints, sc[i]);
+        }
+        StageReader.grid(conto, models, sc, madness, checkpoints, cars);
+        record.reset(conto);
+
+        finish = new int[cars];
+        wasted = new int[cars];
+        place = new int[cars];
+        laps = new int[cars][Math.max(checkpoints.nlaps, 1)];
+        for (int i = 0; i < cars; i++) {
+            finish[i] = -1;
+            wasted[i] = -1;
+            Arrays.fill(laps[i], -1);
+        }
+    }
+
+    /** Runs one tick. Returns false once every car has finished or been wasted. */
+    public boolean tick() {
+        for (int i = 0; i < cars; i++) {
+            if (madness[i].newcar) {
+                int xz = conto[i].xz;
+                int xy = conto[i].xy;
+                int zy = conto[i].zy;
+                conto[i] = new ContO(models[madness[i].cn], conto[i].x, conto[i].y, conto[i].z, 0);
+                conto[i].xz = xz;
+                conto[i].xy = xy;
+                conto[i].zy = zy;
+                madness[i].newcar = false;
+            }
+        }
+        broadphase.colide(madness, conto, cars);
+        drivePhase.drive(madness, u, conto, trackers, checkpoints, cars);
+        for (int i = 0; i < cars; i++) {
+            record.rec(conto[i], i, madness[i].squash, madness[i].lastcolido, madness[i].cntdest);
+        }
+        checkpoints.checkstat(madness, conto, record, cars);
+        if (hashes != null) {
+            hashes.add(StateHash.hash(madness, conto, cars));
+        }
+        /* no player to measure nearness from: with a budget every car is far */
+        aischeduler.preform(u, madness, conto, checkpoints, trackers, 0, cars, -1);
+        tick++;
+
+        boolean racing = false;
+        int nsp = Math.max(checkpoints.nsp, 1);
+        for (int i = 0; i < cars; i++) {
+            if (finish[i] != -1 || wasted[i] != -1) {
+                continue;
+            }
+            int lap = madness[i].clear / nsp;
+            for (int k = 0; k < lap && k < laps[i].length; k++) {
+                if (laps[i][k] == -1) {
+                    laps[i][k] = tick;
+                }
+            }
+            if (madness[i].clear >= checkpoints.nlaps * checkpoints.nsp) {
+                finish[i] = tick;
+                place[i] = checkpoints.pos[i];
+            } else if (madness[i].dest) {
+                wasted[i] = tick;
+            } else {
+                racing = true;
+            }
+        }
+        return racing;
+    }
+
+    /** Adds a hash of the cars to {@code log} every tick from now on, at the same point GameSparker does. */
+    public void hashes(StateHash log) {
+        hashes = log;
+    }
+
+    /** Runs ticks until the race is over or {@code maxticks} have run. */
+    public void run(int maxticks) {
+        while (tick < maxticks && tick()) {
+        }
+    }
+
+    public int ticks() {
+        return tick;
+    }
+
+    /** Tick car {@code i} finished on, or -1. */
+    public int finish(int i) {
+        return finish[i];
+    }
+
+    /** Tick car {@code i} was wasted on, or -1. */
+    public int wasted(int i) {
+        return wasted[i];
+    }
+
+    /** Tick car {@code i} completed lap {@code lap} (from 0) on, or -1. */
+    public int lap(int i, int lap) {
+        return laps[i][lap];
+    }
+
+    public int nlaps() {
+        return checkpoints.nlaps;
+    }
+
+    public String stagename() {
+        return checkpoints.name;
+    }
+
+    public int model(int i) {
+        return madness[i].cn;
+    }
+
+    /** Stage objects read, cars included. */
+    public int objects() {
+        return nob;
+    }
+
+    /**
+     * The cars that finished, first to last: by finishing tick, then by
+     * their position on that tick.
+     */
+    public int[] order() {
+        int n = 0;
+        int[] order = new int[cars];
+        for (int i = 0; i < cars; i++) {
+            if (finish[i] != -1) {
+                order[n++] = i;
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            int k = order[i];
+            int j = i - 1;
+            while (j >= 0 && (finish[order[j]] > finish[k]
+                    || finish[order[j]] == finish[k] && place[order[j]] > place[k])) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = k;
+        }
+        return Arrays.copyOf(order, n);
+    }
+
+    /** Converts ticks to seconds at the game's tick length. */
+    public static float seconds(int ticks) {
+        return ticks * SimConfig.TICK_MS / 1000F;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int stage = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int cars = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+        long start = System.nanoTime();
+        byte[][] modeldata = StageReader.modeldata();
+        int[] lineup = new int[cars];
+        for (int i = 0, car = 0; i < cars; i++, car++) {
+            while (modeldata[car % StageReader.carModels.length] == null) {
+                car++;
+            }
+            lineup[i] = car % StageReader.carModels.length;
+        }
+        HeadlessRace race = new HeadlessRace(modeldata, stage, lineup, seed);
+        StateHash log = new StateHash();
+        race.hashes(log);
+        race.run(100000);
+        long took = (System.nanoTime() - start) / 1000000L;
+
+        System.out.println("Stage " + stage + ": " + race.stagename() + ", " + race.nlaps() + " laps, " + cars
+                + " cars, seed " + seed);
+        int[] order = race.order();
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k];
+            System.out.println((k + 1) + ". car " + i + " (" + StageReader.carModels[race.model(i)] + ") "
+                    + seconds(race.finish(i)) + "s");
+        }
+        for (int i = 0; i < cars; i++) {
+            if (race.wasted(i) != -1) {
+                System.out.println("wasted: car " + i + " (" + StageReader.carModels[race.model(i)] + ") at "
+                        + seconds(race.wasted(i)) + "s");
+            }
+        }
+        System.out.println(race.ticks() + " ticks (" + seconds(race.ticks()) + "s of racing) in " + took + " ms");
+        if (args.length > 3) {
+            log.save(args[3]);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package nfm.lit;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Runs a headless race on the first stage twice with the same seed and
+ * checks that it ends, that someone finishes, and that both runs give the
+ * same result and the same {@link StateHash} on every tick. Run from the
+ * project root, no display needed.
+ */
+public class HeadlessRaceTest {
+
+    private static final int STAGE = 1;
+    private static final int CARS = 7;
+    private static final long SEED = 42L;
+    private static final int MAX_TICKS = 40000;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Headless Race Test ===\n");
+
+        byte[][] modeldata = StageReader.modeldata();
+        int[] lineup = new int[CARS];
+        for (int i = 0; i < CARS; i++) {
+            lineup[i] = i;
+        }
+        HeadlessRace a = new HeadlessRace(modeldata, STAGE, lineup, SEED);
+        HeadlessRace b = new HeadlessRace(modeldata, STAGE, lineup, SEED);
+        StateHash ha = new StateHash();
+        StateHash hb = new StateHash();
+        a.hashes(ha);
+        b.hashes(hb);
+        a.run(MAX_TICKS);
+        b.run(MAX_TICKS);
+
+        System.out.println("Stage: " + a.stagename());
+        System.out.println("Ticks: " + a.ticks() + " and " + b.ticks());
+        System.out.println("Finishing order: " + Arrays.toString(a.order()));
+
+        boolean passed = true;
+        if (a.ticks() >= MAX_TICKS) {
+            System.out.println("❌ FAIL: race did not end within " + MAX_TICKS + " ticks");
+            passed = false;
+        }
+        if (a.order().length == 0) {
+            System.out.println("❌ FAIL: no car finished");
+            passed = false;
+        }
+        boolean same = a.ticks() == b.ticks() && Arrays.equals(a.order(), b.order());
+        for (int i = 0; i < CARS && same; i++) {
+            same = a.finish(i) == b.finish(i) && a.wasted(i) == b.wasted(i);
+        }
+        if (!same) {
+            System.out.println("❌ FAIL: the same seed gave two different races");
+            passed = false;
+        }
+        int tick = StateHash.diverge(ha, hb);
+        if (tick != -1) {
+            System.out.println("❌ FAIL: the two runs' state hashes differ from tick " + tick);
+            passed = false;
+        }
+        if (passed) {
+            System.out.println("✅ PASS: headless race is complete and repeatable");
+        } else {
+            System.exit(1);
+        }
+    }
+}
@@ -14,7 +14,9 @@ class Madness {
     // Core components
     public Stat stat;
     private final Record rpd;
-    private final XtGraphics xt;
+    private final CarSounds sounds;
+    /* false for a car with no game around it, which leaves Medium's checkpoint HUD state alone */
+    private final boolean hud;
     private final boolean[] dominate;
     private final boolean[] caught;
     
@@ -98,6 +100,26 @@ class Madness {
     // Screen shake variable
     public int shakedam;
 
+    // Candidate tracker ids from Trackers.near
+    private int[] tnear;
+
+    // Wheel points of both cars in colide
+    private final float[] cax = new float[4];
+    private final float[] cay = new float[4];
+    private final float[] caz = new float[4];
+    private final float[] cbx = new float[4];
+    private final float[] cby = new float[4];
+    private final float[] cbz = new float[4];
+
+    // Wheel points and push flags in drive
+    private final float[] wx = new float[4];
+    private final float[] wy = new float[4];
+    private final float[] wz = new float[4];
+    private final boolean[] wpushed = new boolean[4];
+
+    // This car's own random sequence, so cars can drive in any order or at once
+    private final RandomCycle rnd = new RandomCycle();
+
     /**
      * Universal rate that speed decreases when it exceeds swits[0][2], that is, top speed
      *
@@ -264,14 +286,14 @@ class Madness {
             if (byte0 * byte1 == 0)
                 shakedam = (int) ((Math.abs(f) + shakedam) / 2.0F);
             if (im == 0 || colidim)
-                xt.crash(f, byte1 * byte0);
+                sounds.crash(f, byte1 * byte0);
             if (byte1 * byte0 == 0 || mtouch) {
                 for (int l = 0; l < conto.npl; l++) {
                     float f1 = 0.0F;
                     for (int k1 = 0; k1 < conto.p[l].n; k1++)
                         if (conto.p[l].wz == 0
                                 && Utility.py(conto.keyx[i], conto.p[l].ox[k1], conto.keyz[i], conto.p[l].oz[k1]) < stat.clrad) {
-                            f1 = (f / 20F) * Medium.random();
+                            f1 = (f / 20F) * rnd.next();
                             conto.p[l].oz[k1] += f1 * RadicalMath.sin(j);
                             conto.p[l].ox[k1] -= f1 * RadicalMath.sin(k);
                             hitmag += Math.abs(f1);
@@ -298,11 +320,10 @@ class Madness {
                             if (conto.p[l].bfase > 60)
                                 conto.p[l].hsb[0] = 0.05F;
                             conto.p[l].bfase += f1;
-                            new Color(conto.p[l].c[0], conto.p[l].c[1], conto.p[l].c[2]);
-                            Color color = Color.getHSBColor(conto.p[l].hsb[0], conto.p[l].hsb[1], conto.p[l].hsb[2]);
-                            conto.p[l].c[0] = color.getRed();
-                            conto.p[l].c[1] = color.getGreen();
-                            conto.p[l].c[2] = color.getBlue();
+                            int rgb = Color.HSBtoRGB(conto.p[l].hsb[0], conto.p[l].hsb[1], conto.p[l].hsb[2]);
+                            conto.p[l].c[0] = rgb >> 16 & 0xff;
+                            conto.p[l].c[1] = rgb >> 8 & 0xff;
+                            conto.p[l].c[2] = rgb & 0xff;
                         }
                         if (conto.p[l].glass)
                             conto.p[l].gr += Math.abs(f1 * 1.5D);
@@ -318,7 +339,7 @@ class Madness {
                         float f2 = 0.0F;
                         for (int i2 = 0; i2 < conto.p[l1].n; i2++)
                             if (conto.p[l1].wz == 0) {
-                                f2 = (f / 15F) * Medium.random();
+                                f2 = (f / 15F) * rnd.next();
                                 if ((Math.abs(conto.p[l1].oy[i2] - stat.flipy - squash) < stat.msquash * 3
                                         || conto.p[l1].oy[i2] < stat.flipy + squash) && squash < stat.msquash) {
                                     conto.p[l1].oy[i2] += f2;
@@ -346,7 +367,7 @@ class Madness {
         }
     }
 
-    public Madness(Record record, XtGraphics xtgraphics, int i) {
+    public Madness(Record record, CarSounds sounds, int i) {
         cn = 0;
         im = 0;
         mxz = 0;
@@ -413,7 +434,8 @@ class Madness {
         rpdcatch = 0;
         colidim = false;
         rpd = record;
-        xt = xtgraphics;
+        this.sounds = sounds;
+        hud = sounds != CarSounds.NONE;
         im = i;
         shakedam = 0;
         stat = new Stat();
@@ -438,13 +460,13 @@ class Madness {
                 f += 100F;
             shakedam = (int) ((Math.abs(f) + shakedam) / 2.0F);
             if (im == 0 || colidim)
-                xt.crash(f, 0);
+                sounds.crash(f, 0);
             for (int j = 0; j < conto.npl; j++) {
                 float f1 = 0.0F;
                 for (int k = 0; k < conto.p[j].n; k++)
                     if (conto.p[j].wz == 0
                             && Utility.py(conto.keyx[i], conto.p[j].ox[k], conto.keyz[i], conto.p[j].oz[k]) < stat.clrad) {
-                        f1 = (f / 20F) * Medium.random();
+                        f1 = (f / 20F) * rnd.next();
                         conto.p[j].oz[k] += f1 * RadicalMath.cos(conto.xz) * RadicalMath.cos(conto.zy);
                         conto.p[j].ox[k] += f1 * RadicalMath.sin(conto.xz) * RadicalMath.cos(conto.xy);
                         hitmag += Math.abs(f1);
@@ -471,11 +493,10 @@ class Madness {
                         if (conto.p[j].bfase > 60)
                             conto.p[j].hsb[0] = 0.05F;
                         conto.p[j].bfase += Math.abs(f1);
-                        new Color(conto.p[j].c[0], conto.p[j].c[1], conto.p[j].c[2]);
-                        Color color = Color.getHSBColor(conto.p[j].hsb[0], conto.p[j].hsb[1], conto.p[j].hsb[2]);
-                        conto.p[j].c[0] = color.getRed();
-                        conto.p[j].c[1] = color.getGreen();
-                        conto.p[j].c[2] = color.getBlue();
+                        int rgb = Color.HSBtoRGB(conto.p[j].hsb[0], conto.p[j].hsb[1], conto.p[j].hsb[2]);
+                        conto.p[j].c[0] = rgb >> 16 & 0xff;
+                        conto.p[j].c[1] = rgb >> 8 & 0xff;
+                        conto.p[j].c[2] = rgb & 0xff;
                     }
                     if (conto.p[j].glass)
                         conto.p[j].gr += Math.abs(f1 * 1.5D);
@@ -485,13 +506,79 @@ class Madness {
         }
     }
 
-    public void colide(ContO conto, Madness madness, ContO conto1) {
-        float af[] = new float[4];
-        float af1[] = new float[4];
-        float af2[] = new float[4];
-        float af3[] = new float[4];
-        float af4[] = new float[4];
-        float af5[] = new float[4];
+    /**
+     * Radius around this car's centre beyond which colide, with this car on
+     * either side, can neither pass the sphere test nor bring two wheels
+     * within push range, for a grid whose largest comprad is {@code comprad}.
+     * Used by {@link CarBroadphase}.
+     */
+    public float reach(ContO conto, float comprad) {
+        float ky = Math.max(Math.abs(conto.grat), Math.max(Math.abs(stat.flipy + squash),
+                Math.abs(EnhancedStatList.ENHANCED_FLIPY[cn] + squash)));
+        float kr = 0.0F;
+        float vx = 0.0F;
+        float vz = 0.0F;
+        int i = 0;
+        do {
+            kr = Math.max(kr, conto.keyx[i] * conto.keyx[i] + conto.keyz[i] * conto.keyz[i]);
+            vx += scx[i];
+            vz += scz[i];
+        } while (++i < 4);
+        kr = (float) Math.sqrt(kr + ky * ky);
+        /* push range is sqrt((j + 7000) * 2 * comprad), j being a quarter of the summed velocity gap squared */
+        float push = (float) Math.sqrt(2 * comprad) * ((float) Math.sqrt(vx * vx + vz * vz) / 4F + 42F);
+        return Math.max(conto.maxR * 1.23F, kr + push) + 1.0F;
+    }
+
+    /**
+     * Whether drive can touch state other cars' drives share: the player's
+     * Record and Medium updates and sounds. Crash sounds for a car the player
+     * has hit come from colide, which runs before drive, so only the player's
+     * car counts. Used by {@link DrivePhase}.
+     */
+    public boolean drivesShared() {
+        return im == 0;
+    }
+
+    /** Restarts this car's random sequence, for repeatable runs. */
+    public void seed(long seed) {
+        rnd.reseed(seed);
+    }
+
+    /**
+     * Clears the sphere contact flag for {@code madness}, as a colide call
+     * with the two cars apart would.
+     */
+    public void release(Madness madness) {
+        caught[madness.im] = false;
+    }
+
+    /**
+     * Resolves contact with another car. Returns whether any wheel pair was
+     * pushed, which changes velocities that later calls depend on.
+     */
+    public boolean colide(ContO conto, Madness madness, ContO conto1) {
+        if (Utility.rpy(conto.x, conto1.x, conto.y, conto1.y, conto.z,
+                conto1.z) < (conto.maxR * conto.maxR + conto1.maxR * conto1.maxR) * 1.5D) {
+            if (!caught[madness.im] && (speed != 0.0F || madness.speed != 0.0F)) {
+                if (Math.abs(power * speed * stat.moment) != Math
+                        .abs(madness.power * madness.speed * EnhancedStatList.ENHANCED_MOMENT[madness.cn])) {
+                    dominate[madness.im] = Math.abs(power * speed * stat.moment) > Math
+                            .abs(madness.power * madness.speed * EnhancedStatList.ENHANCED_MOMENT[madness.cn]);
+                } else dominate[madness.im] = stat.moment > EnhancedStatList.ENHANCED_MOMENT[madness.cn];
+                caught[madness.im] = true;
+            }
+        } else if (caught[madness.im])
+            caught[madness.im] = false;
+        if (!dominate[madness.im])
+            return false;
+        boolean hit = false;
+        float af[] = cax;
+        float af1[] = cay;
+        float af2[] = caz;
+        float af3[] = cbx;
+        float af4[] = cby;
+        float af5[] = cbz;
         int i = 0;
         do {
             af[i] = conto.x + conto.keyx[i];
@@ -513,102 +600,89 @@ class Madness {
         Utility.rot(af3, af4, conto1.x, conto1.y, conto1.xy, 4);
         Utility.rot(af4, af5, conto1.y, conto1.z, conto1.zy, 4);
         Utility.rot(af3, af5, conto1.x, conto1.z, conto1.xz, 4);
-        if (Utility.rpy(conto.x, conto1.x, conto.y, conto1.y, conto.z,
-                conto1.z) < (conto.maxR * conto.maxR + conto1.maxR * conto1.maxR) * 1.5D) {
-            if (!caught[madness.im] && (speed != 0.0F || madness.speed != 0.0F)) {
-                if (Math.abs(power * speed * stat.moment) != Math
-                        .abs(madness.power * madness.speed * EnhancedStatList.ENHANCED_MOMENT[madness.cn])) {
-                    dominate[madness.im] = Math.abs(power * speed * stat.moment) > Math
-                            .abs(madness.power * madness.speed * EnhancedStatList.ENHANCED_MOMENT[madness.cn]);
-                } else dominate[madness.im] = stat.moment > EnhancedStatList.ENHANCED_MOMENT[madness.cn];
-                caught[madness.im] = true;
-            }
-        } else if (caught[madness.im])
-            caught[madness.im] = false;
-        if (dominate[madness.im]) {
-            int j = (int) (((((((((scz[0] - madness.scz[0]) + scz[1]) - madness.scz[1]) + scz[2]) - madness.scz[2])
-                    + scz[3]) - madness.scz[3])
-                    * (((((((scz[0] - madness.scz[0]) + scz[1]) - madness.scz[1]) + scz[2]) - madness.scz[2]) + scz[3])
-                    - madness.scz[3])
-                    + (((((((scx[0] - madness.scx[0]) + scx[1]) - madness.scx[1]) + scx[2]) - madness.scx[2]) + scx[3])
-                    - madness.scx[3])
-                    * (((((((scx[0] - madness.scx[0]) + scx[1]) - madness.scx[1]) + scx[2]) - madness.scx[2])
-                    + scx[3]) - madness.scx[3]))
-                    / 16F);
-            int k = 0;
-            do {
-                int l = 0;
-                do
-                    if (Utility.rpy(af[k], af3[l], af1[k], af4[l], af2[k], af5[l]) < (j + 7000)
-                            * (stat.comprad + stat.comprad)) {
-                        if (Math.abs(scx[k] * stat.moment) > Math.abs(madness.scx[l] * EnhancedStatList.ENHANCED_MOMENT[madness.cn])) {
-                            float f = madness.scx[l] * stat.revpush;
-                            if (f > 300F)
-                                f = 300F;
-                            if (f < -300F)
-                                f = -300F;
-                            float f2 = scx[k] * stat.push;
-                            if (f2 > 300F)
-                                f2 = 300F;
-                            if (f2 < -300F)
-                                f2 = -300F;
-                            float f4 = 1.0F;
-                            if (madness.cn == 13)
-                                f4 = stat.moment;
-                            madness.scx[l] += f2;
-                            if (im == 0)
-                                madness.colidim = true;
-                            madness.regx(l, f2 * stat.moment * f4, conto1);
-                            if (madness.colidim)
-                                madness.colidim = false;
-                            scx[k] -= f;
-                            regx(k, -f * EnhancedStatList.ENHANCED_MOMENT[cn], conto);
-                            scy[k] -= stat.revlift;
-                            if (im == 0)
-                                madness.colidim = true;
-                            madness.regy(l, stat.revlift * 7, conto1);
-                            if (madness.colidim)
-                                madness.colidim = false;
-                        }
-                        if (Math.abs(scz[k] * stat.moment) > Math.abs(madness.scz[l] * EnhancedStatList.ENHANCED_MOMENT[madness.cn])) {
-                            float f1 = madness.scz[l] * stat.revpush;
-                            if (f1 > 300F)
-                                f1 = 300F;
-                            if (f1 < -300F)
-                                f1 = -300F;
-                            float f3 = scz[k] * stat.push;
-                            if (f3 > 300F)
-                                f3 = 300F;
-                            if (f3 < -300F)
-                                f3 = -300F;
-                            float f5 = 1.0F;
-                            if (madness.cn == 13)
-                                f5 = stat.moment;
-                            madness.scz[l] += f3;
-                            if (im == 0)
-                                madness.colidim = true;
-                            madness.regz(l, f3 * stat.moment * f5, conto1);
-                            if (madness.colidim)
-                                madness.colidim = false;
-                            scz[k] -= f1;
-                            regz(k, -f1 * EnhancedStatList.ENHANCED_MOMENT[cn], conto);
-                            scy[k] -= stat.revlift;
-                            if (im == 0)
-                                madness.colidim = true;
-                            madness.regy(l, stat.revlift * 7, conto1);
-                            if (madness.colidim)
-                                madness.colidim = false;
-                        }
+        int j = (int) (((((((((scz[0] - madness.scz[0]) + scz[1]) - madness.scz[1]) + scz[2]) - madness.scz[2])
+                + scz[3]) - madness.scz[3])
+                * (((((((scz[0] - madness.scz[0]) + scz[1]) - madness.scz[1]) + scz[2]) - madness.scz[2]) + scz[3])
+                - madness.scz[3])
+                + (((((((scx[0] - madness.scx[0]) + scx[1]) - madness.scx[1]) + scx[2]) - madness.scx[2]) + scx[3])
+                - madness.scx[3])
+                * (((((((scx[0] - madness.scx[0]) + scx[1]) - madness.scx[1]) + scx[2]) - madness.scx[2])
+                + scx[3]) - madness.scx[3]))
+                / 16F);
+        int k = 0;
+        do {
+            int l = 0;
+            do
+                if (Utility.rpy(af[k], af3[l], af1[k], af4[l], af2[k], af5[l]) < (j + 7000)
+                        * (stat.comprad + stat.comprad)) {
+                    if (Math.abs(scx[k] * stat.moment) > Math.abs(madness.scx[l] * EnhancedStatList.ENHANCED_MOMENT[madness.cn])) {
+                        float f = madness.scx[l] * stat.revpush;
+                        if (f > 300F)
+                            f = 300F;
+                        if (f < -300F)
+                            f = -300F;
+                        float f2 = scx[k] * stat.push;
+                        if (f2 > 300F)
+                            f2 = 300F;
+                        if (f2 < -300F)
+                            f2 = -300F;
+                        float f4 = 1.0F;
+                        if (madness.cn == 13)
+                            f4 = stat.moment;
+                        madness.scx[l] += f2;
                         if (im == 0)
-                            madness.lastcolido = 70;
-                        if (madness.im == 0)
-                            lastcolido = 70;
-                        madness.scy[l] -= stat.lift;
+                            madness.colidim = true;
+                        madness.regx(l, f2 * stat.moment * f4, conto1);
+                        if (madness.colidim)
+                            madness.colidim = false;
+                        scx[k] -= f;
+                        regx(k, -f * EnhancedStatList.ENHANCED_MOMENT[cn], conto);
+                        scy[k] -= stat.revlift;
+                        if (im == 0)
+                            madness.colidim = true;
+                        madness.regy(l, stat.revlift * 7, conto1);
+                        if (madness.colidim)
+                            madness.colidim = false;
                     }
-                while (++l < 4);
-            } while (++k < 4);
-
-        }
+                    if (Math.abs(scz[k] * stat.moment) > Math.abs(madness.scz[l] * EnhancedStatList.ENHANCED_MOMENT[madness.cn])) {
+                        float f1 = madness.scz[l] * stat.revpush;
+                        if (f1 > 300F)
+                            f1 = 300F;
+                        if (f1 < -300F)
+                            f1 = -300F;
+                        float f3 = scz[k] * stat.push;
+                        if (f3 > 300F)
+                            f3 = 300F;
+                        if (f3 < -300F)
+                            f3 = -300F;
+                        float f5 = 1.0F;
+                        if (madness.cn == 13)
+                            f5 = stat.moment;
+                        madness.scz[l] += f3;
+                        if (im == 0)
+                            madness.colidim = true;
+                        madness.regz(l, f3 * stat.moment * f5, conto1);
+                        if (madness.colidim)
+                            madness.colidim = false;
+                        scz[k] -= f1;
+                        regz(k, -f1 * EnhancedStatList.ENHANCED_MOMENT[cn], conto);
+                        scy[k] -= stat.revlift;
+                        if (im == 0)
+                            madness.colidim = true;
+                        madness.regy(l, stat.revlift * 7, conto1);
+                        if (madness.colidim)
+                            madness.colidim = false;
+                    }
+                    if (im == 0)
+                        madness.lastcolido = 70;
+                    if (madness.im == 0)
+                        lastcolido = 70;
+                    madness.scy[l] -= stat.lift;
+                    hit = true;
+                }
+            while (++l < 4);
+        } while (++k < 4);
+        return hit;
     }
 
     private void distruct(ContO conto) {
@@ -697,7 +771,7 @@ class Madness {
         cntdest = 0;
         dest = false;
         newcar = false;
-        if (im == 0) {
+        if (im == 0 && hud) {
             Medium.checkpoint = -1;
             Medium.lastcheck = false;
         }
@@ -714,13 +788,13 @@ class Madness {
                 f += 100F;
             shakedam = (int) ((Math.abs(f) + shakedam) / 2.0F);
             if (im == 0 || colidim)
-                xt.crash(f, 0);
+                sounds.crash(f, 0);
             for (int j = 0; j < conto.npl; j++) {
                 float f1 = 0.0F;
                 for (int k = 0; k < conto.p[j].n; k++)
                     if (conto.p[j].wz == 0
                             && Utility.py(conto.keyx[i], conto.p[j].ox[k], conto.keyz[i], conto.p[j].oz[k]) < stat.clrad) {
-                        f1 = (f / 20F) * Medium.random();
+                        f1 = (f / 20F) * rnd.next();
                         conto.p[j].oz[k] -= f1 * RadicalMath.sin(conto.xz) * RadicalMath.cos(conto.zy);
                         conto.p[j].ox[k] += f1 * RadicalMath.cos(conto.xz) * RadicalMath.cos(conto.xy);
                         hitmag += Math.abs(f1);
@@ -747,11 +821,10 @@ class Madness {
                         if (conto.p[j].bfase > 60)
                             conto.p[j].hsb[0] = 0.05F;
                         conto.p[j].bfase += Math.abs(f1);
-                        new Color(conto.p[j].c[0], conto.p[j].c[1], conto.p[j].c[2]);
-                        Color color = Color.getHSBColor(conto.p[j].hsb[0], conto.p[j].hsb[1], conto.p[j].hsb[2]);
-                        conto.p[j].c[0] = color.getRed();
-                        conto.p[j].c[1] = color.getGreen();
-                        conto.p[j].c[2] = color.getBlue();
+                        int rgb = Color.HSBtoRGB(conto.p[j].hsb[0], conto.p[j].hsb[1], conto.p[j].hsb[2]);
+                        conto.p[j].c[0] = rgb >> 16 & 0xff;
+                        conto.p[j].c[1] = rgb >> 8 & 0xff;
+                        conto.p[j].c[2] = rgb & 0xff;
                     }
                     if (conto.p[j].glass)
                         conto.p[j].gr += Math.abs(f1 * 1.5D);
@@ -1064,9 +1137,9 @@ class Madness {
                     cxz += 10;
             }
         }
-        float af[] = new float[4];
-        float af1[] = new float[4];
-        float af2[] = new float[4];
+        float af[] = wx;
+        float af1[] = wz;
+        float af2[] = wy;
         int l2 = 0;
         do {
             af[l2] = conto.keyx[l2] + conto.x;
@@ -1098,11 +1171,16 @@ class Madness {
             af1[k3] += (scz[0] + scz[1] + scz[2] + scz[3]) / 4F;
         } while (++k3 < 4);
         k3 = 1;
-        for (int l3 = 0; l3 < trackers.nt; l3++)
+        if (tnear == null)
+            tnear = new int[trackers.x.length];
+        int nnear = trackers.near(conto.x, conto.z, conto.x, conto.z, 0, tnear);
+        for (int i9 = 0; i9 < nnear; i9++) {
+            int l3 = tnear[i9];
             if (Math.abs(trackers.zy[l3]) != 90 && Math.abs(trackers.xy[l3]) != 90
                     && Math.abs(conto.x - trackers.x[l3]) < trackers.radx[l3]
                     && Math.abs(conto.z - trackers.z[l3]) < trackers.radz[l3])
                 k3 = trackers.skd[l3];
+        }
 
         if (mtouch) {
             float f6 = stat.grip;
@@ -1182,17 +1260,17 @@ class Madness {
                         float f11 = 1.0F;
                         if (k3 != 0)
                             f11 = 1.2F;
-                        if (Medium.random() > 0.75D) {
+                        if (rnd.next() > 0.75D) {
                             conto.dust(l6, af[l6], af2[l6], af1[l6], scx[l6], scz[l6], f11 * stat.simag, true,
                                     (int) tilt);
                             if (im == 0 && !capsized)
-                                xt.skid(k3, (float) Math.sqrt(scx[l6] * scx[l6] + scz[l6] * scz[l6]));
+                                sounds.skid(k3, (float) Math.sqrt(scx[l6] * scx[l6] + scz[l6] * scz[l6]));
                         }
                     } else {
-                        if (k3 == 1 && Medium.random() > 0.84999999999999998D)
+                        if (k3 == 1 && rnd.next() > 0.84999999999999998D)
                             conto.dust(l6, af[l6], af2[l6], af1[l6], scx[l6], scz[l6], 1.1F * stat.simag, false,
                                     (int) tilt);
-                        if ((k3 == 2 || k3 == 3) && Medium.random() > 0.69999999999999996D)
+                        if ((k3 == 2 || k3 == 3) && rnd.next() > 0.69999999999999996D)
                             conto.dust(l6, af[l6], af2[l6], af1[l6], scx[l6], scz[l6], 1.15F * stat.simag, false,
                                     (int) tilt);
                     }
@@ -1202,13 +1280,13 @@ class Madness {
                         dcnt = 0;
                 }
                 if (k3 == 3) {
-                    int k7 = (int) (Medium.random() * 4F);
-                    scy[k7] = (float) (-100F * Medium.random() * (speed / stat.swits[2])
+                    int k7 = (int) (rnd.next() * 4F);
+                    scy[k7] = (float) (-100F * rnd.next() * (speed / stat.swits[2])
                             * (stat.bounce - 0.29999999999999999D));
                 }
                 if (k3 == 4) {
-                    int l7 = (int) (Medium.random() * 4F);
-                    scy[l7] = (float) (-150F * Medium.random() * (speed / stat.swits[2])
+                    int l7 = (int) (rnd.next() * 4F);
+                    scy[l7] = (float) (-150F * rnd.next() * (speed / stat.swits[2])
                             * (stat.bounce - 0.29999999999999999D));
                 }
                 f9 += scx[l6];
@@ -1239,7 +1317,7 @@ class Madness {
         } else if (skid != 2)
             skid = 2;
         int i4 = 0;
-        boolean aflag[] = new boolean[4];
+        boolean aflag[] = wpushed;
         int l4 = 0;
         do {
             if (af2[l4] > 245F) {
@@ -1276,7 +1354,14 @@ class Madness {
             aflag[l4] = false;
         } while (++l4 < 4);
         l4 = 0;
-        for (int j5 = 0; j5 < trackers.nt; j5++) {
+        /* wheels get pushed out of boxes as the loop goes, so the rectangle is widened and re-queried when they leave it */
+        int qx0 = (int) Math.floor(Math.min(Math.min(af[0], af[1]), Math.min(af[2], af[3]))) - 1;
+        int qz0 = (int) Math.floor(Math.min(Math.min(af1[0], af1[1]), Math.min(af1[2], af1[3]))) - 1;
+        int qx1 = (int) Math.ceil(Math.max(Math.max(af[0], af[1]), Math.max(af[2], af[3]))) + 1;
+        int qz1 = (int) Math.ceil(Math.max(Math.max(af1[0], af1[1]), Math.max(af1[2], af1[3]))) + 1;
+        nnear = trackers.near(qx0, qz0, qx1, qz1, 0, tnear);
+        for (int i9 = 0; i9 < nnear; i9++) {
+            int j5 = tnear[i9];
             int l5 = 0;
             int j6 = 0;
             int i7 = 0;
@@ -1484,6 +1569,19 @@ class Madness {
                 mtouch = true;
             if (j6 == 4)
                 i4 = 4;
+            boolean requery = false;
+            for (int j9 = 0; j9 < 4; j9++)
+                if (af[j9] < qx0 || af[j9] > qx1 || af1[j9] < qz0 || af1[j9] > qz1) {
+                    qx0 = Math.min(qx0, (int) Math.floor(af[j9]) - 1);
+                    qz0 = Math.min(qz0, (int) Math.floor(af1[j9]) - 1);
+                    qx1 = Math.max(qx1, (int) Math.ceil(af[j9]) + 1);
+                    qz1 = Math.max(qz1, (int) Math.ceil(af1[j9]) + 1);
+                    requery = true;
+                }
+            if (requery) {
+                nnear = trackers.near(qx0, qz0, qx1, qz1, j5 + 1, tnear);
+                i9 = -1;
+            }
         }
 
         if (l4 == 4)
@@ -1684,15 +1782,15 @@ class Madness {
         } else if (tilt != 0.0F)
             tilt = 0.0F;
         if (wtouch && k3 == 2) {
-            conto.zy += (int) (((Medium.random() * 25F * speed) / stat.swits[2]
+            conto.zy += (int) (((rnd.next() * 25F * speed) / stat.swits[2]
                     - (15F * speed) / stat.swits[2]) * (stat.bounce - 0.99999999999999989D));
-            conto.xy += (int) (((Medium.random() * 25F * speed) / stat.swits[2]
+            conto.xy += (int) (((rnd.next() * 25F * speed) / stat.swits[2]
                     - (15F * speed) / stat.swits[2]) * (stat.bounce - 0.99999999999999989D));
         }
         if (wtouch && k3 == 1) {
-            conto.zy += (int) (((Medium.random() * 20F * speed) / stat.swits[2]
+            conto.zy += (int) (((rnd.next() * 20F * speed) / stat.swits[2]
                     - (10F * speed) / stat.swits[2]) * (stat.bounce - 0.99999999999999989D));
-            conto.xy += (int) (((Medium.random() * 20F * speed) / stat.swits[2]
+            conto.xy += (int) (((rnd.next() * 20F * speed) / stat.swits[2]
                     - (10F * speed) / stat.swits[2]) * (stat.bounce - 0.99999999999999989D));
         }
         if (hitmag > stat.maxmag && !dest) {
@@ -1713,53 +1811,42 @@ class Madness {
             }
 
         }
-        int j9 = 0;
-        int k9 = 0;
-        int l9 = 0;
-        if (nofocus)
-            j = 1;
-        else
-            j = 7;
-        for (int j10 = 0; j10 < checkpoints.n; j10++) {
-            if (checkpoints.typ[j10] > 0) {
-                l9++;
-                if (checkpoints.typ[j10] == 1) {
-                    if (clear == l9 + nlaps * checkpoints.nsp)
-                        j = 1;
-                    if (Math.abs(conto.z - checkpoints.z[j10]) < 60F
-                            + Math.abs(scz[0] + scz[1] + scz[2] + scz[3]) / 4F
-                            && Math.abs(conto.x - checkpoints.x[j10]) < 700
-                            && Math.abs(conto.y - checkpoints.y[j10]) < 800
-                            && clear == (l9 + nlaps * checkpoints.nsp) - 1) {
-                        clear = l9 + nlaps * checkpoints.nsp;
-                        pcleared = j10;
-                        focus = -1;
-                    }
-                }
-                if (checkpoints.typ[j10] == 2) {
-                    if (clear == l9 + nlaps * checkpoints.nsp)
-                        j = 1;
-                    if (Math.abs(conto.x - checkpoints.x[j10]) < 60F
-                            + Math.abs(scx[0] + scx[1] + scx[2] + scx[3]) / 4F
-                            && Math.abs(conto.z - checkpoints.z[j10]) < 700
-                            && Math.abs(conto.y - checkpoints.y[j10]) < 800
-                            && clear == (l9 + nlaps * checkpoints.nsp) - 1) {
-                        clear = l9 + nlaps * checkpoints.nsp;
-                        pcleared = j10;
-                        focus = -1;
-                    }
+        StageNav nav = checkpoints.nav;
+        int lap = nlaps * checkpoints.nsp;
+        int l9 = nav.reals();
+        /*
+         * clear - lap real checkpoints are behind the car this lap, so the only one it can cross is the next,
+         * and straight after it the one after that; the checkpoint it steers by is weighed from the last cleared
+         */
+        int split = clear - lap >= 1 && clear - lap <= l9 ? nav.real(clear - lap - 1) : checkpoints.n;
+        for (int i11 = clear - lap; i11 >= 0 && i11 < l9 && clear == lap + i11; i11++) {
+            int j10 = nav.real(i11);
+            if (checkpoints.typ[j10] == 1) {
+                if (Math.abs(conto.z - checkpoints.z[j10]) < 60F
+                        + Math.abs(scz[0] + scz[1] + scz[2] + scz[3]) / 4F
+                        && Math.abs(conto.x - checkpoints.x[j10]) < 700
+                        && Math.abs(conto.y - checkpoints.y[j10]) < 800) {
+                    clear = lap + i11 + 1;
+                    pcleared = j10;
+                    focus = -1;
                 }
             }
-            if (Utility.py(conto.x / 100, checkpoints.x[j10] / 100, conto.z / 100, checkpoints.z[j10] / 100) * j < k9
-                    || k9 == 0) {
-                j9 = j10;
-                k9 = Utility.py(conto.x / 100, checkpoints.x[j10] / 100, conto.z / 100, checkpoints.z[j10] / 100) * j;
+            if (checkpoints.typ[j10] == 2) {
+                if (Math.abs(conto.x - checkpoints.x[j10]) < 60F
+                        + Math.abs(scx[0] + scx[1] + scx[2] + scx[3]) / 4F
+                        && Math.abs(conto.z - checkpoints.z[j10]) < 700
+                        && Math.abs(conto.y - checkpoints.y[j10]) < 800) {
+                    clear = lap + i11 + 1;
+                    pcleared = j10;
+                    focus = -1;
+                }
             }
         }
+        int j9 = nav.point(conto.x, conto.z, split, nofocus ? 1 : 7);
 
         if (clear == l9 + nlaps * checkpoints.nsp)
             nlaps++;
-        if (im == 0) {
+        if (im == 0 && hud) {
             for (Medium.checkpoint = clear; Medium.checkpoint >= checkpoints.nsp; Medium.checkpoint -= checkpoints.nsp)
                 ;
             if (clear == checkpoints.nlaps * checkpoints.nsp - 1)
@@ -1773,11 +1860,7 @@ class Madness {
             else
                 j9++;
             if (!nofocus) {
-                int i10;
-                for (i10 = pcleared + 1; checkpoints.typ[i10] <= 0; )
-                    if (++i10 == checkpoints.n)
-                        i10 = 0;
-
+                int i10 = nav.next(pcleared);
                 if (j9 > i10 && (clear != nlaps * checkpoints.nsp || j9 < pcleared)) {
                     j9 = i10;
                     focus = j9;
@@ -1815,15 +1898,17 @@ class Madness {
         if (nofocus)
             nofocus = false;
         point = j9;
-        for (int k10 = 0; k10 < checkpoints.fn; k10++)
+        int[] fixes = nav.fixes(conto.x, conto.z);
+        for (int l10 = 0; l10 < fixes.length; l10++) {
+            int k10 = fixes[l10];
             if (!checkpoints.roted[k10]) {
                 if (Math.abs(conto.z - checkpoints.fz[k10]) < 200 && Utility.py(conto.x / 100, checkpoints.fx[k10] / 100,
                         conto.y / 100, checkpoints.fy[k10] / 100) < 30) {
                     if (conto.dist == 0) {
                         conto.fcnt = 8;
                     } else {
-                        if (im == 0 && !conto.fix && !xt.mutes) {
-                            xt.sm.play("carfixed");
+                        if (im == 0 && !conto.fix) {
+                            sounds.carfixed();
                         }
                         conto.fix = true;
                     }
@@ -1834,13 +1919,14 @@ class Madness {
                 if (conto.dist == 0) {
                     conto.fcnt = 8;
                 } else {
-                    if (im == 0 && !conto.fix && !xt.mutes) {
-                        xt.sm.play("carfixed");
+                    if (im == 0 && !conto.fix) {
+                        sounds.carfixed();
                     }
                     conto.fix = true;
                 }
                 rpd.fix[im] = 300;
             }
+        }
 
         if (conto.fcnt == 7 || conto.fcnt == 8) {
             squash = 0;
@@ -1986,7 +2072,7 @@ class Madness {
             if (rpdcatch == 0) {
                 rpd.cotchinow(0);
                 if (rpd.hcaught)
-                    rpd.whenwasted = (int) (185F + Medium.random() * 20F);
+                    rpd.whenwasted = (int) (185F + rnd.next() * 20F);
             }
         }
     }
@@ -0,0 +1,143 @@
+package nfm.lit;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Regression test for garbage in the race loop.
+ *
+ * Runs the simulation half of a GameSparker INGAME tick (car-to-car collision,
+ * Madness.drive, Record.rec, CheckPoints.checkstat and the AI) for a full grid
+ * on a real stage read through StageReader, tracker boxes and all, and checks
+ * through the thread allocation counter that once warmed up a tick allocates
+ * nothing. The cars report their sounds to a counter rather than to
+ * XtGraphics, whose sound manager builds clip names on the fly, so the crash,
+ * skid and fix triggers in Madness are measured, and the test fails if no car
+ * ever crashed into a wall or another car. Skids and fixes only sound for
+ * car 0, so they are reported but not required.
+ *
+ * Run from the project root, no display needed.
+ */
+public class MadnessAllocationTest {
+
+    private static final int STAGE = 2;
+    private static final int WARMUP_TICKS = 1500;
+    private static final int MEASURED_TICKS = 1500;
+
+    /** Counts the sounds the cars ask for. */
+    private static final class Sounds implements CarSounds {
+        int crashes;
+        int skids;
+        int fixes;
+
+        @Override
+        public void crash(float f, int i) {
+            crashes++;
+        }
+
+        @Override
+        public void skid(int i, float f) {
+            skids++;
+        }
+
+        @Override
+        public void carfixed() {
+            fixes++;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Madness Allocation Test ===\n");
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation counting is not supported by this JVM, skipping");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int cars = GameFacts.numberOfPlayers;
+        Sounds sounds = new Sounds();
+        Record record = new Record();
+        Trackers trackers = new Trackers();
+        byte[][] modeldata = StageReader.modeldata();
+        ContO[] models = new ContO[modeldata.length];
+        for (int i = 0; i < modeldata.length; i++) {
+            if (modeldata[i] != null) {
+                models[i] = new ContO(modeldata[i], trackers);
+            }
+        }
+        trackers.nt = 0;
+        trackers.index();
+        ContO[] conto = new ContO[StageConfig.MAX_OBJECTS];
+        CheckPoints checkpoints = new CheckPoints();
+        checkpoints.stage = STAGE;
+        StageReader stagereader = new StageReader(null, cars);
+        try (BufferedReader in = new BufferedReader(new FileReader(StageConfig.STAGE_DIR + "nfm2/" + STAGE + ".txt"))) {
+            stagereader.read(in, conto, models, trackers, checkpoints);
+        }
+        trackers.index();
+
+        Madness[] madness = new Madness[cars];
+        Control[] u = new Control[cars];
+        int[] sc = new int[StageConfig.MAX_CARS];
+        for (int i = 0; i < cars; i++) {
+            sc[i] = i % StatList.msquash.length;
+            madness[i] = new Madness(record, sounds, i);
+            madness[i].stat = new Stat(sc[i]);
+            madness[i].seed(i);
+            u[i] = new Control();
+            u[i].seed(i);
+            u[i].reset(checkpoints, sc[i]);
+        }
+        StageReader.grid(conto, models, sc, madness, checkpoints, cars);
+        record.reset(conto);
+        CarBroadphase broadphase = new CarBroadphase();
+        DrivePhase drivePhase = new DrivePhase(false);
+
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            tick(broadphase, drivePhase, madness, conto, u, record, trackers, checkpoints, cars);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            tick(broadphase, drivePhase, madness, conto, u, record, trackers, checkpoints, cars);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        System.out.println("Stage: " + checkpoints.name + ", " + trackers.nt + " tracker boxes");
+        System.out.println("Cars: " + cars);
+        System.out.println("Ticks measured: " + MEASURED_TICKS);
+        System.out.println("Bytes allocated: " + allocated);
+        System.out.println("Sounds asked for: " + sounds.crashes + " crashes, " + sounds.skids + " skids, "
+                + sounds.fixes + " fixes");
+        if (trackers.nt == 0 || sounds.crashes == 0) {
+            System.out.println("❌ FAIL: the cars never hit anything, so the collision paths were not measured");
+            System.exit(1);
+        }
+        if (allocated == 0) {
+            System.out.println("✅ PASS: INGAME simulation tick allocates nothing");
+        } else {
+            System.out.println("❌ FAIL: INGAME simulation tick allocates about " + allocated / MEASURED_TICKS
+                    + " bytes per tick");
+            System.exit(1);
+        }
+    }
+
+    /** The simulation part of the INGAME phase in GameSparker, with every car driven by the AI. */
+    private static void tick(CarBroadphase broadphase, DrivePhase drivePhase, Madness[] madness, ContO[] conto,
+                             Control[] u, Record record, Trackers trackers, CheckPoints checkpoints, int cars) {
+        broadphase.colide(madness, conto, cars);
+        drivePhase.drive(madness, u, conto, trackers, checkpoints, cars);
+        for (int i = 0; i < cars; i++) {
+            record.rec(conto[i], i, madness[i].squash, madness[i].lastcolido, madness[i].cntdest);
+        }
+        checkpoints.checkstat(madness, conto, record, cars);
+        for (int i = 0; i < cars; i++) {
+            u[i].preform(madness[i], conto[i], checkpoints, trackers, cars);
+        }
+    }
+}
@@ -9,6 +9,9 @@ import java.util.Random;
  * @author Kaffeinated, Chaotic, Omar Wally
  */
 public class Medium {
+    // Cosmetic random stream (sky, clouds, dust, sparks), never read by the race itself
+    public static final Xoroshiro fx = new Xoroshiro(System.nanoTime());
+    private static final RandomCycle cycle = new RandomCycle(fx.nextLong());
     private static int nmt = 0;
     private static int[] mrd = null;
     private static int[] nmv = null;
@@ -16,7 +19,7 @@ public class Medium {
     private static int[][] mty = null;
     private static int[][] mtz = null;
     private static int[][][] mtc = null;
-    public static int mgen = (int) (Math.random() * 100000D);
+    public static int mgen = (int) (fx.nextDouble() * 100000D);
     public static int focus_point = 400;
     public static int ground = 250;
     private static int skyline = -300;
@@ -58,6 +61,12 @@ public class Medium {
     };
     public static int origfade = 3000;
     public static int fogd = 7;
+    /* fog settings last seen by fogVersion() */
+    private static int fogver = 0;
+    private static int lfogd = -1;
+    private static final int[] lcfade = {
+            -1, -1, -1
+    };
     public static boolean lightson = false;
     private static int noelec = 0;
     public static int lightn = -1;
@@ -100,10 +109,6 @@ public class Medium {
     public static float elecr = 0.0F;
     public static boolean cpflik = false;
     public static boolean nochekflk = false;
-    private static int cntrn = 0;
-    private static boolean diup[] = new boolean[3];
-    private static int rand[] = new int[3];
-    private static int trn = 0;
     public static int hit = 45000;
     public static int ptr = 0;
     public static int ptcnt = -10;
@@ -114,7 +119,7 @@ public class Medium {
     private static long atrz = 0L;
     public static int fallen = 0;
     private static float fo = 1.0F;
-    private static float gofo = (float) (0.33000001311302185D + Math.random() * 1.3400000000000001D);
+    private static float gofo = (float) (0.33000001311302185D + fx.nextDouble() * 1.3400000000000001D);
     private static float[][] pvr;
     private static int[] pmx;
     private static float[] pcv;
@@ -142,35 +147,14 @@ public class Medium {
     public static boolean noclouds = false;
 
     public static float random() {
-        if (cntrn == 0) {
-            int i = 0;
-            do {
-                rand[i] = (int) (10D * Math.random());
-                diup[i] = Math.random() <= Math.random();
-            } while (++i < 3);
-            cntrn = 20;
-        } else {
-            cntrn--;
-        }
-        int j = 0;
-        do {
-            if (diup[j]) {
-                rand[j]++;
-                if (rand[j] == 10) {
-                    rand[j] = 0;
-                }
-            } else {
-                rand[j]--;
-                if (rand[j] == -1) {
-                    rand[j] = 9;
-                }
-            }
-        } while (++j < 3);
-        trn++;
-        if (trn == 3) {
-            trn = 0;
-        }
-        return rand[trn] / 10F;
+        return cycle.next();
+    }
+
+    /** Restarts the cosmetic stream from the {@link Xoroshiro#COSMETIC} stream of a race seed. */
+    public static void seed(long seed) {
+        Xoroshiro stream = new Xoroshiro(seed, Xoroshiro.COSMETIC);
+        fx.reseed(stream.nextLong());
+        cycle.reseed(stream.nextLong());
     }
 
     public static void newpolys(int i, int j, int k, int l, Trackers trackers, int i1) {
@@ -197,24 +181,33 @@ public class Medium {
         pcv = new float[nrw * ncl];
         int j1 = 0;
         int k1 = 0;
+        int[] near = new int[trackers.x.length];
         for (int l1 = 0; l1 < nrw * ncl; l1++) {
             cgpx[l1] = sgpx + j1 * 1200 + (int) (random1.nextDouble() * 1000D - 500D);
             cgpz[l1] = sgpz + k1 * 1200 + (int) (random1.nextDouble() * 1000D - 500D);
-            for (int j2 = 0; j2 < trackers.nt; j2++) {
+            int nnear = trackers.near(cgpx[l1], cgpz[l1], cgpx[l1], cgpz[l1], 0, near);
+            for (int n1 = 0; n1 < nnear; n1++) {
+                int j2 = near[n1];
                 if (trackers.zy[j2] != 0 || trackers.xy[j2] != 0) {
                     continue;
                 }
+                int px = cgpx[l1];
+                int pz = cgpz[l1];
                 if (trackers.radx[j2] < trackers.radz[j2] && Math.abs(cgpz[l1] - trackers.z[j2]) < trackers.radz[j2]) {
                     for (; Math.abs(cgpx[l1] - trackers.x[j2]) < trackers.radx[j2]; cgpx[l1] += random1.nextDouble()
                             * trackers.radx[j2] * 2D - trackers.radx[j2]) {
                     }
                 }
-                if (trackers.radz[j2] >= trackers.radx[j2]
-                        || Math.abs(cgpx[l1] - trackers.x[j2]) >= trackers.radx[j2]) {
-                    continue;
+                if (trackers.radz[j2] < trackers.radx[j2]
+                        && Math.abs(cgpx[l1] - trackers.x[j2]) < trackers.radx[j2]) {
+                    for (; Math.abs(cgpz[l1] - trackers.z[j2]) < trackers.radz[j2]; cgpz[l1] += random1.nextDouble()
+                            * trackers.radz[j2] * 2D - trackers.radz[j2]) {
+                    }
                 }
-                for (; Math.abs(cgpz[l1] - trackers.z[j2]) < trackers.radz[j2]; cgpz[l1] += random1.nextDouble()
-                        * trackers.radz[j2] * 2D - trackers.radz[j2]) {
+                if (cgpx[l1] != px || cgpz[l1] != pz) {
+                    /* the point was pushed out of this box, look again around where it landed */
+                    nnear = trackers.near(cgpx[l1], cgpz[l1], cgpx[l1], cgpz[l1], j2 + 1, near);
+                    n1 = -1;
                 }
             }
 
@@ -367,7 +360,7 @@ public class Medium {
                     k7 = (k7 * 7 + cfade[2]) / 8;
                 }
                 graphics2d.setColor(new Color(i7, j7, k7));
-                graphics2d.fillPolygon(ai9, ai10, 8);
+                SoftRaster.fillPolygon(graphics2d, ai9, ai10, 8);
             }
 
         }
@@ -433,7 +426,7 @@ public class Medium {
                     k6 = (k6 * 7 + cfade[2]) / 8;
                 }
                 graphics2d.setColor(new Color(l5, j6, k6));
-                graphics2d.fillPolygon(ai5, ai7, 8);
+                SoftRaster.fillPolygon(graphics2d, ai5, ai7, 8);
             }
         }
     }
@@ -443,7 +436,7 @@ public class Medium {
         ground = 250;
         skyline = -300;
         fogd = 7;
-        mgen = (int) (Math.random() * 100000D);
+        mgen = (int) (fx.nextDouble() * 100000D);
         snap = new int[3];
         origfade = 3000;
         fogd = 3;
@@ -488,10 +481,6 @@ public class Medium {
         elecr = 0.0F;
         cpflik = false;
         nochekflk = false;
-        cntrn = 0;
-        diup = new boolean[3];
-        rand = new int[3];
-        trn = 0;
         hit = 45000;
         ptr = 0;
         ptcnt = -10;
@@ -502,7 +491,7 @@ public class Medium {
         atrz = 0L;
         fallen = 0;
         fo = 1.0F;
-        gofo = (float) (0.33000001311302185D + Math.random() * 1.3400000000000001D);
+        gofo = (float) (0.33000001311302185D + fx.nextDouble() * 1.3400000000000001D);
         detailtype = 2;
         noclouds = false;
     }
@@ -530,57 +519,57 @@ public class Medium {
         claz = new int[noc][3][12];
         clc = new int[noc][2][6][3];
         for (int i1 = 0; i1 < noc; i1++) {
-            clx[i1] = (int) (i + (j - i) * Math.random());
-            clz[i1] = (int) (k + (l - k) * Math.random());
-            float f = (float) (0.25D + Math.random() * 1.25D);
-            float f1 = (float) ((200D + Math.random() * 700D) * f);
+            clx[i1] = (int) (i + (j - i) * fx.nextDouble());
+            clz[i1] = (int) (k + (l - k) * fx.nextDouble());
+            float f = (float) (0.25D + fx.nextDouble() * 1.25D);
+            float f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][0] = (int) (f1 * 0.3826D);
             claz[i1][0][0] = (int) (f1 * 0.92379999999999995D);
-            clay[i1][0][0] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][0] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][1] = (int) (f1 * 0.70709999999999995D);
             claz[i1][0][1] = (int) (f1 * 0.70709999999999995D);
-            clay[i1][0][1] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][1] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][2] = (int) (f1 * 0.92379999999999995D);
             claz[i1][0][2] = (int) (f1 * 0.3826D);
-            clay[i1][0][2] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][2] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][3] = (int) (f1 * 0.92379999999999995D);
             claz[i1][0][3] = -(int) (f1 * 0.3826D);
-            clay[i1][0][3] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][3] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][4] = (int) (f1 * 0.70709999999999995D);
             claz[i1][0][4] = -(int) (f1 * 0.70709999999999995D);
-            clay[i1][0][4] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][4] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][5] = (int) (f1 * 0.3826D);
             claz[i1][0][5] = -(int) (f1 * 0.92379999999999995D);
-            clay[i1][0][5] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][5] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][6] = -(int) (f1 * 0.3826D);
             claz[i1][0][6] = -(int) (f1 * 0.92379999999999995D);
-            clay[i1][0][6] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][6] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][7] = -(int) (f1 * 0.70709999999999995D);
             claz[i1][0][7] = -(int) (f1 * 0.70709999999999995D);
-            clay[i1][0][7] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][7] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][8] = -(int) (f1 * 0.92379999999999995D);
             claz[i1][0][8] = -(int) (f1 * 0.3826D);
-            clay[i1][0][8] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][8] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][9] = -(int) (f1 * 0.92379999999999995D);
             claz[i1][0][9] = (int) (f1 * 0.3826D);
-            clay[i1][0][9] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][9] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][10] = -(int) (f1 * 0.70709999999999995D);
             claz[i1][0][10] = (int) (f1 * 0.70709999999999995D);
-            clay[i1][0][10] = (int) ((25D - Math.random() * 50D) * f);
-            f1 = (float) ((200D + Math.random() * 700D) * f);
+            clay[i1][0][10] = (int) ((25D - fx.nextDouble() * 50D) * f);
+            f1 = (float) ((200D + fx.nextDouble() * 700D) * f);
             clax[i1][0][11] = -(int) (f1 * 0.3826D);
             claz[i1][0][11] = (int) (f1 * 0.92379999999999995D);
-            clay[i1][0][11] = (int) ((25D - Math.random() * 50D) * f);
+            clay[i1][0][11] = (int) ((25D - fx.nextDouble() * 50D) * f);
             for (int j1 = 0; j1 < 12; j1++) {
                 int j2 = j1 - 1;
                 if (j2 == -1) {
@@ -596,14 +585,14 @@ public class Medium {
             }
 
             for (int k1 = 0; k1 < 12; k1++) {
-                float f2 = (float) (1.2D + 0.59999999999999998D * Math.random());
+                float f2 = (float) (1.2D + 0.59999999999999998D * fx.nextDouble());
                 clax[i1][1][k1] = (int) (clax[i1][0][k1] * f2);
                 claz[i1][1][k1] = (int) (claz[i1][0][k1] * f2);
-                clay[i1][1][k1] = (int) (clay[i1][0][k1] - 100D * Math.random());
-                f2 = (float) (1.1000000000000001D + 0.29999999999999999D * Math.random());
+                clay[i1][1][k1] = (int) (clay[i1][0][k1] - 100D * fx.nextDouble());
+                f2 = (float) (1.1000000000000001D + 0.29999999999999999D * fx.nextDouble());
                 clax[i1][2][k1] = (int) (clax[i1][1][k1] * f2);
                 claz[i1][2][k1] = (int) (claz[i1][1][k1] * f2);
-                clay[i1][2][k1] = (int) (clay[i1][1][k1] - 240D * Math.random());
+                clay[i1][2][k1] = (int) (clay[i1][1][k1] - 240D * fx.nextDouble());
             }
 
             cmx[i1] = 0;
@@ -625,8 +614,8 @@ public class Medium {
             }
 
             for (int i2 = 0; i2 < 6; i2++) {
-                double d1 = Math.random();
-                double d2 = Math.random();
+                double d1 = fx.nextDouble();
+                double d2 = fx.nextDouble();
                 for (int k3 = 0; k3 < 3; k3++) {
                     float f3 = clds[k3] * 1.05F - clds[k3];
                     clc[i1][0][i2][k3] = (int) (clds[k3] + f3 * d1);
@@ -776,7 +765,7 @@ public class Medium {
                 }
 
                 graphics2d.setColor(new Color(j6, j7, j8));
-                graphics2d.fillPolygon(ai3, ai4, 6);
+                SoftRaster.fillPolygon(graphics2d, ai3, ai4, 6);
             }
 
             for (int l3 = 0; l3 < 12; l3 += 2) {
@@ -868,7 +857,7 @@ public class Medium {
                 }
 
                 graphics2d.setColor(new Color(l6, l7, k8));
-                graphics2d.fillPolygon(ai3, ai4, 6);
+                SoftRaster.fillPolygon(graphics2d, ai3, ai4, 6);
             }
 
             k1 = 0;
@@ -924,7 +913,7 @@ public class Medium {
             }
 
             graphics2d.setColor(new Color(l5, i7, i8));
-            graphics2d.fillPolygon(ai3, ai4, 12);
+            SoftRaster.fillPolygon(graphics2d, ai3, ai4, 12);
         }
 
     }
@@ -1096,7 +1085,7 @@ public class Medium {
                             int i_211_ = (int) ((mtc[i_185_][i_202_][2] + cgrnd[2] + csky[2] * f
                                     + cfade[2] * f) / (2.0F + f * 2.0F));
                             rd.setColor(new Color(i_209_, i_210_, i_211_)); // Mountain Color, should make this editable in the stage code
-                            rd.fillPolygon(is_196_, is_197_, 4);
+                            SoftRaster.fillPolygon(rd, is_196_, is_197_, 4);
                         }
                     }
                 }
@@ -1114,7 +1103,7 @@ public class Medium {
         twn = null;
         nst = 0;
         if (lightson) {
-            Random random1 = new Random((long) (Math.random() * 100000D));
+            Random random1 = new Random((long) (fx.nextDouble() * 100000D));
             nst = 40;
             stx = new int[nst];
             stz = new int[nst];
@@ -1174,7 +1163,7 @@ public class Medium {
                 continue;
             }
             if (twn[i] == 0) {
-                int j1 = (int) (3D * Math.random());
+                int j1 = (int) (3D * fx.nextDouble());
                 if (j1 >= 3) {
                     j1 = 0;
                 }
@@ -1182,7 +1171,7 @@ public class Medium {
                     j1 = 2;
                 }
                 int l1 = j1 + 1;
-                if (Math.random() > Math.random()) {
+                if (fx.nextDouble() > fx.nextDouble()) {
                     l1 = j1 - 1;
                 }
                 if (l1 == 3) {
@@ -1194,7 +1183,7 @@ public class Medium {
                 for (int i2 = 0; i2 < 3; i2++) {
                     stc[i][0][i2] = 200;
                     if (j1 == i2) {
-                        stc[i][0][i2] += (int) (55D * Math.random());
+                        stc[i][0][i2] += (int) (55D * fx.nextDouble());
                     }
                     if (l1 == i2) {
                         stc[i][0][i2] += 55;
@@ -1220,8 +1209,8 @@ public class Medium {
 
     }
 
-    public static void d(Graphics2D graphics2d) {
-        nsp = 0;
+    /** Keeps the camera's angles in range and its height above the ground, as drawing does first. */
+    public static void settle() {
         if (zy > 90) {
             zy = 90;
         }
@@ -1237,6 +1226,11 @@ public class Medium {
         if (y > 0) {
             y = 0;
         }
+    }
+
+    public static void d(Graphics2D graphics2d) {
+        nsp = 0;
+        settle();
 
         float t_cos = RadicalMath.cos(zy);
         float t_sin = RadicalMath.sin(zy);
@@ -1289,7 +1283,7 @@ public class Medium {
             }
             if (ai1[0] < h && ai1[1] > ih) {
                 graphics2d.setColor(new Color(i, j, k));
-                graphics2d.fillPolygon(ai, ai1, 4);
+                SoftRaster.fillPolygon(graphics2d, ai, ai1, 4);
             }
         }
 
@@ -1371,7 +1365,7 @@ public class Medium {
             }
             if (ai1[0] > ih && ai1[1] < h) {
                 graphics2d.setColor(new Color(i, j, k));
-                graphics2d.fillPolygon(ai, ai1, 4);
+                SoftRaster.fillPolygon(graphics2d, ai, ai1, 4);
             }
         }
 
@@ -1395,7 +1389,7 @@ public class Medium {
             j = (int) ((j * (1.0F - f) + i1 * (1.0F + f)) / 2.0F);
             k = (int) ((k * (1.0F - f) + j1 * (1.0F + f)) / 2.0F);
             graphics2d.setColor(new Color(i, j, k));
-            graphics2d.fillPolygon(ai, ai1, 4);
+            SoftRaster.fillPolygon(graphics2d, ai, ai1, 4);
         }
         if (resdown != 2) {
             for (int j4 = 1; j4 < 20; j4++) {
@@ -1429,7 +1423,7 @@ public class Medium {
                 i3 = (int) (i3 * 0.998D);
                 if (ai1[1] > ih && ai1[0] < h) {
                     graphics2d.setColor(new Color(i2, k2, i3));
-                    graphics2d.fillPolygon(ai, ai1, 4);
+                    SoftRaster.fillPolygon(graphics2d, ai, ai1, 4);
                 }
             }
 
@@ -1506,6 +1500,21 @@ public class Medium {
         }
     }
 
+    /**
+     * Returns a counter that changes whenever fogd or cfade differ from the last
+     * call, so cached fog colours (see Plane) know when to rebuild.
+     */
+    public static int fogVersion() {
+        if (fogd != lfogd || cfade[0] != lcfade[0] || cfade[1] != lcfade[1] || cfade[2] != lcfade[2]) {
+            lfogd = fogd;
+            lcfade[0] = cfade[0];
+            lcfade[1] = cfade[1];
+            lcfade[2] = cfade[2];
+            fogver++;
+        }
+        return fogver;
+    }
+
     public static void setSky(int i, int j, int k) {
         osky[0] = i;
         osky[1] = j;
@@ -1829,7 +1838,7 @@ public class Medium {
                     fo -= 0.005F;
                 }
             } else {
-                gofo = (float) (0.34999999403953552D + Math.random() * 1.3D);
+                gofo = (float) (0.34999999403953552D + fx.nextDouble() * 1.3D);
             }
             vxz++;
             trx -= (trx - checkpoints.x[ptr]) / 10L;
@@ -1,5 +1,6 @@
 package nfm.lit;
 import java.awt.*;
+import java.util.Arrays;
 
 public class Plane {
     private final Trackers t;
@@ -45,27 +46,108 @@ public class Plane {
     private int pb;
     public int flx;
     public boolean solo;
+    /* first slot of this plane's vertices in the owning ContO's transform buffers */
+    public int vo;
+    /* candidate tracker ids from Trackers.near for the shadow ground search */
+    private static int[] tnear;
+
+    /* fill colour cache: SHADES shade levels plus a lights-on row, by 9 fog bands */
+    private static final int SHADES = 64;
+    private static final int FOG_BANDS = 9;
+    private Color[] clut;
+    private int clutver = -1;
+    private float clh;
+    private float cls;
+    private float clb;
+
+    /**
+     * Fill colour for a shade row and fog band (the number of fade distances the
+     * plane lies beyond). Colours are built on first use and kept until the fog
+     * settings or this plane's hsb change.
+     */
+    private Color fillColor(int row, int band) {
+        int ver = Medium.fogVersion();
+        if (clut == null) {
+            clut = new Color[(SHADES + 1) * FOG_BANDS];
+        }
+        if (ver != clutver || hsb[0] != clh || hsb[1] != cls || hsb[2] != clb) {
+            Arrays.fill(clut, null);
+            clutver = ver;
+            clh = hsb[0];
+            cls = hsb[1];
+            clb = hsb[2];
+        }
+        int i = row * FOG_BANDS + band;
+        Color color = clut[i];
+        if (color == null) {
+            int r;
+            int g;
+            int b;
+            if (row == SHADES) {
+                r = Math.min(Math.max(oc[0], 0), 255);
+                g = Math.min(Math.max(oc[1], 0), 255);
+                b = Math.min(Math.max(oc[2], 0), 255);
+            } else {
+                int rgb = Color.HSBtoRGB(hsb[0], hsb[1], hsb[2] * ((float) row / (SHADES - 1)));
+                r = rgb >> 16 & 0xff;
+                g = rgb >> 8 & 0xff;
+                b = rgb & 0xff;
+            }
+            for (int j = 0; j < band; j++) {
+                r = (r * Medium.fogd + Medium.cfade[0]) / (Medium.fogd + 1);
+                g = (g * Medium.fogd + Medium.cfade[1]) / (Medium.fogd + 1);
+                b = (b * Medium.fogd + Medium.cfade[2]) / (Medium.fogd + 1);
+            }
+            color = new Color(r, g, b);
+            clut[i] = color;
+        }
+        return color;
+    }
 
     public void loadprojf() {
-        projf = 1.0F;
+        projf = projf(ox, oz);
+    }
+
+    /**
+     * The lighting numerator: the x/z distances between the first three
+     * vertices, each pair taken both ways, in hundreds, over 3. The two
+     * factors of a pair multiply to its squared distance, so the product
+     * needs no square roots.
+     */
+    private static float projf(int[] x, int[] z) {
+        double f = 1.0D;
         int i = 0;
         do {
-            int j = 0;
+            int j = i + 1;
             do {
-                if (j != i) {
-                    projf *= (float) (Math.sqrt((ox[i] - ox[j]) * (ox[i] - ox[j]) + (oz[i] - oz[j]) * (oz[i] - oz[j]))
-                            / 100D);
-                }
+                f *= (x[i] - x[j]) * (x[i] - x[j]) + (z[i] - z[j]) * (z[i] - z[j]);
             } while (++j < 3);
-        } while (++i < 3);
-        projf = projf / 3F;
+        } while (++i < 2);
+        return (float) (f / 3E12D);
     }
 
     public Plane(Trackers trackers, int ai[], int ai1[], int ai2[], int i, int ai3[], boolean flag,
                  int j, int k, int l, int i1, int j1, int k1, int l1, boolean flag1, int i2, boolean flag2) {
+        t = trackers;
         c = new int[3];
         oc = new int[3];
         hsb = new float[3];
+        cox = new int[3];
+        coz = new int[3];
+        coy = new int[3];
+        ox = new int[Math.max(i, 3)];
+        oz = new int[Math.max(i, 3)];
+        oy = new int[Math.max(i, 3)];
+        load(ai, ai1, ai2, i, ai3, flag, j, k, l, i1, j1, k1, l1, flag1, i2, flag2);
+    }
+
+    /**
+     * Sets the plane up again from the constructor arguments, reusing its
+     * arrays. {@code i} must give the same vertex array length the plane was
+     * built with.
+     */
+    void load(int ai[], int ai1[], int ai2[], int i, int ai3[], boolean flag,
+              int j, int k, int l, int i1, int j1, int k1, int l1, boolean flag1, int i2, boolean flag2) {
         glass = false;
         gr = 0;
         fs = 0;
@@ -86,9 +168,6 @@ public class Plane {
         cxz = 0;
         cxy = 0;
         czy = 0;
-        cox = new int[3];
-        coz = new int[3];
-        coy = new int[3];
         dx = 0;
         dy = 0;
         dz = 0;
@@ -100,15 +179,11 @@ public class Plane {
         pa = 0;
         pb = 0;
         flx = 0;
-        t = trackers;
         n = i;
         
         // Safety check: planes need at least 3 vertices
         if (n < 3) {
             System.err.println("Warning: Plane created with only " + n + " vertices. Using minimal defaults.");
-            ox = new int[3];
-            oz = new int[3];
-            oy = new int[3];
             // Create a minimal triangle if no vertices provided
             ox[0] = ox[1] = ox[2] = 0;
             oy[0] = oy[1] = oy[2] = 0;
@@ -117,9 +192,6 @@ public class Plane {
             return;
         }
         
-        ox = new int[n];
-        oz = new int[n];
-        oy = new int[n];
         for (int j2 = 0; j2 < n; j2++) {
             ox[j2] = ai[j2];
             oy[j2] = ai2[j2];
@@ -143,19 +215,21 @@ public class Plane {
             oc[j3] = ai3[j3];
         } while (++j3 < 3);
         if (j == -15) {
-            j3 = (int) (185D + Math.random() * 30D);
+            // the roughness comes from the plane's own shape, so it is the same on every load
+            long h = 31L * Arrays.hashCode(ox) + Arrays.hashCode(oz);
+            j3 = (int) (185D + Xoroshiro.hash(h++) * 30D);
             ai3[0] = (217 + j3) / 2;
             ai3[1] = (189 + j3) / 2;
             ai3[2] = (132 + j3) / 2;
             for (int k3 = 0; k3 < n; k3++) {
-                if (Math.random() > Math.random()) {
-                    ox[k3] += (int) (8D * Math.random() - 4D);
+                if (Xoroshiro.hash(h++) > Xoroshiro.hash(h++)) {
+                    ox[k3] += (int) (8D * Xoroshiro.hash(h++) - 4D);
                 }
-                if (Math.random() > Math.random()) {
-                    oy[k3] += (int) (8D * Math.random() - 4D);
+                if (Xoroshiro.hash(h++) > Xoroshiro.hash(h++)) {
+                    oy[k3] += (int) (8D * Xoroshiro.hash(h++) - 4D);
                 }
-                if (Math.random() > Math.random()) {
-                    oz[k3] += (int) (8D * Math.random() - 4D);
+                if (Xoroshiro.hash(h++) > Xoroshiro.hash(h++)) {
+                    oz[k3] += (int) (8D * Xoroshiro.hash(h++) - 4D);
                 }
             }
 
@@ -276,7 +350,7 @@ public class Plane {
                 }
 
                 rd.setColor(new Color(230, 230, 230));
-                rd.fillPolygon(ai3, ai5, n);
+                SoftRaster.fillDecal(rd, ai3, ai5, ai1, n);
             }
             float f = 1.0F;
             if (embos <= 4)/// explode outward a little + white flame
@@ -407,7 +481,7 @@ public class Plane {
                     k9 = 0;
                 }
                 rd.setColor(new Color(k8, i9, k9));
-                rd.fillPolygon(ai12, ai13, 3);
+                SoftRaster.fillEffect(rd, ai12, ai13, ai1, 3);
                 ai[0] = ox[pa] + i;
                 ai2[0] = oy[pa] + j;
                 ai1[0] = oz[pa] + k;
@@ -467,7 +541,7 @@ public class Plane {
                     k9 = 0;
                 }
                 rd.setColor(new Color(k8, i9, k9));
-                rd.fillPolygon(ai12, ai13, 3);
+                SoftRaster.fillEffect(rd, ai12, ai13, ai1, 3);
             }
             for (int k3 = 0; k3 < n; k3++) {
                 if (typ == 1) {
@@ -591,7 +665,7 @@ public class Plane {
             } else {
                 rd.setColor(Color.getHSBColor(hsb[0], hsb[1], hsb[2]));
             }
-            rd.fillPolygon(ai10, ai11, 3);
+            SoftRaster.fillDecal(rd, ai10, ai11, ai6, 3);
             chip++;
             if (chip == 20) {
                 chip = 0;
@@ -601,24 +675,61 @@ public class Plane {
         Utility.rot(ai2, ai1, j, k, j1, n);
         Utility.rot(ai, ai1, i, k, l, n);
         if (i1 != 0 || j1 != 0 || l != 0) {
-            projf = 1.0F;
-            int j3 = 0;
-            do {
-                int l3 = 0;
-                do {
-                    if (l3 != j3) {
-                        projf *= (float) (Math
-                                .sqrt((ai[j3] - ai[l3]) * (ai[j3] - ai[l3]) + (ai1[j3] - ai1[l3]) * (ai1[j3] - ai1[l3]))
-                                / 100D);
-                    }
-                } while (++l3 < 3);
-            } while (++j3 < 3);
-            projf = projf / 3F;
+            projf = projf(ai, ai1);
         }
         Utility.rot(ai, ai1, Medium.cx, Medium.cz, Medium.xz, n);
+        face(rd, ai, ai1, ai2, new int[n], new int[n], null, null, flag, i2, blackout);
+    }
+
+    /**
+     * Draws this plane from the vertex slot at {@link #vo} in buffers the owning
+     * ContO has already transformed: object rotation and camera xz in tx/ty/tz,
+     * plus camera zy in ty2/tz2. Only valid for planes that pass
+     * {@link #pretransformable()}.
+     *
+     * @param rotated whether the object has any rotation, in which case projf
+     *                is recomputed as the per-plane path does
+     * @param sc      the owning ContO's scratch rows, at least as long as its
+     *                largest plane: x, z and y, then screen x and y
+     */
+    public void d(Graphics2D rd, int[] tx, int[] ty, int[] tz, int[] ty2, int[] tz2, boolean rotated,
+                  int[][] sc, boolean flag, int i2, boolean blackout) {
+        int ai[] = sc[0];
+        int ai1[] = sc[1];
+        int ai2[] = sc[2];
+        System.arraycopy(tx, vo, ai, 0, n);
+        System.arraycopy(ty, vo, ai2, 0, n);
+        System.arraycopy(tz, vo, ai1, 0, n);
+        if (rotated) {
+            /* camera xz is a rotation in x/z, so these distances match the pre-camera ones */
+            projf = projf(ai, ai1);
+        }
+        face(rd, ai, ai1, ai2, sc[3], sc[4], ty2, tz2, flag, i2, blackout);
+    }
+
+    /**
+     * Whether a coarser level of detail may leave this plane out. Planes in
+     * the middle of a chip, embossing or flame animation are always drawn so
+     * the animation keeps its pace.
+     */
+    public boolean lodskip() {
+        return embos == 0 && chip == 0 && flx == 0;
+    }
+
+    /**
+     * True when this plane's vertices can come from the owning ContO's shared
+     * transform: no per-plane wheel spin, damage effects, chips, dust master
+     * resizing or mirrored checkpoint arrows.
+     */
+    public boolean pretransformable() {
+        return embos == 0 && chip == 0 && wx == 0 && wz == 0 && master == 0
+                && !((gr == -11 || gr == -13) && Medium.lastmaf == 1);
+    }
+
+    /* ai7/ai9 receive the screen position, first before camera zy for the shading test and then after it */
+    private void face(Graphics2D rd, int ai[], int ai1[], int ai2[], int ai7[], int ai9[], int[] ty2, int[] tz2,
+                      boolean flag, int i2, boolean blackout) {
         boolean flag1 = false;
-        int ai7[] = new int[n];
-        int ai9[] = new int[n];
         int l4 = 500;
         for (int j5 = 0; j5 < n; j5++) {
             ai7[j5] = Utility.xs(ai[j5], ai1[j5]);
@@ -658,10 +769,18 @@ public class Plane {
                 flag1 = false;
             }
         }
-        Utility.rot(ai2, ai1, Medium.cy, Medium.cz, Medium.zy, n);
+        if (ty2 != null) {
+            /* camera zy already applied by the owning ContO */
+            for (int k = 0; k < n; k++) {
+                ai2[k] = ty2[vo + k];
+                ai1[k] = tz2[vo + k];
+            }
+        } else {
+            Utility.rot(ai2, ai1, Medium.cy, Medium.cz, Medium.zy, n);
+        }
         boolean flag2 = true;
-        int ai14[] = new int[n];
-        int ai15[] = new int[n];
+        int ai14[] = ai7;
+        int ai15[] = ai9;
         int j8 = 0;
         int l8 = 0;
         int j9 = 0;
@@ -913,56 +1032,21 @@ public class Plane {
                     f1 = 0.6F;
                 }
             }
-            Color color;
-            if (!Medium.trk) {
-                color = Color.getHSBColor(hsb[0], hsb[1], hsb[2] * f1);
-            } else {
-                float af[] = new float[3];
-                Color.RGBtoHSB(oc[0], oc[1], oc[2], af);
-                color = Color.getHSBColor(hsb[0], hsb[1], hsb[2] * f1);
-            }
-            int l11 = color.getRed();
-            int j13 = color.getGreen();
-            int k14 = color.getBlue();
-            if (Medium.lightson && light != 0) {
-                l11 = oc[0];
-                if (l11 > 255) {
-                    l11 = 255;
-                }
-                if (l11 < 0) {
-                    l11 = 0;
-                }
-                j13 = oc[1];
-                if (j13 > 255) {
-                    j13 = 255;
-                }
-                if (j13 < 0) {
-                    j13 = 0;
-                }
-                k14 = oc[2];
-                if (k14 > 255) {
-                    k14 = 255;
-                }
-                if (k14 < 0) {
-                    k14 = 0;
-                }
-            }
+            int i10 = 0;
             if (!Medium.trk) {
                 int l15 = 0;
                 do {
                     if (av > Medium.fade[l15]) {
-                        l11 = (l11 * Medium.fogd + Medium.cfade[0]) / (Medium.fogd + 1);
-                        j13 = (j13 * Medium.fogd + Medium.cfade[1]) / (Medium.fogd + 1);
-                        k14 = (k14 * Medium.fogd + Medium.cfade[2]) / (Medium.fogd + 1);
+                        i10++;
                     }
                 } while (++l15 < 8);
             }
-            if (blackout){
-                rd.setColor(new Color(0,0,0));
-            } else {
-                rd.setColor(new Color(l11, j13, k14));
-            }
-            rd.fillPolygon(ai14, ai15, n);
+            Color color = fillColor(Medium.lightson && light != 0 ? SHADES : Math.round(f1 * (SHADES - 1)), i10);
+            int l11 = color.getRed();
+            int j13 = color.getGreen();
+            int k14 = color.getBlue();
+            rd.setColor(blackout ? Color.BLACK : color);
+            SoftRaster.fillPolygon(rd, ai14, ai15, ai1, n);
             if (Medium.trk && gr == -10) {
                 flag = false;
             }
@@ -997,13 +1081,13 @@ public class Plane {
                         }
                         rd.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                         rd.setColor(new Color(l11, j13, k14));
-                        rd.drawPolygon(ai14, ai15, n);
+                        SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
                         rd.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
                     }
                 } else {
                     if (flx == 2) {
                         rd.setColor(new Color(0, 0, 0));
-                        rd.drawPolygon(ai14, ai15, n);
+                        SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
                     }
                     if (flx == 1) {
                         l11 = 0;
@@ -1022,7 +1106,7 @@ public class Plane {
                             k14 = 0;
                         }
                         rd.setColor(new Color(l11, j13, k14));
-                        rd.drawPolygon(ai14, ai15, n);
+                        SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
                         flx = 2;
                     }
                     if (flx == 3) {
@@ -1042,7 +1126,7 @@ public class Plane {
                             k14 = 0;
                         }
                         rd.setColor(new Color(l11, j13, k14));
-                        rd.drawPolygon(ai14, ai15, n);
+                        SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
                         flx = 2;
                     }
                 }
@@ -1057,7 +1141,7 @@ public class Plane {
                     k14 = 0;
                 }
                 rd.setColor(new Color(l11, j13, k14));
-                rd.drawPolygon(ai14, ai15, n);
+                SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
             }
             if (gr == -10) {
                 if (!Medium.trk) {
@@ -1102,9 +1186,9 @@ public class Plane {
                         }
                     } while (++i16 < 8);
                     rd.setColor(new Color(i12, k13, l14));
-                    rd.drawPolygon(ai14, ai15, n);
+                    SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
                 } else if (Medium.cpflik && Medium.hit == 5000) {
-                    int l13 = (int) (Math.random() * 115D);
+                    int l13 = (int) (Medium.fx.nextDouble() * 115D);
                     int j12 = l13 * 2 - 54;
                     if (j12 < 0) {
                         j12 = 0;
@@ -1126,7 +1210,7 @@ public class Plane {
                         l13 = 255;
                     }
                     rd.setColor(new Color(j12, l13, i15));
-                    rd.drawPolygon(ai14, ai15, n);
+                    SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
                 }
             }
             if (gr == -18 && !Medium.trk) {
@@ -1153,7 +1237,7 @@ public class Plane {
                     }
                 } while (++j16 < 8);
                 rd.setColor(new Color(k12, i14, j15));
-                rd.drawPolygon(ai14, ai15, n);
+                SoftRaster.drawPolygon(rd, ai14, ai15, ai1, n);
             }
         }
     }
@@ -1220,7 +1304,12 @@ public class Plane {
 
             int i5 = (i3 + j3) / 2;
             int i6 = (k3 + l3) / 2;
-            for (int l6 = t.nt - 1; l6 >= 0; l6--) {
+            if (tnear == null || tnear.length < t.x.length) {
+                tnear = new int[t.x.length];
+            }
+            int nnear = t.near(i5 + Medium.x, i6 + Medium.z, i5 + Medium.x, i6 + Medium.z, 0, tnear);
+            for (int n1 = nnear - 1; n1 >= 0; n1--) {
+                int l6 = tnear[n1];
                 int k7 = 0;
                 if (Math.abs(t.zy[l6]) != 90 && Math.abs(t.xy[l6]) != 90 && Math.abs(i5 - (t.x[l6] - Medium.x)) < t.radx[l6]
                         && Math.abs(i6 - (t.z[l6] - Medium.z)) < t.radz[l6]) {
@@ -1304,7 +1393,7 @@ public class Plane {
                 }
             } while (++k4 < 8);
             rd.setColor(new Color(i2, j2, k2));
-            rd.fillPolygon(ai3, ai4, n);
+            SoftRaster.fillDecal(rd, ai3, ai4, ai1, n);
         }
     }
 }
@@ -0,0 +1,190 @@
+package nfm.lit;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a list of {@link HeadlessRace}s on a thread pool and writes one CSV
+ * row per car per race. Each race has its own models, stage, cars and AI,
+ * so races share nothing but the raw model data.
+ * <p>
+ * Jobs are read one per line as {@code stage,seed,lineup}, the lineup being
+ * car model names or ids separated by spaces; blank lines and lines starting
+ * with # are skipped. For example {@code 3,42,formula7 nimi 2 king}.
+ * <p>
+ * Run from the project root: {@code RaceBatch <jobs> <out.csv> [threads]}.
+ */
+public class RaceBatch {
+    /* a race that has not ended after this many ticks (about an hour) is cut off */
+    private static final int MAX_TICKS = 70000;
+
+    private final int threads;
+
+    public RaceBatch(int threads) {
+        this.threads = threads;
+    }
+
+    /** A race to run: a stage, the car models on the grid and a seed. */
+    public static class Job {
+        public final int stage;
+        public final long seed;
+        public final int[] lineup;
+
+        public Job(int stage, long seed, int[] lineup) {
+            this.stage = stage;
+            this.seed = seed;
+            this.lineup = lineup;
+        }
+    }
+
+    /**
+     * Runs every job and returns the finished races in job order, with null
+     * for any race that could not be set up.
+     */
+    public List<HeadlessRace> run(List<Job> jobs) throws IOException, InterruptedException {
+        byte[][] modeldata = StageReader.modeldata();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<HeadlessRace>> futures = new ArrayList<>();
+            for (Job job : jobs) {
+                futures.add(pool.submit(() -> {
+                    HeadlessRace race = new HeadlessRace(modeldata, job.stage, job.lineup, job.seed);
+                    race.run(MAX_TICKS);
+                    return race;
+                }));
+            }
+            List<HeadlessRace> races = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    races.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("Race " + (i + 1) + " failed: " + e.getCause());
+                    races.add(null);
+                }
+            }
+            return races;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Writes one row per car: its place (empty if it did not finish), finish
+     * and wasted times, the race's wasted count and the time each lap was
+     * completed. Times are in seconds at the game's tick length.
+     */
+    public static void write(PrintWriter out, List<Job> jobs, List<HeadlessRace> races) {
+        int maxlaps = 0;
+        for (HeadlessRace race : races) {
+            if (race != null) {
+                maxlaps = Math.max(maxlaps, race.nlaps());
+            }
+        }
+        StringBuilder header = new StringBuilder("race,stage,seed,car,model,place,finish,wasted,racewasted");
+        for (int k = 1; k <= maxlaps; k++) {
+            header.append(",lap").append(k);
+        }
+        out.println(header);
+        for (int r = 0; r < races.size(); r++) {
+            HeadlessRace race = races.get(r);
+            if (race == null) {
+                continue;
+            }
+            int[] place = new int[race.cars];
+            int[] order = race.order();
+            for (int k = 0; k < order.length; k++) {
+                place[order[k]] = k + 1;
+            }
+            int racewasted = 0;
+            for (int i = 0; i < race.cars; i++) {
+                if (race.wasted(i) != -1) {
+                    racewasted++;
+                }
+            }
+            for (int i = 0; i < race.cars; i++) {
+                StringBuilder row = new StringBuilder();
+                row.append(r + 1).append(',').append(race.stage).append(',').append(jobs.get(r).seed)
+                        .append(',').append(i).append(',').append(StageReader.carModels[race.model(i)])
+                        .append(',').append(place[i] == 0 ? "" : String.valueOf(place[i]))
+                        .append(',').append(time(race.finish(i)))
+                        .append(',').append(time(race.wasted(i)))
+                        .append(',').append(racewasted);
+                for (int k = 0; k < maxlaps; k++) {
+                    row.append(',').append(k < race.nlaps() ? time(race.lap(i, k)) : "");
+                }
+                out.println(row);
+            }
+        }
+    }
+
+    private static String time(int ticks) {
+        return ticks == -1 ? "" : String.format(Locale.ROOT, "%.2f", HeadlessRace.seconds(ticks));
+    }
+
+    /** Reads jobs in the {@code stage,seed,lineup} format. */
+    public static List<Job> jobs(BufferedReader in) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (String line; (line = in.readLine()) != null; ) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",", 3);
+            if (parts.length != 3) {
+                throw new IOException("bad job, expected stage,seed,lineup: " + line);
+            }
+            String[] cars = parts[2].trim().split("\\s+");
+            int[] lineup = new int[cars.length];
+            for (int i = 0; i < cars.length; i++) {
+                lineup[i] = car(cars[i]);
+            }
+            jobs.add(new Job(Integer.parseInt(parts[0].trim()), Long.parseLong(parts[1].trim()), lineup));
+        }
+        return jobs;
+    }
+
+    private static int car(String name) throws IOException {
+        for (int i = 0; i < StageReader.carModels.length; i++) {
+            if (StageReader.carModels[i].equals(name)) {
+                return i;
+            }
+        }
+        try {
+            int id = Integer.parseInt(name);
+            if (id >= 0 && id < StageReader.carModels.length) {
+                return id;
+            }
+        } catch (NumberFormatException e) {
+            // not an id either
+        }
+        throw new IOException("no car model " + name);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("usage: RaceBatch <jobs> <out.csv> [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        List<Job> jobs;
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+            jobs = jobs(in);
+        }
+        long start = System.nanoTime();
+        List<HeadlessRace> races = new RaceBatch(threads).run(jobs);
+        long took = (System.nanoTime() - start) / 1000000L;
+        try (PrintWriter out = new PrintWriter(args[1], "UTF-8")) {
+            write(out, jobs, races);
+        }
+        System.out.println(jobs.size() + " races on " + threads + " threads in " + took + " ms, written to " + args[1]);
+    }
+}
@@ -0,0 +1,58 @@
+package nfm.lit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Runs a small {@link RaceBatch} with one of the cars added after the
+ * original 16 on the grid, and one job with a car that has no model yet,
+ * and checks that the first race ends and the second is refused. Run from
+ * the project root, no display needed.
+ */
+public class RaceBatchTest {
+
+    private static final String JOBS = "# stage,seed,lineup\n"
+            + "1,42,16 formula7 nimi 4\n"
+            + "1,42,17 formula7\n";
+    private static final int NEWCAR = 16;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.out.println("=== Race Batch Test ===\n");
+
+        List<RaceBatch.Job> jobs = RaceBatch.jobs(new BufferedReader(new StringReader(JOBS)));
+        List<HeadlessRace> races = new RaceBatch(2).run(jobs);
+        HeadlessRace race = races.get(0);
+
+        boolean passed = true;
+        if (race == null) {
+            System.out.println("❌ FAIL: the race with car model " + NEWCAR + " could not be set up");
+            passed = false;
+        } else {
+            System.out.println("Car 0: " + StageReader.carModels[race.model(0)]);
+            System.out.println("Ticks: " + race.ticks());
+            if (race.model(0) != NEWCAR) {
+                System.out.println("❌ FAIL: car 0 is model " + race.model(0) + ", expected " + NEWCAR);
+                passed = false;
+            }
+            if (race.order().length == 0) {
+                System.out.println("❌ FAIL: no car finished");
+                passed = false;
+            }
+            if (race.finish(0) == -1 && race.wasted(0) == -1) {
+                System.out.println("❌ FAIL: car model " + NEWCAR + " neither finished nor was wasted");
+                passed = false;
+            }
+        }
+        if (races.get(1) != null) {
+            System.out.println("❌ FAIL: a race was run with a car that has no model");
+            passed = false;
+        }
+        if (passed) {
+            System.out.println("✅ PASS: cars after the original 16 race in a batch");
+        } else {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package nfm.lit;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The stepping generator of {@link Medium#random()} as an object, so a car
+ * can own one. Values are tenths from 0 to 0.9, stepped up or down per digit
+ * and rerolled every 21 draws. The rerolls come from this object's own
+ * {@link Xoroshiro} instead of Math.random, so the sequence a car sees does
+ * not depend on what any other car drew before it.
+ */
+class RandomCycle {
+    private final Xoroshiro seed;
+    private final int[] rand = new int[3];
+    private final boolean[] diup = new boolean[3];
+    private int cntrn = 0;
+    private int trn = 0;
+
+    /** Seeded at random, until {@link #reseed} is called. */
+    RandomCycle() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    RandomCycle(long seed) {
+        this.seed = new Xoroshiro(seed);
+    }
+
+    /** Restarts the sequence from {@code seed}. */
+    public void reseed(long seed) {
+        this.seed.reseed(seed);
+        cntrn = 0;
+        trn = 0;
+    }
+
+    public float next() {
+        if (cntrn == 0) {
+            int i = 0;
+            do {
+                rand[i] = seed.nextInt(10);
+                diup[i] = seed.nextDouble() <= seed.nextDouble();
+            } while (++i < 3);
+            cntrn = 20;
+        } else {
+            cntrn--;
+        }
+        int j = 0;
+        do {
+            if (diup[j]) {
+                rand[j]++;
+                if (rand[j] == 10) {
+                    rand[j] = 0;
+                }
+            } else {
+                rand[j]--;
+                if (rand[j] == -1) {
+                    rand[j] = 9;
+                }
+            }
+        } while (++j < 3);
+        trn++;
+        if (trn == 3) {
+            trn = 0;
+        }
+        return rand[trn] / 10F;
+    }
+}
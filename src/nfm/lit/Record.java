@@ -574,12 +574,17 @@ class Record {
             caught++;
         }
         if (cntf == 50) {
+            /* the snapshots only ever get copied from, so they move down by reference and the oldest is reused */
+            ContO oldest = car[0][i];
             int i1 = 0;
             do {
-                car[i1][i] = new ContO(car[i1 + 1][i], 0, 0, 0, 0);
+                car[i1][i] = car[i1 + 1][i];
                 squash[i1][i] = squash[i1 + 1][i];
             } while (++i1 < 5);
-            car[5][i] = new ContO(conto, 0, 0, 0, 0);
+            if (!oldest.recopy(conto)) {
+                oldest = new ContO(conto, 0, 0, 0, 0);
+            }
+            car[5][i] = oldest;
             squash[5][i] = j;
             cntf = 0;
         } else {
@@ -679,7 +684,9 @@ class Record {
             wasted = i;
             int j = 0;
             do {
-                starcar[j] = new ContO(car[0][j], 0, 0, 0, 0);
+                if (starcar[j] == null || !starcar[j].recopy(car[0][j])) {
+                    starcar[j] = new ContO(car[0][j], 0, 0, 0, 0);
+                }
                 hsquash[j] = squash[0][j];
                 hfix[j] = fix[j];
                 hdest[j] = dest[j];
@@ -24,6 +24,15 @@ public class RenderConfig {
     // UI positions
     public static final int PRESS_ENTER_TO_CONTINUE_HEIGHT = SCREEN_HEIGHT - 100;
 
+    // Software rasterizer for 3D polygons (see SoftRaster), -Dnfm.softraster=true
+    public static final boolean SOFTWARE_RASTER = Boolean.getBoolean("nfm.softraster");
+    // Tile-binned multi-threaded rasterizing of the software path, -Dnfm.tiledraster=true
+    public static final boolean TILED_RASTER = Boolean.getBoolean("nfm.tiledraster");
+    // Depth buffered software path, drops the object and plane sorts, -Dnfm.depthbuffer=true
+    public static final boolean DEPTH_BUFFER = Boolean.getBoolean("nfm.depthbuffer");
+    // Coarser plane sets for objects that are small on screen (see ContO), -Dnfm.meshlod=true
+    public static final boolean MESH_LOD = Boolean.getBoolean("nfm.meshlod");
+
     // Prevent instantiation
     private RenderConfig() {}
 
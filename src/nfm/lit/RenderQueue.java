@@ -0,0 +1,142 @@
+package nfm.lit;
+
+import java.awt.Graphics2D;
+
+/**
+ * Back-to-front draw queue for ContO objects. Replaces the per-frame pairwise
+ * rank counting in the render phases with a stable LSD radix sort on
+ * {@link ContO#dist}. All buffers are kept between frames and only grow, so a
+ * steady-state frame allocates nothing. When the software rasterizer is tiled,
+ * the queue is recorded and flushed across cores as one batch. When it is
+ * depth buffered, objects are drawn in index order without sorting.
+ */
+public class RenderQueue {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX - 1;
+
+    private int[] idx = new int[256];
+    private int[] key = new int[256];
+    private int[] tidx = new int[256];
+    private int[] tkey = new int[256];
+    private final int[] count = new int[RADIX];
+    private int n = 0;
+    private int max = 0;
+    private boolean depth = false;
+
+    /**
+     * Draws {@code conto[from..to)}. Objects with a zero dist (the camera is
+     * inside them or they were culled last frame) are drawn immediately as
+     * before, the rest are drawn furthest first. Equal distances draw the
+     * higher index first, matching the old rank counting order.
+     */
+    public void render(Graphics2D rd, ContO[] conto, int from, int to) {
+        begin(to - from);
+        for (int i = from; i < to; i++) {
+            offer(rd, conto, i);
+        }
+        end(rd, conto);
+    }
+
+    /**
+     * Same as {@link #render(Graphics2D, ContO[], int, int)}, but the static
+     * objects covered by {@code grid} are taken from its frame query instead
+     * of being scanned one by one.
+     */
+    public void render(Graphics2D rd, ContO[] conto, int from, int to, StageGrid grid) {
+        if (grid.from() < from || grid.to() > to) {
+            render(rd, conto, from, to);
+            return;
+        }
+        int m = grid.query(conto);
+        int[] list = grid.list();
+        begin(to - from);
+        for (int i = from; i < grid.from(); i++) {
+            offer(rd, conto, i);
+        }
+        for (int i = 0; i < m; i++) {
+            offer(rd, conto, list[i]);
+        }
+        for (int i = grid.to(); i < to; i++) {
+            offer(rd, conto, i);
+        }
+        end(rd, conto);
+    }
+
+    private void begin(int size) {
+        n = 0;
+        max = 0;
+        depth = SoftRaster.depthBuffered();
+        ensure(size);
+        SoftRaster.begin();
+    }
+
+    private void offer(Graphics2D rd, ContO[] conto, int i) {
+        int d = conto[i].dist;
+        if (d != 0 && !depth) {
+            idx[n] = i;
+            key[n] = d;
+            n++;
+            if (d > max) {
+                max = d;
+            }
+        } else {
+            conto[i].d(rd);
+        }
+    }
+
+    private void end(Graphics2D rd, ContO[] conto) {
+        sort(max);
+        for (int i = n - 1; i >= 0; i--) {
+            conto[idx[i]].d(rd);
+        }
+        SoftRaster.flush();
+    }
+
+    /**
+     * Stable ascending sort of {@code idx} by {@code key}. Only as many 8-bit
+     * passes as {@code max} needs are made, and a pass where every key falls
+     * into the same bucket is skipped.
+     */
+    private void sort(int max) {
+        for (int shift = 0; shift < 32 && (max >>> shift) != 0; shift += RADIX_BITS) {
+            for (int r = 0; r < RADIX; r++) {
+                count[r] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                count[(key[i] >>> shift) & RADIX_MASK]++;
+            }
+            if (count[(key[0] >>> shift) & RADIX_MASK] == n) {
+                continue;
+            }
+            int sum = 0;
+            for (int r = 0; r < RADIX; r++) {
+                int c = count[r];
+                count[r] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int k = key[i];
+                int pos = count[(k >>> shift) & RADIX_MASK]++;
+                tidx[pos] = idx[i];
+                tkey[pos] = k;
+            }
+            int[] swap = idx;
+            idx = tidx;
+            tidx = swap;
+            swap = key;
+            key = tkey;
+            tkey = swap;
+        }
+    }
+
+    private void ensure(int size) {
+        if (size > idx.length) {
+            int len = Math.max(size, idx.length * 2);
+            idx = new int[len];
+            key = new int[len];
+            tidx = new int[len];
+            tkey = new int[len];
+        }
+    }
+}
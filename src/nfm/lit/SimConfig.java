@@ -0,0 +1,24 @@
+package nfm.lit;
+
+/**
+ * Centralized configuration for race simulation settings.
+ */
+public class SimConfig {
+    // Drive the cars across cores (see DrivePhase), -Dnfm.paralleldrive=true
+    public static final boolean PARALLEL_DRIVE = Boolean.getBoolean("nfm.paralleldrive");
+    // Run the cars' AI across cores (see AIScheduler), -Dnfm.parallelai=true
+    public static final boolean PARALLEL_AI = Boolean.getBoolean("nfm.parallelai");
+    // Run the race at a fixed tick rate apart from drawing (see TickClock), -Dnfm.fixedstep=true
+    public static final boolean FIXED_STEP = Boolean.getBoolean("nfm.fixedstep");
+    // Length of a fixed tick, 53 ms being what the adaptive loop aims at (10 frames in 530 ms)
+    public static final int TICK_MS = Integer.getInteger("nfm.tickms", 53);
+    // Shortest time between drawn frames in fixed tick mode, frames between ticks are interpolated
+    public static final int FRAME_MS = Integer.getInteger("nfm.framems", TICK_MS);
+    // Seed every race with this instead of at random (see Xoroshiro), -Dnfm.seed=<seed>
+    public static final Long SEED = Long.getLong("nfm.seed");
+    // Write a hash of the cars every tick to this file (see StateHash), -Dnfm.hashlog=<file>
+    public static final String HASH_LOG = System.getProperty("nfm.hashlog");
+
+    // Prevent instantiation
+    private SimConfig() {}
+}
@@ -0,0 +1,633 @@
+package nfm.lit;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Optional software rasterizer for the flat-shaded 3D polygons. When enabled and
+ * bound to the game's offscreen image, polygon fills and outlines are written
+ * straight into the image's int pixels instead of going through Java2D. Calls
+ * with any other Graphics2D, or with a translucent colour, fall through to the
+ * regular Graphics2D methods, so HUD and menu drawing are unaffected.
+ * <p>
+ * Fills use the even-odd rule with pixel-centre sampling, the same as
+ * {@link Graphics2D#fillPolygon(int[], int[], int)}. Outlines are drawn
+ * aliased.
+ * <p>
+ * With {@link #tiled} set, the polygons drawn between {@link #begin()} and
+ * {@link #flush()} are recorded instead, binned into screen tiles and
+ * rasterized by a ForkJoinPool, one task per tile. Each tile replays its
+ * polygons in submission order, so painter's order is kept and the result is
+ * pixel-identical to the single-threaded path.
+ * <p>
+ * With {@link #depth} set, the scene between begin() and flush() is depth
+ * buffered on 1/z, so objects and planes no longer need sorting. Polygons
+ * passed with camera-space z are opaque and write depth. Decals (shadows,
+ * damage chips), effects (flames, dust, sparks) and anything passed without z
+ * are deferred to a second pass after the opaque ones, decals and effects
+ * depth tested and the rest drawn on top.
+ */
+public class SoftRaster {
+    /* selects the software path; the Graphics2D path is used when false */
+    public static boolean enabled = RenderConfig.SOFTWARE_RASTER;
+    /* records and rasterizes on all cores between begin() and flush() */
+    public static boolean tiled = RenderConfig.TILED_RASTER;
+    /* depth buffers the scene between begin() and flush() */
+    public static boolean depth = RenderConfig.DEPTH_BUFFER;
+
+    private static final int TILE = 64;
+    private static final int FILL = 0;
+    private static final int LINE = 1;
+    /* depth modes: ignore, test and write, test only with a bias towards the camera */
+    private static final int Z_NONE = 0;
+    private static final int Z_WRITE = 1;
+    private static final int Z_TEST = 2;
+    private static final float Z_BIAS = 1.02F;
+
+    private static Graphics2D target;
+    private static int[] pix;
+    private static float[] zb;
+    private static int w;
+    private static int h;
+
+    /* scratch for the single-threaded path */
+    private static final Scratch scratch = new Scratch();
+
+    /* recorded polygons: type, depth mode, deferred, rgb, vertex range and 1/z plane */
+    private static boolean recording = false;
+    private static boolean zscene = false;
+    private static int ncmd = 0;
+    private static int[] ctyp = new int[1024];
+    private static int[] cmod = new int[1024];
+    private static boolean[] cdef = new boolean[1024];
+    private static int[] crgb = new int[1024];
+    private static int[] coff = new int[1024];
+    private static int[] cnum = new int[1024];
+    private static double[] cza = new double[1024];
+    private static double[] czb = new double[1024];
+    private static double[] czc = new double[1024];
+    private static int nv = 0;
+    private static int[] vx = new int[8192];
+    private static int[] vy = new int[8192];
+    /* execution order, opaque commands first */
+    private static int[] order = new int[1024];
+
+    /* per-tile lists of command indices */
+    private static int tw;
+    private static int th;
+    private static int[][] bin;
+    private static int[] nbin;
+    private static Scratch[] tscratch;
+    private static ForkJoinPool pool;
+
+    private SoftRaster() {}
+
+    /* per-thread scanline and clip buffers */
+    private static class Scratch {
+        float[] cross = new float[16];
+        final float[] clip = new float[8];
+        final int[] seg = new int[4];
+    }
+
+    /**
+     * Binds the rasterizer to an image and the Graphics2D that draws on it.
+     * Only TYPE_INT_RGB/ARGB images can be bound; anything else unbinds.
+     */
+    public static void bind(Image img, Graphics2D g) {
+        unbind();
+        if (img instanceof BufferedImage && ((BufferedImage) img).getRaster().getDataBuffer() instanceof DataBufferInt) {
+            BufferedImage bi = (BufferedImage) img;
+            pix = ((DataBufferInt) bi.getRaster().getDataBuffer()).getData();
+            w = bi.getWidth();
+            h = bi.getHeight();
+            target = g;
+            tw = (w + TILE - 1) / TILE;
+            th = (h + TILE - 1) / TILE;
+            bin = new int[tw * th][256];
+            nbin = new int[tw * th];
+            tscratch = new Scratch[tw * th];
+            for (int i = 0; i < tscratch.length; i++) {
+                tscratch[i] = new Scratch();
+            }
+        }
+    }
+
+    public static void unbind() {
+        recording = false;
+        zscene = false;
+        target = null;
+        pix = null;
+        zb = null;
+    }
+
+    private static boolean active(Graphics2D rd) {
+        return enabled && rd == target && rd.getColor().getAlpha() == 255;
+    }
+
+    /**
+     * True when scenes are depth buffered, in which case callers can skip their
+     * painter's sorts.
+     */
+    public static boolean depthBuffered() {
+        return enabled && depth && pix != null;
+    }
+
+    /**
+     * True while a depth buffered scene is being recorded, so that polygons
+     * drawn now are z-tested at the flush rather than painted in call order.
+     */
+    public static boolean inDepthScene() {
+        return recording && zscene;
+    }
+
+    /**
+     * Starts recording a scene for a tiled and/or depth buffered flush. Does
+     * nothing unless the software path is enabled with one of those modes.
+     */
+    public static void begin() {
+        if (enabled && (tiled || depth) && pix != null) {
+            recording = true;
+            zscene = depth;
+            ncmd = 0;
+            nv = 0;
+            if (zscene) {
+                if (zb == null || zb.length != w * h) {
+                    zb = new float[w * h];
+                } else {
+                    Arrays.fill(zb, 0.0F);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rasterizes everything recorded since {@link #begin()} and stops
+     * recording.
+     */
+    public static void flush() {
+        if (!recording) {
+            return;
+        }
+        drain();
+        recording = false;
+        zscene = false;
+    }
+
+    /* rasterizes and clears the recorded commands but keeps recording */
+    private static void drain() {
+        if (!recording || ncmd == 0) {
+            return;
+        }
+        if (order.length < ncmd) {
+            order = new int[ctyp.length];
+        }
+        int k = 0;
+        for (int c = 0; c < ncmd; c++) {
+            if (!cdef[c]) {
+                order[k++] = c;
+            }
+        }
+        for (int c = 0; c < ncmd; c++) {
+            if (cdef[c]) {
+                order[k++] = c;
+            }
+        }
+        if (tiled) {
+            bin();
+            if (pool == null) {
+                pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            }
+            pool.invoke(new Tiles(0, nbin.length));
+        } else {
+            for (int i = 0; i < ncmd; i++) {
+                run(order[i], 0, 0, w, h, scratch);
+            }
+        }
+        ncmd = 0;
+        nv = 0;
+    }
+
+    private static void bin() {
+        for (int i = 0; i < nbin.length; i++) {
+            nbin[i] = 0;
+        }
+        for (int i = 0; i < ncmd; i++) {
+            int c = order[i];
+            int o = coff[c];
+            int minx = vx[o];
+            int maxx = vx[o];
+            int miny = vy[o];
+            int maxy = vy[o];
+            for (int j = o + 1; j < o + cnum[c]; j++) {
+                minx = Math.min(minx, vx[j]);
+                maxx = Math.max(maxx, vx[j]);
+                miny = Math.min(miny, vy[j]);
+                maxy = Math.max(maxy, vy[j]);
+            }
+            if (maxx < 0 || maxy < 0 || minx >= w || miny >= h) {
+                continue;
+            }
+            int tx0 = Math.max(minx, 0) / TILE;
+            int tx1 = Math.min(maxx, w - 1) / TILE;
+            int ty0 = Math.max(miny, 0) / TILE;
+            int ty1 = Math.min(maxy, h - 1) / TILE;
+            for (int ty = ty0; ty <= ty1; ty++) {
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    int t = ty * tw + tx;
+                    if (nbin[t] == bin[t].length) {
+                        bin[t] = Arrays.copyOf(bin[t], nbin[t] * 2);
+                    }
+                    bin[t][nbin[t]++] = c;
+                }
+            }
+        }
+    }
+
+    /* splits the tile range until single tiles are left */
+    private static class Tiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        Tiles(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                tile(from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Tiles(from, mid), new Tiles(mid, to));
+            }
+        }
+    }
+
+    private static void tile(int t) {
+        int cx0 = (t % tw) * TILE;
+        int cy0 = (t / tw) * TILE;
+        int cx1 = Math.min(cx0 + TILE, w);
+        int cy1 = Math.min(cy0 + TILE, h);
+        Scratch s = tscratch[t];
+        int[] list = bin[t];
+        for (int i = 0; i < nbin[t]; i++) {
+            run(list[i], cx0, cy0, cx1, cy1, s);
+        }
+    }
+
+    private static void run(int c, int cx0, int cy0, int cx1, int cy1, Scratch s) {
+        if (ctyp[c] == FILL) {
+            fill(vx, vy, coff[c], cnum[c], crgb[c], cmod[c], cza[c], czb[c], czc[c], cx0, cy0, cx1, cy1, s);
+        } else {
+            outline(vx, vy, coff[c], cnum[c], crgb[c], cmod[c], cza[c], czb[c], czc[c], cx0, cy0, cx1, cy1, s);
+        }
+    }
+
+    /* zs, or failing that a single depth z if not 0, gives the polygon its 1/z plane */
+    private static void record(int typ, int[] xs, int[] ys, int[] zs, int z, int n, int rgb, int mode,
+                               boolean deferred) {
+        if (ncmd == ctyp.length) {
+            int len = ncmd * 2;
+            ctyp = Arrays.copyOf(ctyp, len);
+            cmod = Arrays.copyOf(cmod, len);
+            cdef = Arrays.copyOf(cdef, len);
+            crgb = Arrays.copyOf(crgb, len);
+            coff = Arrays.copyOf(coff, len);
+            cnum = Arrays.copyOf(cnum, len);
+            cza = Arrays.copyOf(cza, len);
+            czb = Arrays.copyOf(czb, len);
+            czc = Arrays.copyOf(czc, len);
+        }
+        if (nv + n > vx.length) {
+            int len = Math.max(nv + n, vx.length * 2);
+            vx = Arrays.copyOf(vx, len);
+            vy = Arrays.copyOf(vy, len);
+        }
+        System.arraycopy(xs, 0, vx, nv, n);
+        System.arraycopy(ys, 0, vy, nv, n);
+        ctyp[ncmd] = typ;
+        crgb[ncmd] = rgb;
+        coff[ncmd] = nv;
+        cnum[ncmd] = n;
+        cdef[ncmd] = deferred;
+        cmod[ncmd] = zs != null || z != 0 ? mode : Z_NONE;
+        if (zs != null) {
+            zplane(xs, ys, zs, n, ncmd);
+        } else {
+            cza[ncmd] = 0.0D;
+            czb[ncmd] = 0.0D;
+            czc[ncmd] = 1.0D / Math.max(z, 1);
+        }
+        ncmd++;
+        nv += n;
+    }
+
+    /*
+     * Fits 1/z = a*x + b*y + c in screen space through the first three
+     * vertices that are not collinear on screen; 1/z is linear there for a
+     * planar polygon under perspective.
+     */
+    private static void zplane(int[] xs, int[] ys, int[] zs, int n, int c) {
+        double a = 0.0D;
+        double b = 0.0D;
+        double iz0 = 1.0D / Math.max(zs[0], 1);
+        double near = iz0;
+        for (int i = 1; i < n; i++) {
+            near = Math.max(near, 1.0D / Math.max(zs[i], 1));
+        }
+        double cc = near;
+        search:
+        for (int i = 1; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double d = (double) (xs[i] - xs[0]) * (ys[j] - ys[0]) - (double) (xs[j] - xs[0]) * (ys[i] - ys[0]);
+                if (d != 0.0D) {
+                    double iz1 = 1.0D / Math.max(zs[i], 1) - iz0;
+                    double iz2 = 1.0D / Math.max(zs[j], 1) - iz0;
+                    a = (iz1 * (ys[j] - ys[0]) - iz2 * (ys[i] - ys[0])) / d;
+                    b = ((xs[i] - xs[0]) * iz2 - (xs[j] - xs[0]) * iz1) / d;
+                    cc = iz0 - a * xs[0] - b * ys[0];
+                    break search;
+                }
+            }
+        }
+        cza[c] = a;
+        czb[c] = b;
+        czc[c] = cc;
+    }
+
+    private static void submit(Graphics2D rd, int typ, int[] xs, int[] ys, int[] zs, int z, int n, int mode,
+                               boolean deferred) {
+        if (!active(rd)) {
+            drain();
+            if (typ == FILL) {
+                rd.fillPolygon(xs, ys, n);
+            } else {
+                rd.drawPolygon(xs, ys, n);
+            }
+            return;
+        }
+        if (n < (typ == FILL ? 3 : 1)) {
+            return;
+        }
+        int rgb = rd.getColor().getRGB();
+        if (recording) {
+            record(typ, xs, ys, zscene ? zs : null, zscene ? z : 0, n, rgb, mode, zscene && deferred);
+        } else if (typ == FILL) {
+            fill(xs, ys, 0, n, rgb, Z_NONE, 0.0D, 0.0D, 0.0D, 0, 0, w, h, scratch);
+        } else {
+            outline(xs, ys, 0, n, rgb, Z_NONE, 0.0D, 0.0D, 0.0D, 0, 0, w, h, scratch);
+        }
+    }
+
+    public static void fillPolygon(Graphics2D rd, int[] xs, int[] ys, int n) {
+        submit(rd, FILL, xs, ys, null, 0, n, Z_NONE, true);
+    }
+
+    public static void drawPolygon(Graphics2D rd, int[] xs, int[] ys, int n) {
+        submit(rd, LINE, xs, ys, null, 0, n, Z_NONE, true);
+    }
+
+    /**
+     * Opaque fill with camera-space vertex depths {@code zs}; writes depth in a
+     * depth buffered scene.
+     */
+    public static void fillPolygon(Graphics2D rd, int[] xs, int[] ys, int[] zs, int n) {
+        submit(rd, FILL, xs, ys, zs, 0, n, Z_WRITE, false);
+    }
+
+    /**
+     * Outline of a polygon filled with {@link #fillPolygon(Graphics2D, int[], int[], int[], int)};
+     * depth tested against it in a depth buffered scene.
+     */
+    public static void drawPolygon(Graphics2D rd, int[] xs, int[] ys, int[] zs, int n) {
+        submit(rd, LINE, xs, ys, zs, 0, n, Z_TEST, false);
+    }
+
+    /**
+     * Fill that lies on other geometry (shadows, damage chips). Deferred past
+     * the opaque polygons and depth tested, but not written, in a depth buffered
+     * scene.
+     */
+    public static void fillDecal(Graphics2D rd, int[] xs, int[] ys, int[] zs, int n) {
+        submit(rd, FILL, xs, ys, zs, 0, n, Z_TEST, true);
+    }
+
+    /**
+     * Fill drawn over the scene (flames, sparks). Deferred past the opaque
+     * polygons and depth tested, but not written, in a depth buffered scene.
+     */
+    public static void fillEffect(Graphics2D rd, int[] xs, int[] ys, int[] zs, int n) {
+        submit(rd, FILL, xs, ys, zs, 0, n, Z_TEST, true);
+    }
+
+    /** Outline of a {@link #fillEffect(Graphics2D, int[], int[], int[], int)}, tested the same way. */
+    public static void drawEffect(Graphics2D rd, int[] xs, int[] ys, int[] zs, int n) {
+        submit(rd, LINE, xs, ys, zs, 0, n, Z_TEST, true);
+    }
+
+    /**
+     * Effect fill that is flat to the screen at camera-space depth {@code z}
+     * (dust, the fix hoop flash); depth tested like
+     * {@link #fillEffect(Graphics2D, int[], int[], int[], int)}.
+     */
+    public static void fillEffect(Graphics2D rd, int[] xs, int[] ys, int z, int n) {
+        submit(rd, FILL, xs, ys, null, Math.max(z, 1), n, Z_TEST, true);
+    }
+
+    /* fills polygon xs/ys[o..o+n) into the clip rectangle [cx0,cx1)x[cy0,cy1) */
+    private static void fill(int[] xs, int[] ys, int o, int n, int rgb, int mode, double za, double zb1, double zc,
+                             int cx0, int cy0, int cx1, int cy1, Scratch s) {
+        int e = o + n;
+        int miny = ys[o];
+        int maxy = ys[o];
+        int minx = xs[o];
+        int maxx = xs[o];
+        for (int i = o + 1; i < e; i++) {
+            if (ys[i] < miny) {
+                miny = ys[i];
+            }
+            if (ys[i] > maxy) {
+                maxy = ys[i];
+            }
+            if (xs[i] < minx) {
+                minx = xs[i];
+            }
+            if (xs[i] > maxx) {
+                maxx = xs[i];
+            }
+        }
+        if (maxy <= cy0 || miny >= cy1 || maxx <= cx0 || minx >= cx1) {
+            return;
+        }
+        if (miny < cy0) {
+            miny = cy0;
+        }
+        if (maxy > cy1) {
+            maxy = cy1;
+        }
+        if (s.cross.length < n) {
+            s.cross = new float[n];
+        }
+        float[] cross = s.cross;
+        for (int y = miny; y < maxy; y++) {
+            float sy = y + 0.5F;
+            int nc = 0;
+            for (int i = o, j = e - 1; i < e; j = i++) {
+                int y0 = ys[j];
+                int y1 = ys[i];
+                if (y0 <= sy && y1 > sy || y1 <= sy && y0 > sy) {
+                    float x = xs[j] + (sy - y0) * (xs[i] - xs[j]) / (float) (y1 - y0);
+                    int k = nc++;
+                    while (k > 0 && cross[k - 1] > x) {
+                        cross[k] = cross[k - 1];
+                        k--;
+                    }
+                    cross[k] = x;
+                }
+            }
+            int row = y * w;
+            for (int k = 0; k + 1 < nc; k += 2) {
+                int xa = (int) Math.ceil(cross[k] - 0.5F);
+                int xb = (int) Math.ceil(cross[k + 1] - 0.5F);
+                if (xa < cx0) {
+                    xa = cx0;
+                }
+                if (xb > cx1) {
+                    xb = cx1;
+                }
+                if (mode == Z_NONE) {
+                    for (int x = xa; x < xb; x++) {
+                        pix[row + x] = rgb;
+                    }
+                } else {
+                    double iz = za * xa + zb1 * y + zc;
+                    for (int x = xa; x < xb; x++, iz += za) {
+                        float fz = (float) iz;
+                        if (mode == Z_WRITE) {
+                            if (fz >= zb[row + x]) {
+                                zb[row + x] = fz;
+                                pix[row + x] = rgb;
+                            }
+                        } else if (fz * Z_BIAS >= zb[row + x]) {
+                            pix[row + x] = rgb;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void outline(int[] xs, int[] ys, int o, int n, int rgb, int mode, double za, double zb1,
+                                double zc, int cx0, int cy0, int cx1, int cy1, Scratch s) {
+        for (int i = o, j = o + n - 1; i < o + n; j = i++) {
+            line(xs[j], ys[j], xs[i], ys[i], rgb, mode, za, zb1, zc, cx0, cy0, cx1, cy1, s);
+        }
+    }
+
+    /*
+     * Bresenham line, clipped to the screen first so that every tile walks the
+     * same pixels, and only written inside the clip rectangle.
+     */
+    private static void line(int x0, int y0, int x1, int y1, int rgb, int mode, double za, double zb1, double zc,
+                             int cx0, int cy0, int cx1, int cy1, Scratch s) {
+        if (!clipToScreen(x0, y0, x1, y1, s)) {
+            return;
+        }
+        x0 = s.seg[0];
+        y0 = s.seg[1];
+        x1 = s.seg[2];
+        y1 = s.seg[3];
+        if (Math.max(x0, x1) < cx0 || Math.min(x0, x1) >= cx1 || Math.max(y0, y1) < cy0
+                || Math.min(y0, y1) >= cy1) {
+            return;
+        }
+        int dx = Math.abs(x1 - x0);
+        int dy = -Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1;
+        int sy = y0 < y1 ? 1 : -1;
+        int err = dx + dy;
+        while (true) {
+            if (x0 >= cx0 && x0 < cx1 && y0 >= cy0 && y0 < cy1) {
+                int i = y0 * w + x0;
+                if (mode == Z_NONE || (float) (za * x0 + zb1 * y0 + zc) * Z_BIAS >= zb[i]) {
+                    pix[i] = rgb;
+                }
+            }
+            if (x0 == x1 && y0 == y1) {
+                break;
+            }
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x0 += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y0 += sy;
+            }
+        }
+    }
+
+    /* Liang-Barsky clip into s.seg; far off-screen points would otherwise be walked pixel by pixel */
+    private static boolean clipToScreen(int x0, int y0, int x1, int y1, Scratch s) {
+        int[] seg = s.seg;
+        if (x0 >= 0 && x0 < w && y0 >= 0 && y0 < h && x1 >= 0 && x1 < w && y1 >= 0 && y1 < h) {
+            seg[0] = x0;
+            seg[1] = y0;
+            seg[2] = x1;
+            seg[3] = y1;
+            return true;
+        }
+        float t0 = 0.0F;
+        float t1 = 1.0F;
+        float fdx = x1 - x0;
+        float fdy = y1 - y0;
+        float[] pq = s.clip;
+        pq[0] = -fdx;
+        pq[1] = x0;
+        pq[2] = fdx;
+        pq[3] = w - 1 - x0;
+        pq[4] = -fdy;
+        pq[5] = y0;
+        pq[6] = fdy;
+        pq[7] = h - 1 - y0;
+        for (int i = 0; i < 8; i += 2) {
+            float p = pq[i];
+            float q = pq[i + 1];
+            if (p == 0.0F) {
+                if (q < 0.0F) {
+                    return false;
+                }
+            } else {
+                float r = q / p;
+                if (p < 0.0F) {
+                    if (r > t1) {
+                        return false;
+                    }
+                    if (r > t0) {
+                        t0 = r;
+                    }
+                } else {
+                    if (r < t0) {
+                        return false;
+                    }
+                    if (r < t1) {
+                        t1 = r;
+                    }
+                }
+            }
+        }
+        seg[0] = Math.round(x0 + t0 * fdx);
+        seg[1] = Math.round(y0 + t0 * fdy);
+        seg[2] = Math.round(x0 + t1 * fdx);
+        seg[3] = Math.round(y0 + t1 * fdy);
+        return true;
+    }
+}
@@ -42,6 +42,7 @@ public class StageConfig {
     public static final int MAX_CHECKPOINTS = 1400;
     public static final int MAX_SPECIAL_POINTS = 5;
     public static final int MAX_CARS = 51;
+    public static final int MAX_OBJECTS = 2000;
     public static final int DEFAULT_POSITION = 50;
     
     private StageConfig() {}
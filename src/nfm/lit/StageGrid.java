@@ -0,0 +1,271 @@
+package nfm.lit;
+
+import java.util.Arrays;
+
+/**
+ * Uniform 2D grid over the static stage objects loaded by loadstage. Objects
+ * are binned by their x/z centre, and each cell keeps the largest maxR and
+ * fade distance of what it holds. A frame query visits only the cells inside
+ * the square around the camera that the fade range and screen edges can
+ * reach, tests each against the screen and fade tests in {@link ContO#d},
+ * and returns their objects in index order so the draw order stays the same
+ * as a full scan. The cell tests are conservative: pitch is covered with the
+ * vertical slack between the camera and the highest or lowest object, so an
+ * object ContO.d would draw is never left out.
+ */
+public class StageGrid {
+    private static final int CELL = 4096;
+
+    private int from = 0;
+    private int to = 0;
+    private int minx = 0;
+    private int minz = 0;
+    private int cols = 0;
+    private int rows = 0;
+    private int[] start = new int[1];
+    private int[] items = new int[0];
+    private int[] cellR = new int[0];
+    private int[] cellFade = new int[0];
+    /* largest cellR and cellFade, and the y range of the objects' centres */
+    private int maxR = 0;
+    private int maxFade = 0;
+    private int miny = 0;
+    private int maxy = 0;
+
+    private int[] list = new int[256];
+    private int[] prev = new int[256];
+    private int nlist = 0;
+    private int nprev = 0;
+    private int[] seen = new int[0];
+    private int frame = 0;
+    /* objects of the passing cells, one bit each from index from */
+    private long[] bits = new long[0];
+    private final float[] ri = new float[4];
+    private final float[] dj = new float[4];
+
+    /**
+     * Bins {@code conto[from..to)}. Must be called again whenever that range
+     * is reloaded.
+     */
+    public void build(ContO[] conto, int from, int to) {
+        this.from = from;
+        this.to = to;
+        nlist = 0;
+        nprev = 0;
+        frame = 0;
+        seen = new int[Math.max(to - from, 0)];
+        bits = new long[(Math.max(to - from, 0) + 63) >>> 6];
+        if (to <= from) {
+            cols = 0;
+            rows = 0;
+            return;
+        }
+        int maxx = Integer.MIN_VALUE;
+        int maxz = Integer.MIN_VALUE;
+        minx = Integer.MAX_VALUE;
+        minz = Integer.MAX_VALUE;
+        miny = Integer.MAX_VALUE;
+        maxy = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            miny = Math.min(miny, conto[i].y);
+            maxy = Math.max(maxy, conto[i].y);
+            minx = Math.min(minx, conto[i].x);
+            minz = Math.min(minz, conto[i].z);
+            maxx = Math.max(maxx, conto[i].x);
+            maxz = Math.max(maxz, conto[i].z);
+        }
+        cols = (maxx - minx) / CELL + 1;
+        rows = (maxz - minz) / CELL + 1;
+        int cells = cols * rows;
+        start = new int[cells + 1];
+        cellR = new int[cells];
+        cellFade = new int[cells];
+        items = new int[to - from];
+        maxR = 0;
+        maxFade = 0;
+        for (int i = from; i < to; i++) {
+            int c = cell(conto[i]);
+            start[c + 1]++;
+            cellR[c] = Math.max(cellR[c], conto[i].maxR);
+            cellFade[c] = Math.max(cellFade[c], conto[i].disline());
+            maxR = Math.max(maxR, cellR[c]);
+            maxFade = Math.max(maxFade, cellFade[c]);
+        }
+        for (int c = 0; c < cells; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] fill = Arrays.copyOf(start, cells);
+        for (int i = from; i < to; i++) {
+            items[fill[cell(conto[i])]++] = i;
+        }
+    }
+
+    public int from() {
+        return from;
+    }
+
+    public int to() {
+        return to;
+    }
+
+    /**
+     * Collects the objects in cells that can be on screen this frame into
+     * {@link #list()}, ascending by index. Objects that dropped out since the
+     * last query get their dist cleared, as a culled ContO.d would do.
+     */
+    public int query(ContO[] conto) {
+        int[] swap = prev;
+        prev = list;
+        list = swap;
+        nprev = nlist;
+        nlist = 0;
+        if (++frame == 0) {
+            Arrays.fill(seen, 0);
+            frame = 1;
+        }
+        if (Medium.trk) {
+            ensure(to - from);
+            for (int i = from; i < to; i++) {
+                add(i);
+            }
+        } else {
+            walk();
+        }
+        for (int i = 0; i < nprev; i++) {
+            if (seen[prev[i] - from] != frame) {
+                conto[prev[i]].dist = 0;
+            }
+        }
+        return nlist;
+    }
+
+    public int[] list() {
+        return list;
+    }
+
+    private void walk() {
+        float sin = RadicalMath.sin(Medium.xz);
+        float cos = RadicalMath.cos(Medium.xz);
+        float cosz = RadicalMath.cos(Medium.zy);
+        int py = Medium.y + Medium.cy;
+        float slack = Math.max(Math.abs(miny - py), Math.abs(maxy - py)) * Math.abs(RadicalMath.sin(Medium.zy));
+        float slope = (float) Medium.cx / Medium.focus_point;
+        int px = Medium.x + Medium.cx;
+        int pz = Medium.z + Medium.cz;
+        int cz = Medium.cz;
+        int r0 = 0;
+        int r1 = rows - 1;
+        int c0 = 0;
+        int c1 = cols - 1;
+        if (cosz > 0.001F) {
+            /*
+             * A passing cell's box, grown by m, reaches a view depth (dj - cz)
+             * within the fade band and a side offset within the screen edges
+             * at that depth; every point of it is then within its diagonal of
+             * both, which bounds its distance from the camera.
+             */
+            int far = 0;
+            for (int f = 0; f <= maxFade; f++) {
+                far = Math.max(far, Medium.fade[f]);
+            }
+            int m = maxR * 2 + 1;
+            float diag = 1.415F * (CELL + 2 * m);
+            float depth = Math.max(Math.abs(far + m + slack - cz), Math.abs(m + slack + cz)) / cosz + diag;
+            float side = slope * (cz + depth) + slope * (slack + 50 + m) + m + diag;
+            int reach = (int) Math.min(Math.sqrt(depth * depth + side * side), Integer.MAX_VALUE / 4);
+            c0 = Math.max(c0, floorcell(px - reach - minx));
+            c1 = Math.min(c1, floorcell(px + reach - minx));
+            r0 = Math.max(r0, floorcell(pz - reach - minz));
+            r1 = Math.min(r1, floorcell(pz + reach - minz));
+        }
+        int lo = bits.length;
+        int hi = -1;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                if (start[cell] == start[cell + 1]) {
+                    continue;
+                }
+                int m = cellR[cell] * 2 + 1;
+                int x0 = minx + c * CELL - m - px;
+                int z0 = minz + r * CELL - m - pz;
+                int x1 = x0 + CELL + 2 * m;
+                int z1 = z0 + CELL + 2 * m;
+                corner(0, x0, z0, sin, cos, cz);
+                corner(1, x1, z0, sin, cos, cz);
+                corner(2, x0, z1, sin, cos, cz);
+                corner(3, x1, z1, sin, cos, cz);
+                float dmin = Math.min(Math.min(dj[0], dj[1]), Math.min(dj[2], dj[3]));
+                float dmax = Math.max(Math.max(dj[0], dj[1]), Math.max(dj[2], dj[3]));
+                float k0 = cz + (dmin - cz) * cosz;
+                float k1 = cz + (dmax - cz) * cosz;
+                if (Math.max(k0, k1) + slack < -m) {
+                    continue;
+                }
+                if (Math.min(k0, k1) - slack > Medium.fade[cellFade[cell]] + m) {
+                    continue;
+                }
+                float base = slope * (slack + 50 + m) + m;
+                boolean left = true;
+                boolean right = true;
+                for (int k = 0; k < 4; k++) {
+                    float edge = slope * (cz + Math.abs(dj[k] - cz)) + base;
+                    if (ri[k] >= -edge) {
+                        left = false;
+                    }
+                    if (ri[k] <= edge) {
+                        right = false;
+                    }
+                }
+                if (left || right) {
+                    continue;
+                }
+                for (int k = start[cell]; k < start[cell + 1]; k++) {
+                    int b = items[k] - from;
+                    bits[b >>> 6] |= 1L << b;
+                    lo = Math.min(lo, b >>> 6);
+                    hi = Math.max(hi, b >>> 6);
+                }
+            }
+        }
+        /* the set bits, lowest first, are the passing objects in index order */
+        for (int w = lo; w <= hi; w++) {
+            long word = bits[w];
+            bits[w] = 0L;
+            if (word != 0L) {
+                ensure(nlist + Long.bitCount(word));
+                do {
+                    add(from + (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                } while (word != 0L);
+            }
+        }
+    }
+
+    /* the cell column or row holding offset d from the grid's corner, may be out of range */
+    private static int floorcell(int d) {
+        return Math.floorDiv(d, CELL);
+    }
+
+    private void corner(int k, int dx, int dz, float sin, float cos, int cz) {
+        ri[k] = dx * cos - dz * sin;
+        dj[k] = cz + dx * sin + dz * cos;
+    }
+
+    private void add(int i) {
+        seen[i - from] = frame;
+        list[nlist++] = i;
+    }
+
+    private int cell(ContO conto) {
+        return ((conto.z - minz) / CELL) * cols + (conto.x - minx) / CELL;
+    }
+
+    private void ensure(int size) {
+        if (size > list.length) {
+            int len = Math.max(size, list.length * 2);
+            list = Arrays.copyOf(list, len);
+            prev = Arrays.copyOf(prev, len);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nfm.lit;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Checks that {@link StageGrid#query} never leaves out a stage object the
+ * linear RenderQueue pass would draw. For a few camera poses on real stages,
+ * every static object is drawn with {@link ContO#d} the way the linear pass
+ * offers it, and each one that was drawn (left with a dist) must be in the
+ * grid's list for that pose, which must be in index order. Run from the project root, no display needed.
+ */
+public class StageGridTest {
+
+    private static final int[] STAGES = {1, 10};
+    private static final int CARS = 2;
+    /* camera headings and pitches tried at each checkpoint */
+    private static final int[] HEADINGS = {0, 75, 160, 250};
+    private static final int[] PITCHES = {10, 40};
+    /* the camera is also lifted this far above each checkpoint for a steep view */
+    private static final int LIFT = 3000;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Stage Grid Test ===\n");
+
+        byte[][] modeldata = StageReader.modeldata();
+        BufferedImage image = new BufferedImage(GameFacts.screenWidth, GameFacts.screenHeight,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D rd = image.createGraphics();
+        boolean passed = true;
+        for (int stage : STAGES) {
+            passed &= testStage(rd, modeldata, stage);
+        }
+        rd.dispose();
+        if (passed) {
+            System.out.println("✅ PASS: the grid query holds everything the linear pass draws");
+        } else {
+            System.exit(1);
+        }
+    }
+
+    private static boolean testStage(Graphics2D rd, byte[][] modeldata, int stage) throws IOException {
+        new Medium();
+        Trackers trackers = new Trackers();
+        ContO[] models = new ContO[modeldata.length];
+        for (int i = 0; i < modeldata.length; i++) {
+            if (modeldata[i] != null) {
+                models[i] = new ContO(modeldata[i], trackers);
+            }
+        }
+        trackers.nt = 0;
+        trackers.index();
+        ContO[] conto = new ContO[StageConfig.MAX_OBJECTS];
+        CheckPoints checkpoints = new CheckPoints();
+        checkpoints.stage = stage;
+        StageReader stagereader = new StageReader(null, CARS);
+        String stagefile = StageConfig.STAGE_DIR + "nfm2/" + stage + ".txt";
+        try (BufferedReader in = new BufferedReader(new FileReader(stagefile))) {
+            stagereader.read(in, conto, models, trackers, checkpoints);
+        }
+        trackers.index();
+        int nob = stagereader.nob;
+        StageGrid grid = new StageGrid();
+        grid.build(conto, CARS, nob);
+
+        int poses = 0;
+        int drawn = 0;
+        int listed = 0;
+        int missed = 0;
+        int unordered = 0;
+        for (int c = 0; c < Math.min(checkpoints.n, 4); c++) {
+            for (int lift = 0; lift <= LIFT; lift += LIFT) {
+                for (int heading : HEADINGS) {
+                    for (int pitch : PITCHES) {
+                        Medium.x = checkpoints.x[c] - Medium.cx;
+                        Medium.z = checkpoints.z[c] - Medium.cz;
+                        Medium.y = checkpoints.y[c] - 250 - lift - Medium.cy;
+                        Medium.xz = heading;
+                        Medium.zy = lift != 0 ? pitch + 30 : pitch;
+                        int m = grid.query(conto);
+                        int[] list = grid.list();
+                        for (int k = 1; k < m; k++) {
+                            if (list[k] <= list[k - 1]) {
+                                unordered++;
+                            }
+                        }
+                        for (int i = CARS; i < nob; i++) {
+                            conto[i].d(rd);
+                            if (conto[i].dist == 0) {
+                                continue;
+                            }
+                            drawn++;
+                            boolean found = false;
+                            for (int k = 0; k < m && !found; k++) {
+                                found = list[k] == i;
+                            }
+                            if (!found) {
+                                missed++;
+                                System.out.println("   object " + i + " drawn but not in the query at checkpoint " + c
+                                        + ", heading " + heading + ", pitch " + Medium.zy + ", lift " + lift);
+                            }
+                        }
+                        listed += m;
+                        poses++;
+                    }
+                }
+            }
+        }
+
+        System.out.println("Stage " + stage + ": " + (nob - CARS) + " objects, " + poses + " poses");
+        System.out.println("   drawn by the linear pass: " + drawn + ", in the grid queries: " + listed);
+        if (drawn == 0) {
+            System.out.println("❌ FAIL: nothing was drawn, so nothing was tested");
+            return false;
+        }
+        if (unordered != 0) {
+            System.out.println("❌ FAIL: " + unordered + " grid query entries were out of index order");
+            return false;
+        }
+        if (missed != 0) {
+            System.out.println("❌ FAIL: " + missed + " drawn objects were missing from the grid query");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,345 @@
+package nfm.lit;
+
+/**
+ * What the AI and {@link Madness#drive} look up about a stage's checkpoints
+ * and fix points, worked out once when the stage is read (see
+ * {@link CheckPoints#index}) instead of by scanning every checkpoint for
+ * every car on every tick. Distances are in the same hundredths
+ * and squared form as {@link Utility#py} on coordinates divided by 100, and
+ * ties go to the lowest checkpoint, so every answer is the one the old scans
+ * gave.
+ */
+class StageNav {
+    /* fix point grid cells are this wide, and a fix point is filed in every cell within REACH of it */
+    private static final int CELL = 4096;
+    /* further than any car that Madness.drive counts as in a fix hoop */
+    private static final int REACH = 1000;
+    private static final int[] NONE = new int[0];
+
+    /* for each checkpoint, how many real checkpoints (typ > 0) come before it */
+    private final int[] rank;
+    /* for each checkpoint, the next real checkpoint after it, round the lap */
+    private final int[] next;
+    /* the real checkpoints, in order */
+    private final int[] real;
+    /* every checkpoint, sorted by x */
+    private final int[] cpx;
+    private final int[] cpz;
+    private final int[] cpid;
+    /* the hoops (typ -4), in checkpoint order */
+    private final int[] hoops;
+    /* for each fix point, the nearest checkpoint of any type */
+    private final int[] fixnear;
+    /* the ramps and hoops (typ -2 and -4) outside 50 to 54, sorted by x */
+    private final int[] rampx;
+    private final int[] rampz;
+    private final int[] rampid;
+    /* the fix points near each grid cell, row by row from gx, gz */
+    private final int[][] cells;
+    private final int gx;
+    private final int gz;
+    private final int cols;
+    private final int rows;
+
+    StageNav(CheckPoints checkpoints) {
+        int n = checkpoints.n;
+        rank = new int[n];
+        int nreal = 0;
+        int nhoops = 0;
+        int nramps = 0;
+        for (int i = 0; i < n; i++) {
+            rank[i] = nreal;
+            int typ = checkpoints.typ[i];
+            if (typ > 0) {
+                nreal++;
+            }
+            if (typ == -4) {
+                nhoops++;
+            }
+            if ((typ == -2 || typ == -4) && (i < 50 || i > 54)) {
+                nramps++;
+            }
+        }
+        next = new int[n];
+        int after = -1;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = n - 1; i >= 0; i--) {
+                next[i] = after;
+                if (checkpoints.typ[i] > 0) {
+                    after = i;
+                }
+            }
+        }
+        real = new int[nreal];
+        cpx = new int[n];
+        cpz = new int[n];
+        cpid = new int[n];
+        hoops = new int[nhoops];
+        rampx = new int[nramps];
+        rampz = new int[nramps];
+        rampid = new int[nramps];
+        nreal = 0;
+        nhoops = 0;
+        nramps = 0;
+        for (int i = 0; i < n; i++) {
+            int typ = checkpoints.typ[i];
+            if (typ > 0) {
+                real[nreal++] = i;
+            }
+            /* insertion by x, keeping checkpoint order among equal x */
+            int c = i;
+            int cx = checkpoints.x[i] / 100;
+            while (c > 0 && cpx[c - 1] > cx) {
+                cpx[c] = cpx[c - 1];
+                cpz[c] = cpz[c - 1];
+                cpid[c] = cpid[c - 1];
+                c--;
+            }
+            cpx[c] = cx;
+            cpz[c] = checkpoints.z[i] / 100;
+            cpid[c] = i;
+            if (typ == -4) {
+                hoops[nhoops++] = i;
+            }
+            if ((typ == -2 || typ == -4) && (i < 50 || i > 54)) {
+                /* insertion by x, keeping checkpoint order among equal x */
+                int k = nramps++;
+                int x = checkpoints.x[i] / 100;
+                while (k > 0 && rampx[k - 1] > x) {
+                    rampx[k] = rampx[k - 1];
+                    rampz[k] = rampz[k - 1];
+                    rampid[k] = rampid[k - 1];
+                    k--;
+                }
+                rampx[k] = x;
+                rampz[k] = checkpoints.z[i] / 100;
+                rampid[k] = i;
+            }
+        }
+        fixnear = new int[checkpoints.fn];
+        for (int j = 0; j < checkpoints.fn; j++) {
+            int best = -10;
+            for (int i = 0; i < n; i++) {
+                int d = Utility.py(checkpoints.fx[j] / 100, checkpoints.x[i] / 100, checkpoints.fz[j] / 100,
+                        checkpoints.z[i] / 100);
+                if (d < best || best == -10) {
+                    best = d;
+                    fixnear[j] = i;
+                }
+            }
+        }
+        int minx = 0;
+        int maxx = 0;
+        int minz = 0;
+        int maxz = 0;
+        for (int j = 0; j < checkpoints.fn; j++) {
+            int fx = Math.floorDiv(checkpoints.fx[j], CELL);
+            int fz = Math.floorDiv(checkpoints.fz[j], CELL);
+            if (j == 0 || fx < minx) {
+                minx = fx;
+            }
+            if (j == 0 || fx > maxx) {
+                maxx = fx;
+            }
+            if (j == 0 || fz < minz) {
+                minz = fz;
+            }
+            if (j == 0 || fz > maxz) {
+                maxz = fz;
+            }
+        }
+        gx = minx - 1;
+        gz = minz - 1;
+        cols = checkpoints.fn == 0 ? 0 : maxx - minx + 3;
+        rows = checkpoints.fn == 0 ? 0 : maxz - minz + 3;
+        int[] count = new int[cols * rows];
+        int[][] grid = null;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int j = 0; j < checkpoints.fn; j++) {
+                int x0 = Math.floorDiv(checkpoints.fx[j] - REACH, CELL) - gx;
+                int x1 = Math.floorDiv(checkpoints.fx[j] + REACH, CELL) - gx;
+                int z0 = Math.floorDiv(checkpoints.fz[j] - REACH, CELL) - gz;
+                int z1 = Math.floorDiv(checkpoints.fz[j] + REACH, CELL) - gz;
+                for (int cz = z0; cz <= z1; cz++) {
+                    for (int cx = x0; cx <= x1; cx++) {
+                        int cell = cz * cols + cx;
+                        if (pass == 0) {
+                            count[cell]++;
+                        } else {
+                            grid[cell][count[cell]++] = j;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                grid = new int[cols * rows][];
+                for (int cell = 0; cell < grid.length; cell++) {
+                    grid[cell] = count[cell] == 0 ? NONE : new int[count[cell]];
+                    count[cell] = 0;
+                }
+            }
+        }
+        cells = grid;
+    }
+
+    /** Number of real checkpoints (typ > 0) before checkpoint {@code i}. */
+    int rank(int i) {
+        return rank[i];
+    }
+
+    /**
+     * The next real checkpoint after checkpoint {@code i}, wrapping round the
+     * lap, or -1 if the stage has none. {@code i} may be -1 for the start.
+     */
+    int next(int i) {
+        if (next.length == 0) {
+            return -1;
+        }
+        return next[i < 0 ? next.length - 1 : i];
+    }
+
+    /** Number of real checkpoints (typ > 0) in the stage. */
+    int reals() {
+        return real.length;
+    }
+
+    /** The {@code k}th real checkpoint, counting from 0. */
+    int real(int k) {
+        return real[k];
+    }
+
+    /**
+     * The checkpoint {@link Madness#drive} points a car at: the nearest to
+     * {@code x, z}, with the distance to checkpoints before {@code split}
+     * multiplied by {@code weight}, ties going to the lowest. The old scan
+     * took whatever came next after a checkpoint the car was on top of
+     * (distance 0 in hundredths), so only checkpoints after the last such one
+     * count. Returns 0 if the stage has no checkpoints.
+     */
+    int point(int x, int z, int split, int weight) {
+        if (cpx.length == 0) {
+            return 0;
+        }
+        x /= 100;
+        z /= 100;
+        int lo = lower(cpx, x);
+        int on = -1;
+        for (int k = lo; k < cpx.length && cpx[k] == x; k++) {
+            if (cpz[k] == z && cpid[k] > on) {
+                on = cpid[k];
+            }
+        }
+        if (on == cpx.length - 1) {
+            return on;
+        }
+        int best = -1;
+        int bestd = 0;
+        for (int k = lo; k < cpx.length; k++) {
+            int dx = cpx[k] - x;
+            if (best != -1 && dx * dx > bestd) {
+                break;
+            }
+            if (cpid[k] > on) {
+                int d = (dx * dx + (cpz[k] - z) * (cpz[k] - z)) * (cpid[k] < split ? weight : 1);
+                if (best == -1 || d < bestd || d == bestd && cpid[k] < best) {
+                    best = cpid[k];
+                    bestd = d;
+                }
+            }
+        }
+        for (int k = lo - 1; k >= 0; k--) {
+            int dx = x - cpx[k];
+            if (best != -1 && dx * dx > bestd) {
+                break;
+            }
+            if (cpid[k] > on) {
+                int d = (dx * dx + (cpz[k] - z) * (cpz[k] - z)) * (cpid[k] < split ? weight : 1);
+                if (best == -1 || d < bestd || d == bestd && cpid[k] < best) {
+                    best = cpid[k];
+                    bestd = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The fix points that could be near {@code x, z}, in order: every fix
+     * point a car there might be touching, and some it is not. Do not change
+     * the array.
+     */
+    int[] fixes(int x, int z) {
+        int cx = Math.floorDiv(x, CELL) - gx;
+        int cz = Math.floorDiv(z, CELL) - gz;
+        if (cx < 0 || cx >= cols || cz < 0 || cz >= rows) {
+            return NONE;
+        }
+        return cells[cz * cols + cx];
+    }
+
+    int hoops() {
+        return hoops.length;
+    }
+
+    /** The {@code k}th hoop (typ -4), in checkpoint order. */
+    int hoop(int k) {
+        return hoops[k];
+    }
+
+    /** The checkpoint nearest to fix point {@code j}. */
+    int fixnear(int j) {
+        return fixnear[j];
+    }
+
+    /**
+     * The ramp or hoop (typ -2 or -4, leaving out checkpoints 50 to 54)
+     * nearest to {@code x, z}, or -1 if there are none. Works out from the
+     * point's place in the x order and stops each way once x alone is further
+     * than the best so far.
+     */
+    int nearestRamp(int x, int z) {
+        x /= 100;
+        z /= 100;
+        int lo = lower(rampx, x);
+        int best = -1;
+        int bestd = 0;
+        for (int k = lo; k < rampx.length; k++) {
+            int dx = rampx[k] - x;
+            if (best != -1 && dx * dx > bestd) {
+                break;
+            }
+            int d = dx * dx + (rampz[k] - z) * (rampz[k] - z);
+            if (best == -1 || d < bestd || d == bestd && rampid[k] < best) {
+                best = rampid[k];
+                bestd = d;
+            }
+        }
+        for (int k = lo - 1; k >= 0; k--) {
+            int dx = x - rampx[k];
+            if (best != -1 && dx * dx > bestd) {
+                break;
+            }
+            int d = dx * dx + (rampz[k] - z) * (rampz[k] - z);
+            if (best == -1 || d < bestd || d == bestd && rampid[k] < best) {
+                best = rampid[k];
+                bestd = d;
+            }
+        }
+        return best;
+    }
+
+    /* the first place in sorted xs that is not below x */
+    private static int lower(int[] xs, int x) {
+        int lo = 0;
+        int hi = xs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,524 @@
+package nfm.lit;
+
+import fallk.logmaster.HLogger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads data/models.radq and the stage files into models, stage objects,
+ * checkpoints and tracker boxes. Used by GameSparker's loadbase and
+ * loadstage and by {@link HeadlessRace}.
+ * <p>
+ * With {@code scenery} off only what the race needs is read: the sky, fog,
+ * ground, clouds and detail lines that set Medium, the XtGraphics stage
+ * flags and the soundtrack are skipped, so several stages can be read at
+ * once on different threads without a window.
+ */
+public class StageReader {
+    public static final String[] carModels = EnhancedCarSystem.ENHANCED_CAR_MODELS;
+    public static final String[] trackModels = StageConfig.TRACK_MODELS;
+    public static final String[] extraModels = {};
+
+    /* ground level every stage is built on, as Medium.ground at load */
+    private static final int ground = 250;
+
+    private final boolean scenery;
+    private final XtGraphics xt;
+
+    public int nob;
+    public int notb = 0;
+    public int noboffset = 10;      //this makes it so IDs are offset correctly, can be modified by stage via idoffset(x)
+    /* stage ids count track pieces from noboffset, the models from the end of the cars */
+    public int nobfix = carModels.length - noboffset;
+    public String wallmodel = "thewall";
+    public boolean reverseYRot = false;
+    /* stage bounds from the maxr, maxl, maxt and maxb walls */
+    public int rwall = 0;
+    public int lwall = 100;
+    public int twall = 0;
+    public int bwall = 100;
+
+    /**
+     * @param xt the game's XtGraphics, whose stage flags the stage sets, or
+     *           null to read without scenery
+     * @param nob index the stage objects start at, after the cars
+     */
+    public StageReader(XtGraphics xt, int nob) {
+        this.xt = xt;
+        this.scenery = xt != null;
+        this.nob = nob;
+    }
+
+    /**
+     * @param input name of model you want id of
+     * @return Position on model in array. If you spelled it wrong or if it doesn't
+     *         eist, it returns -1, so you have that to look forward to.
+     * @author Kaffeinated
+     */
+    public static int model(String input) {
+
+        String[][] allModels = new String[][] {
+                carModels, trackModels, extraModels
+        }; /// need to have all the model arrays here
+
+        int modelId = 0;
+
+        for (int i = 0; i < allModels.length; i++) {
+            for (int j = 0; j < allModels[i].length; j++) {
+                if (Objects.equals(input, allModels[i][j])) {
+                    int addWhat = 0;
+                    if (i == 1) {
+                        addWhat = carModels.length;
+                    }
+                    if (i == 2) {
+                        addWhat = carModels.length + trackModels.length;
+                    }
+                    modelId = j + addWhat;
+                    return modelId;
+                }
+            }
+        }
+        HLogger.warn("No results for getModel | check you're speling and grammer");
+        return -1;
+    }
+
+    /**
+     * Reads the raw model files out of data/models.radq, indexed by model
+     * id: cars, then track pieces, then extras.
+     */
+    public static byte[][] modeldata() throws IOException {
+        byte[][] data = new byte[carModels.length + trackModels.length + extraModels.length][];
+        try (ZipInputStream zipinputstream = new ZipInputStream(new FileInputStream(new File("data/models.radq")))) {
+            ZipEntry zipentry = zipinputstream.getNextEntry();
+            for (; zipentry != null; zipentry = zipinputstream.getNextEntry()) {
+                int modelId = -1;
+
+                final int carCount = carModels.length;
+                final int trackCount = trackModels.length;
+
+                for (int car = 0; car < carModels.length; car++) {
+                    if (zipentry.getName().startsWith(carModels[car])) {
+                        modelId = car;
+                    }
+                }
+
+                for (int track = 0; track < trackModels.length; track++)
+                    if (zipentry.getName().startsWith(trackModels[track]))
+                        modelId = track + carCount;
+
+                for (int extra = 0; extra < extraModels.length; extra++)
+                    if (zipentry.getName().startsWith(extraModels[extra]))
+                        modelId = extra + trackCount + carCount;
+
+                int entireSize = (int) zipentry.getSize();
+                final byte[] modelData;
+
+                if (entireSize <= 0) {
+                    // Size unknown, read into ByteArrayOutputStream first
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int bytesRead;
+                    while ((bytesRead = zipinputstream.read(buffer)) != -1) {
+                        baos.write(buffer, 0, bytesRead);
+                    }
+                    modelData = baos.toByteArray();
+                } else {
+                    // Size known, read directly
+                    modelData = new byte[entireSize];
+                    int unknown1 = 0;
+                    int unknown2;
+                    for (; entireSize > 0; entireSize -= unknown2) {
+                        unknown2 = zipinputstream.read(modelData, unknown1, entireSize);
+                        unknown1 += unknown2;
+                    }
+                }
+                data[modelId] = modelData;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Reads a stage file, placing its objects in {@code conto} from
+     * {@link #nob} on and filling in the checkpoints, indexed for the AI, and
+     * the tracker boxes.
+     * {@code models} holds the models by id, loaded against {@code trackers}.
+     */
+    public void read(BufferedReader in, ContO conto[], ContO models[], Trackers trackers, CheckPoints checkpoints)
+            throws IOException {
+        try {
+            parse(in, conto, models, trackers, checkpoints);
+        } finally {
+            checkpoints.index();
+        }
+    }
+
+    private void parse(BufferedReader in, ContO conto[], ContO models[], Trackers trackers, CheckPoints checkpoints)
+            throws IOException {
+        for (String line; (line = in.readLine()) != null;) {
+            line = line.trim();
+
+            if (scenery) {
+                if (line.startsWith("mountains"))
+                    Medium.mgen = Utility.getint("mountains", line, 0);
+                if (line.startsWith("snap"))
+                    Medium.setSnap(Utility.getint("snap", line, 0), Utility.getint("snap", line, 1),
+                            Utility.getint("snap", line, 2));
+                if (line.startsWith("sky")) {
+                    Medium.setSky(Utility.getint("sky", line, 0), Utility.getint("sky", line, 1),
+                            Utility.getint("sky", line, 2));
+                    xt.snap(checkpoints.stage);
+                }
+                if (line.startsWith("ground"))
+                    Medium.setGround(Utility.getint("ground", line, 0), Utility.getint("ground", line, 1),
+                            Utility.getint("ground", line, 2));
+                if (line.startsWith("polys"))
+                    Medium.setPolys(Utility.getint("polys", line, 0), Utility.getint("polys", line, 1),
+                            Utility.getint("polys", line, 2));
+                if (line.startsWith("fog"))
+                    Medium.setFade(Utility.getint("fog", line, 0), Utility.getint("fog", line, 1),
+                            Utility.getint("fog", line, 2));
+                if (line.startsWith("density"))
+                    Medium.fogd = Utility.getint("density", line, 0);
+                if (line.startsWith("texture")) {
+                    Medium.setTexture(Utility.getint("texture", line, 0), Utility.getint("texture", line, 1),
+                            Utility.getint("texture", line, 2),
+                            Utility.getint("texture", line, 3));
+                }
+                if (line.startsWith("clouds")) {
+                    Medium.setClouds(Utility.getint("clouds", line, 0), Utility.getint("clouds", line, 1),
+                            Utility.getint("clouds", line, 2),
+                            Utility.getint("clouds", line, 3), Utility.getint("clouds", line, 4));
+                }
+                if (line.startsWith("noclouds"))
+                    Medium.noclouds = true;
+                if (line.startsWith("fadefrom")) {
+                    Medium.fadeFrom(Utility.getint("fadefrom", line, 0));
+                    Medium.origfade = Medium.fade[0];
+                }
+                if (line.startsWith("lightson"))
+                    Medium.lightson = true;
+
+                if (line.startsWith("noarrow"))
+                    xt.arrowDisabled = true;
+                if (line.startsWith("nostatus"))
+                    xt.opstatusDisabled = true;
+            }
+
+            if (line.startsWith("idoffset")) {
+                noboffset = Utility.getint("idoffset", line, 0);
+                nobfix = carModels.length - noboffset;
+            }
+
+            if (line.startsWith("yrot")) {
+                reverseYRot = true;
+            }
+
+            if (line.startsWith("set")) {
+                int k1 = Utility.getint("set", line, 0);
+                k1 += nobfix;
+                // compute default Y (ground-height)
+                int yVal = ground - models[k1].grat;
+                int rot = Utility.getint("set", line, 3);
+                // if there *is* a 5th comma-separated value, use that instead
+                String inside = line.substring(line.indexOf('(') + 1, line.lastIndexOf(')'));
+                String[] parts = inside.split("\\s*,\\s*");
+                if (parts.length > 4) {
+                    yVal = Utility.getint("set", line, 4);
+                    if (reverseYRot) {
+                        yVal = Utility.getint("set", line, 3);
+                        rot = Utility.getint("set", line, 4);
+                    }
+                }
+                // now create the object, exactly as before but with our yVal
+                conto[nob] = new ContO(
+                    models[k1],
+                    Utility.getint("set", line, 1),
+                    yVal,
+                    Utility.getint("set", line, 2),
+                    rot
+                );
+            
+                if (line.contains(")p")) {
+                    checkpoints.x[checkpoints.n] = Utility.getint("set", line, 1);
+                    checkpoints.z[checkpoints.n] = Utility.getint("set", line, 2);
+            
+                    // same trick for the checkpoint Y (default=0)
+                    if (parts.length > 4) {
+                        checkpoints.y[checkpoints.n] = Utility.getint("set", line, 4);
+                        if (reverseYRot) {
+                            checkpoints.y[checkpoints.n] = Utility.getint("set", line, 3);
+                        }
+                    } else {
+                        checkpoints.y[checkpoints.n] = 0;
+                    }
+            
+                    checkpoints.typ[checkpoints.n] = 0;
+                    if (line.contains(")pt")) checkpoints.typ[checkpoints.n] = -1;
+                    if (line.contains(")pr")) checkpoints.typ[checkpoints.n] = -2;
+                    if (line.contains(")pl")) checkpoints.typ[checkpoints.n] = -2;
+                    if (line.contains(")po")) checkpoints.typ[checkpoints.n] = -3;
+                    if (line.contains(")ph")) checkpoints.typ[checkpoints.n] = -4;
+            
+                    checkpoints.n++;
+                    notb = nob + 1;
+                }
+                nob++;
+            }
+            if (line.startsWith("wall")) {
+                String modelname = Utility.getstring("wall", line, 0);
+                wallmodel = modelname;
+            }
+            if (line.startsWith("ds:set")) {
+                String modelname = Utility.getstring("ds:set", line, 0);
+                int id = model(modelname);
+                int yVal = ground - models[id].grat;
+            
+                // if there *is* a 5th comma-separated value, use that instead
+                // (splitting only the part inside the parentheses)
+                String inside = line.substring(line.indexOf('(') + 1, line.lastIndexOf(')'));
+                String[] parts = inside.split("\\s*,\\s*");
+                if (parts.length > 4) {
+                    yVal = Utility.getint("ds:set", line, 4);
+                }
+            
+                // now create the object, exactly as before but with our yVal
+                conto[nob] = new ContO(
+                    models[id],
+                    Utility.getint("ds:set", line, 1),
+                    yVal,
+                    Utility.getint("ds:set", line, 2),
+                    Utility.getint("ds:set", line, 3)
+                );
+            
+                if (line.contains(")p")) {
+                    checkpoints.x[checkpoints.n] = Utility.getint("ds:set", line, 1);
+                    checkpoints.z[checkpoints.n] = Utility.getint("ds:set", line, 2);
+            
+                    // same trick for the checkpoint Y (default=0)
+                    if (parts.length > 4) {
+                        checkpoints.y[checkpoints.n] = Utility.getint("ds:set", line, 4);
+                    } else {
+                        checkpoints.y[checkpoints.n] = 0;
+                    }
+            
+                    checkpoints.typ[checkpoints.n] = 0;
+                    if (line.contains(")pt")) checkpoints.typ[checkpoints.n] = -1;
+                    if (line.contains(")pr")) checkpoints.typ[checkpoints.n] = -2;
+                    if (line.contains(")pl")) checkpoints.typ[checkpoints.n] = -2;
+                    if (line.contains(")po")) checkpoints.typ[checkpoints.n] = -3;
+                    if (line.contains(")ph")) checkpoints.typ[checkpoints.n] = -4;
+            
+                    checkpoints.n++;
+                    notb = nob + 1;
+                }
+                nob++;
+            }
+            if (line.startsWith("chk")) {
+                int l1 = Utility.getint("chk", line, 0);
+                l1 += nobfix;
+            
+                // compute default Y (ground-height)
+                int yVal = ground - models[l1].grat;
+                int rot = Utility.getint("chk", line, 3);
+            
+                // grab the args between '(' and ')', split on commas
+                String inside = line.substring(line.indexOf('(') + 1, line.lastIndexOf(')'));
+                String[] parts = inside.split("\\s*,\\s*");
+                // if there's a 5th element, use it as Y instead
+                if (parts.length > 4) {
+                    yVal = Utility.getint("chk", line, 4);
+                    if (reverseYRot) {
+                        yVal = Utility.getint("chk", line, 3);
+                        rot = Utility.getint("chk", line, 4);
+                    }
+                }
+            
+                // create your object exactly as before, but with our yVal
+                conto[nob] = new ContO(
+                    models[l1],
+                    Utility.getint("chk", line, 1),
+                    yVal,
+                    Utility.getint("chk", line, 2),
+                    rot
+                );
+            
+                // now the checkpoint data:
+                checkpoints.x[checkpoints.n] = Utility.getint("chk", line, 1);
+                checkpoints.z[checkpoints.n] = Utility.getint("chk", line, 2);
+                // use the same yVal
+                checkpoints.y[checkpoints.n] = yVal;
+            
+                // type based on rotation-arg logic unchanged
+                if (Utility.getint("chk", line, 3) == 0)
+                    checkpoints.typ[checkpoints.n] = 1;
+                else
+                    checkpoints.typ[checkpoints.n] = 2;
+            
+                checkpoints.pcs = checkpoints.n;
+                checkpoints.n++;
+                conto[nob].checkpoint = checkpoints.nsp + 1;
+                checkpoints.nsp++;
+                nob++;
+                notb = nob;
+            }
+            if (line.startsWith("fix")) {
+                int i2 = Utility.getint("fix", line, 0);
+                i2 += nobfix;
+                conto[nob] = new ContO(models[i2], Utility.getint("fix", line, 1), Utility.getint("fix", line, 3),
+                        Utility.getint("fix", line, 2), Utility.getint("fix", line, 4));
+                checkpoints.fx[checkpoints.fn] = Utility.getint("fix", line, 1);
+                checkpoints.fz[checkpoints.fn] = Utility.getint("fix", line, 2);
+                checkpoints.fy[checkpoints.fn] = Utility.getint("fix", line, 3);
+                conto[nob].elec = true;
+                if (Utility.getint("fix", line, 4) != 0) {
+                    checkpoints.roted[checkpoints.fn] = true;
+                    conto[nob].roted = true;
+                } else {
+                    checkpoints.roted[checkpoints.fn] = false;
+                }
+                checkpoints.special[checkpoints.fn] = line.contains(")s");
+                checkpoints.fn++;
+                nob++;
+                notb = nob;
+            }
+            if (line.startsWith("nlaps"))
+                checkpoints.nlaps = Utility.getint("nlaps", line, 0);
+            if (line.startsWith("name"))
+                checkpoints.name = Utility.getstring("name", line, 0).replace('|', ',');
+            if (scenery && line.startsWith("soundtrack")) {
+                CheckPoints.customTrack = true;
+                CheckPoints.trackname = Utility.getstring("soundtrack", line, 0);
+                CheckPoints.trackformat = Utility.getstring("soundtrack", line, 1);
+                // xtGraphics.sndsize[18] = Utility.getint("soundtrack", string, 2);
+            }
+
+            int wall_id = model(wallmodel);
+
+            if (line.startsWith("maxr")) {
+                int j2 = Utility.getint("maxr", line, 0);
+                int j3 = Utility.getint("maxr", line, 1);
+                rwall = j3;
+                int j4 = Utility.getint("maxr", line, 2);
+                for (int j5 = 0; j5 < j2; j5++) {
+                    conto[nob] = new ContO(models[wall_id], j3, ground - models[wall_id].grat,
+                            j5 * 4800 + j4, 0);
+                    nob++;
+                }
+
+                trackers.y[trackers.nt] = -5000;
+                trackers.rady[trackers.nt] = 7100;
+                trackers.x[trackers.nt] = j3 + 500;
+                trackers.radx[trackers.nt] = 600;
+                trackers.z[trackers.nt] = ((j2 * 4800) / 2 + j4) - 2400;
+                trackers.radz[trackers.nt] = (j2 * 4800) / 2;
+                trackers.xy[trackers.nt] = 90;
+                trackers.zy[trackers.nt] = 0;
+                trackers.dam[trackers.nt] = 1;
+                trackers.nt++;
+            }
+            if (line.startsWith("maxl")) {
+                int k2 = Utility.getint("maxl", line, 0);
+                int k3 = Utility.getint("maxl", line, 1);
+                lwall = k3;
+                int k4 = Utility.getint("maxl", line, 2);
+                for (int k5 = 0; k5 < k2; k5++) {
+                    conto[nob] = new ContO(models[wall_id], k3, ground - models[wall_id].grat,
+                            k5 * 4800 + k4, 0);
+                    nob++;
+                }
+
+                trackers.y[trackers.nt] = -5000;
+                trackers.rady[trackers.nt] = 7100;
+                trackers.x[trackers.nt] = k3 - 500;
+                trackers.radx[trackers.nt] = 600;
+                trackers.z[trackers.nt] = ((k2 * 4800) / 2 + k4) - 2400;
+                trackers.radz[trackers.nt] = (k2 * 4800) / 2;
+                trackers.xy[trackers.nt] = -90;
+                trackers.zy[trackers.nt] = 0;
+                trackers.dam[trackers.nt] = 1;
+                trackers.nt++;
+            }
+
+            if (line.startsWith("maxt")) {
+                int l2 = Utility.getint("maxt", line, 0);
+                int l3 = Utility.getint("maxt", line, 1);
+                twall = l3;
+                int l4 = Utility.getint("maxt", line, 2);
+                for (int l5 = 0; l5 < l2; l5++) {
+                    conto[nob] = new ContO(models[wall_id], l5 * 4800 + l4, ground - models[wall_id].grat,
+                            l3, 90);
+                    nob++;
+                }
+
+                trackers.y[trackers.nt] = -5000;
+                trackers.rady[trackers.nt] = 7100;
+                trackers.z[trackers.nt] = l3 + 500;
+                trackers.radz[trackers.nt] = 600;
+                trackers.x[trackers.nt] = ((l2 * 4800) / 2 + l4) - 2400;
+                trackers.radx[trackers.nt] = (l2 * 4800) / 2;
+                trackers.zy[trackers.nt] = 90;
+                trackers.xy[trackers.nt] = 0;
+                trackers.dam[trackers.nt] = 1;
+                trackers.nt++;
+            }
+            if (line.startsWith("maxb")) {
+                int i3 = Utility.getint("maxb", line, 0);
+                int i4 = Utility.getint("maxb", line, 1);
+                bwall = i4;
+                int i5 = Utility.getint("maxb", line, 2);
+                for (int i6 = 0; i6 < i3; i6++) {
+                    conto[nob] = new ContO(models[wall_id], i6 * 4800 + i5, ground - models[wall_id].grat,
+                            i4, 90);
+                    nob++;
+                }
+
+                trackers.y[trackers.nt] = -5000;
+                trackers.rady[trackers.nt] = 7100;
+                trackers.z[trackers.nt] = i4 - 500;
+                trackers.radz[trackers.nt] = 600;
+                trackers.x[trackers.nt] = ((i3 * 4800) / 2 + i5) - 2400;
+                trackers.radx[trackers.nt] = (i3 * 4800) / 2;
+                trackers.zy[trackers.nt] = -90;
+                trackers.xy[trackers.nt] = 0;
+                trackers.dam[trackers.nt] = 1;
+                trackers.nt++;
+            }
+            if (scenery && line.startsWith("detail")) {
+                Medium.detailtype = Utility.getint("detail", line, 0);
+            }
+        }
+    }
+
+    /**
+     * Puts the cars on the starting grid, car {@code i} as model
+     * {@code sc[i]}, and resets their Madness.
+     */
+    public static void grid(ContO conto[], ContO models[], int sc[], Madness madness[], CheckPoints checkpoints,
+                            int cars) {
+        EnhancedCarSystem.GridPosition[] grid = EnhancedCarSystem.generateGridPositions();
+        int j1 = 0;
+        do {
+            // Only allow car model indices (0..ENHANCED_CAR_MODELS.length-1) for player and AI
+            int carModelIdx = sc[j1];
+            if (carModelIdx >= 0 && carModelIdx < EnhancedCarSystem.ENHANCED_CAR_MODELS.length) {
+                // Use enhanced grid positioning system
+                EnhancedCarSystem.GridPosition pos = grid[j1];
+                conto[j1] = new ContO(models[carModelIdx], pos.x, ground - models[carModelIdx].grat, pos.y, 0);
+                madness[j1].reseto(carModelIdx, conto[j1], checkpoints);
+            } else {
+                // fallback: use first car model if index is out of range
+                EnhancedCarSystem.GridPosition pos = grid[j1];
+                conto[j1] = new ContO(models[0], pos.x, ground - models[0].grat, pos.y, 0);
+                madness[j1].reseto(0, conto[j1], checkpoints);
+            }
+        } while (++j1 < cars);
+    }
+}
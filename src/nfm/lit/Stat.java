@@ -78,16 +78,16 @@ public class Stat {
         lift = EnhancedStatList.ENHANCED_LIFT[car];
         maxmag = EnhancedStatList.ENHANCED_MAXMAG[car];
         moment = EnhancedStatList.ENHANCED_MOMENT[car];
-        msquash = StatList.msquash[car];
-        powerloss = StatList.powerloss[car];
-        push = StatList.push[car];
-        revlift = StatList.revlift[car];
-        revpush = StatList.revpush[car];
-        turn = StatList.turn[car];
-        simag = StatList.simag[car];
-        outdam = StatList.outdam[car];
-        dishandle = StatList.dishandle[car];
-        engine = StatList.engine[car];
+        msquash = EnhancedStatList.ENHANCED_MSQUASH[car];
+        powerloss = EnhancedStatList.ENHANCED_POWERLOSS[car];
+        push = EnhancedStatList.ENHANCED_PUSH[car];
+        revlift = EnhancedStatList.ENHANCED_REVLIFT[car];
+        revpush = EnhancedStatList.ENHANCED_REVPUSH[car];
+        turn = EnhancedStatList.ENHANCED_TURN[car];
+        simag = EnhancedStatList.ENHANCED_SIMAG[car];
+        outdam = EnhancedStatList.ENHANCED_OUTDAM[car];
+        dishandle = EnhancedStatList.ENHANCED_DISHANDLE[car];
+        engine = EnhancedStatList.ENHANCED_ENGINE[car];
     }
 
     public Stat(){
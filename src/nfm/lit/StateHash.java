@@ -0,0 +1,143 @@
+package nfm.lit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * One 64-bit hash of every car per tick, so two runs of the same race can be
+ * compared tick by tick instead of diffing state dumps. The hash covers what
+ * the race is decided by: each car's position and rotation, velocity and
+ * speed, damage, and checkpoint progress. Two runs that agree on every hash
+ * ran the same race; {@link #diverge} finds the first tick they did not.
+ * <p>
+ * Logs are saved as a plain run of longs, one per tick. Compare two from the
+ * project root with {@code StateHash <a> <b>}.
+ */
+public class StateHash {
+    private long[] ticks = new long[1024];
+    private int n = 0;
+    /* ticks already written by save */
+    private int saved = 0;
+
+    /** Hashes cars {@code 0} to {@code count - 1} as they are now. */
+    public static long hash(Madness[] madness, ContO[] conto, int count) {
+        long h = count;
+        for (int i = 0; i < count; i++) {
+            Madness m = madness[i];
+            ContO c = conto[i];
+            h = mix(h, c.x);
+            h = mix(h, c.y);
+            h = mix(h, c.z);
+            h = mix(h, c.xz);
+            h = mix(h, c.xy);
+            h = mix(h, c.zy);
+            h = mix(h, Float.floatToIntBits(m.speed));
+            for (int k = 0; k < 4; k++) {
+                h = mix(h, Float.floatToIntBits(m.scx[k]));
+                h = mix(h, Float.floatToIntBits(m.scy[k]));
+                h = mix(h, Float.floatToIntBits(m.scz[k]));
+            }
+            h = mix(h, m.mxz);
+            h = mix(h, m.pxy);
+            h = mix(h, m.pzy);
+            h = mix(h, m.hitmag);
+            h = mix(h, m.squash);
+            h = mix(h, m.cntdest);
+            h = mix(h, m.dest ? 1 : 0);
+            h = mix(h, Float.floatToIntBits(m.power));
+            h = mix(h, m.pcleared);
+            h = mix(h, m.clear);
+            h = mix(h, m.cn);
+        }
+        return h;
+    }
+
+    private static long mix(long h, int v) {
+        return Long.rotateLeft(h ^ (v * 0x9e3779b97f4a7c15L), 29) * 0xbf58476d1ce4e5b9L;
+    }
+
+    public void add(long hash) {
+        if (n == ticks.length) {
+            ticks = Arrays.copyOf(ticks, n * 2);
+        }
+        ticks[n++] = hash;
+    }
+
+    /** Forgets every tick, for a new race. */
+    public void clear() {
+        n = 0;
+        saved = 0;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public long get(int tick) {
+        return ticks[tick];
+    }
+
+    /**
+     * Returns the first tick on which {@code a} and {@code b} differ, or -1
+     * if they agree. If one log is only longer, that is the tick the shorter
+     * one ends on.
+     */
+    public static int diverge(StateHash a, StateHash b) {
+        int k = Math.min(a.n, b.n);
+        for (int i = 0; i < k; i++) {
+            if (a.ticks[i] != b.ticks[i]) {
+                return i;
+            }
+        }
+        return a.n == b.n ? -1 : k;
+    }
+
+    /** Writes the log to {@code file}, unless nothing was added since the last save. */
+    public void save(String file) throws IOException {
+        if (saved == n) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int i = 0; i < n; i++) {
+                out.writeLong(ticks[i]);
+            }
+        }
+        saved = n;
+    }
+
+    public static StateHash load(String file) throws IOException {
+        StateHash log = new StateHash();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                log.add(in.readLong());
+            }
+        } catch (EOFException e) {
+            // end of log
+        }
+        log.saved = log.n;
+        return log;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: StateHash <a> <b>");
+            return;
+        }
+        StateHash a = load(args[0]);
+        StateHash b = load(args[1]);
+        int tick = diverge(a, b);
+        if (tick == -1) {
+            System.out.println("Same: " + a.size() + " ticks");
+        } else {
+            System.out.println("Diverged at tick " + tick + " of " + a.size() + " and " + b.size());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package nfm.lit;
+
+/**
+ * Fixed-rate clock for the INGAME loop (see {@link SimConfig#FIXED_STEP}).
+ * Real time is gathered into an accumulator and paid out in whole ticks of
+ * {@link SimConfig#TICK_MS}, so the race runs at the same speed however long
+ * a frame takes to draw. Frames that fall between two ticks draw the cars
+ * and the camera part way from the state before the last tick to the state
+ * after it. Drawing a car also moves state the race reads (its on-screen
+ * distance and fix hoop count), so those frames put that back as well, and
+ * ticks run without a frame use {@link ContO#look} in its place.
+ */
+public class TickClock {
+    /* ticks run in one frame before the rest of the backlog is dropped */
+    private static final int MAX_CATCHUP = 5;
+
+    private final long tick;
+    private final long frame;
+    private boolean running = false;
+    private long last = 0L;
+    private long acc = 0L;
+
+    /* car transforms and camera before and after the last tick */
+    private ContO[] prevobj = new ContO[0];
+    private int[][] prev = new int[0][];
+    private int[][] cur = new int[0][];
+    /* dist, fcnt and fix of each car before a frame between ticks */
+    private int[][] kept = new int[0][];
+    private final int[] prevcam = new int[5];
+    private final int[] curcam = new int[5];
+
+    public TickClock(int tickms, int framems) {
+        tick = tickms * 1000000L;
+        frame = framems * 1000000L;
+    }
+
+    /**
+     * Returns the number of ticks to run this frame. The first frame after
+     * {@link #stop} runs one at once. Unless {@code catchup} only one tick is
+     * run and any further backlog is dropped.
+     */
+    public int due(boolean catchup) {
+        long now = System.nanoTime();
+        if (!running) {
+            running = true;
+            last = now;
+            acc = tick;
+        }
+        acc += now - last;
+        last = now;
+        int n = (int) (acc / tick);
+        int max = catchup ? MAX_CATCHUP : 1;
+        if (n > max) {
+            acc %= tick;
+            acc += max * tick;
+            n = max;
+        }
+        acc -= n * tick;
+        return n;
+    }
+
+    /**
+     * Milliseconds to sleep until the next tick or frame is due, rounded up
+     * so that waking early does not draw a frame more.
+     */
+    public long sleep() {
+        long wait = Math.min(tick - acc, frame) - (System.nanoTime() - last);
+        if (wait < 1000000L) {
+            return 1L;
+        }
+        return (wait + 999999L) / 1000000L;
+    }
+
+    /** Forgets the accumulated time, for when the loop leaves INGAME. */
+    public void stop() {
+        running = false;
+    }
+
+    /** Remembers the cars and camera as they are before a tick. */
+    public void save(ContO[] conto, int n) {
+        if (prev.length < n) {
+            prevobj = new ContO[n];
+            prev = new int[n][8];
+            cur = new int[n][8];
+            kept = new int[n][3];
+        }
+        for (int i = 0; i < n; i++) {
+            prevobj[i] = conto[i];
+            get(conto[i], prev[i]);
+        }
+        getcam(prevcam);
+    }
+
+    /**
+     * Moves the cars and camera to where they were {@code alpha} of the way
+     * through the last tick. Cars that were swapped for another ContO during
+     * the tick are left where they are. Undo with {@link #restore}.
+     */
+    public void blend(ContO[] conto, int n) {
+        blend(conto, n, Math.min(1.0F, (float) acc / tick));
+    }
+
+    /** {@link #blend(ContO[], int)} at {@code alpha} of the way through the tick. */
+    public void blend(ContO[] conto, int n, float alpha) {
+        for (int i = 0; i < n; i++) {
+            get(conto[i], cur[i]);
+            kept[i][0] = conto[i].dist;
+            kept[i][1] = conto[i].fcnt;
+            kept[i][2] = conto[i].fix ? 1 : 0;
+            if (prevobj[i] == conto[i]) {
+                ContO c = conto[i];
+                int[] a = prev[i];
+                int[] b = cur[i];
+                c.x = lerp(a[0], b[0], alpha);
+                c.y = lerp(a[1], b[1], alpha);
+                c.z = lerp(a[2], b[2], alpha);
+                c.xz = turn(a[3], b[3], alpha);
+                c.xy = turn(a[4], b[4], alpha);
+                c.zy = turn(a[5], b[5], alpha);
+                c.wxz = turn(a[6], b[6], alpha);
+                c.wzy = turn(a[7], b[7], alpha);
+            }
+        }
+        getcam(curcam);
+        Medium.x = lerp(prevcam[0], curcam[0], alpha);
+        Medium.y = lerp(prevcam[1], curcam[1], alpha);
+        Medium.z = lerp(prevcam[2], curcam[2], alpha);
+        Medium.xz = turn(prevcam[3], curcam[3], alpha);
+        Medium.zy = turn(prevcam[4], curcam[4], alpha);
+    }
+
+    /** Puts back what {@link #blend} moved and what drawing the frame changed that the race reads. */
+    public void restore(ContO[] conto, int n) {
+        for (int i = 0; i < n; i++) {
+            int[] b = cur[i];
+            ContO c = conto[i];
+            c.dist = kept[i][0];
+            c.fcnt = kept[i][1];
+            c.fix = kept[i][2] != 0;
+            c.x = b[0];
+            c.y = b[1];
+            c.z = b[2];
+            c.xz = b[3];
+            c.xy = b[4];
+            c.zy = b[5];
+            c.wxz = b[6];
+            c.wzy = b[7];
+        }
+        Medium.x = curcam[0];
+        Medium.y = curcam[1];
+        Medium.z = curcam[2];
+        Medium.xz = curcam[3];
+        Medium.zy = curcam[4];
+    }
+
+    private static void get(ContO c, int[] t) {
+        t[0] = c.x;
+        t[1] = c.y;
+        t[2] = c.z;
+        t[3] = c.xz;
+        t[4] = c.xy;
+        t[5] = c.zy;
+        t[6] = c.wxz;
+        t[7] = c.wzy;
+    }
+
+    private static void getcam(int[] t) {
+        t[0] = Medium.x;
+        t[1] = Medium.y;
+        t[2] = Medium.z;
+        t[3] = Medium.xz;
+        t[4] = Medium.zy;
+    }
+
+    private static int lerp(int a, int b, float alpha) {
+        return a + Math.round((b - a) * alpha);
+    }
+
+    /* angles in degrees, the short way round */
+    private static int turn(int a, int b, float alpha) {
+        int d = ((b - a) % 360 + 540) % 360 - 180;
+        return a + Math.round(d * alpha);
+    }
+}
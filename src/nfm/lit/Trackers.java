@@ -1,4 +1,7 @@
 package nfm.lit;
+
+import java.util.Arrays;
+
 public class Trackers {
 
     public final int[] x = new int[8700];
@@ -14,4 +17,121 @@ public class Trackers {
     public final int[] radz = new int[8700];
     public final int[] rady = new int[8700];
     public int nt = 0;
+
+    /* uniform grid over the x/z extent of the boxes, see index() */
+    private static final int CELL = 2400;
+    private static final int MAX_CELLS = 256;
+    private int gn = 0;
+    private int gcell = CELL;
+    private int gminx = 0;
+    private int gminz = 0;
+    private int gcols = 0;
+    private int grows = 0;
+    private int[] gstart = new int[1];
+    private int[] gitems = new int[0];
+    private int[] gcol0 = new int[0];
+    private int[] grow0 = new int[0];
+
+    /**
+     * Bins the first {@code nt} boxes into a grid by their x/z extent, for
+     * {@link #near}. Boxes added afterwards are not binned and are always
+     * returned as candidates.
+     */
+    public void index() {
+        gn = nt;
+        if (gn == 0) {
+            gcols = 0;
+            grows = 0;
+            return;
+        }
+        int minx = Integer.MAX_VALUE;
+        int minz = Integer.MAX_VALUE;
+        int maxx = Integer.MIN_VALUE;
+        int maxz = Integer.MIN_VALUE;
+        for (int i = 0; i < gn; i++) {
+            minx = Math.min(minx, x[i] - radx[i]);
+            minz = Math.min(minz, z[i] - radz[i]);
+            maxx = Math.max(maxx, x[i] + radx[i]);
+            maxz = Math.max(maxz, z[i] + radz[i]);
+        }
+        gminx = minx;
+        gminz = minz;
+        gcell = Math.max(CELL, Math.max(maxx - minx, maxz - minz) / MAX_CELLS + 1);
+        gcols = (maxx - minx) / gcell + 1;
+        grows = (maxz - minz) / gcell + 1;
+        gcol0 = new int[gn];
+        grow0 = new int[gn];
+        gstart = new int[gcols * grows + 1];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] fill = pass == 0 ? null : Arrays.copyOf(gstart, gcols * grows);
+            for (int i = 0; i < gn; i++) {
+                int c0 = col(x[i] - radx[i]);
+                int c1 = col(x[i] + radx[i]);
+                int r0 = row(z[i] - radz[i]);
+                int r1 = row(z[i] + radz[i]);
+                gcol0[i] = c0;
+                grow0[i] = r0;
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        if (pass == 0) {
+                            gstart[r * gcols + c + 1]++;
+                        } else {
+                            gitems[fill[r * gcols + c]++] = i;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int c = 0; c < gcols * grows; c++) {
+                    gstart[c + 1] += gstart[c];
+                }
+                gitems = new int[gstart[gcols * grows]];
+            }
+        }
+    }
+
+    /**
+     * Collects into {@code out}, ascending, the ids from {@code from} on of
+     * every box that may overlap the x/z rectangle {@code [x0, x1] x [z0, z1]}.
+     * This is a superset: callers still run their own box tests. {@code out}
+     * must have room for {@code nt} ids.
+     *
+     * @return the number of ids written
+     */
+    public int near(int x0, int z0, int x1, int z1, int from, int[] out) {
+        int k = 0;
+        if (gcols != 0) {
+            int c0 = col(x0);
+            int c1 = col(x1);
+            int r0 = row(z0);
+            int r1 = row(z1);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cell = r * gcols + c;
+                    for (int j = gstart[cell]; j < gstart[cell + 1]; j++) {
+                        int i = gitems[j];
+                        /* a box spanning several cells is reported from the first one the query shares */
+                        if (i >= from && Math.max(gcol0[i], c0) == c && Math.max(grow0[i], r0) == r) {
+                            out[k++] = i;
+                        }
+                    }
+                }
+            }
+            if (r0 != r1 || c0 != c1) {
+                Arrays.sort(out, 0, k);
+            }
+        }
+        for (int i = Math.max(gn, from); i < nt; i++) {
+            out[k++] = i;
+        }
+        return k;
+    }
+
+    private int col(int v) {
+        return Math.min(Math.max((v - gminx) / gcell, 0), gcols - 1);
+    }
+
+    private int row(int v) {
+        return Math.min(Math.max((v - gminz) / gcell, 0), grows - 1);
+    }
 }
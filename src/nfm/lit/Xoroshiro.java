@@ -0,0 +1,74 @@
+package nfm.lit;
+
+/**
+ * Small, fast, seedable random generator (xoroshiro128++), seeded through
+ * splitmix64 so that nearby seeds give unrelated sequences. Not thread safe:
+ * each race, car or stream owns its own.
+ * <p>
+ * A race seed is split into two streams: {@link #SIM} feeds everything the
+ * race outcome depends on (the cars and their AI), {@link #COSMETIC} feeds
+ * what is only drawn (sky, clouds, sparks, dust). Drawing more or fewer
+ * frames then never changes the race, and a race can be replayed exactly
+ * from its seed.
+ */
+public final class Xoroshiro {
+    public static final int SIM = 0;
+    public static final int COSMETIC = 1;
+
+    private long s0;
+    private long s1;
+
+    public Xoroshiro(long seed) {
+        reseed(seed);
+    }
+
+    /** The {@code stream}th stream of {@code seed}, e.g. {@link #SIM}. */
+    public Xoroshiro(long seed, int stream) {
+        reseed(seed + stream * 0x9e3779b97f4a7c15L);
+    }
+
+    public void reseed(long seed) {
+        seed += 0x9e3779b97f4a7c15L;
+        s0 = mix(seed);
+        seed += 0x9e3779b97f4a7c15L;
+        s1 = mix(seed);
+        if ((s0 | s1) == 0L) {
+            s1 = 1L;
+        }
+    }
+
+    /**
+     * A value from 0 (inclusive) to 1 (exclusive) that depends only on
+     * {@code key}, for jitter that has no generator to draw from.
+     */
+    public static double hash(long key) {
+        return (mix(key * 0x9e3779b97f4a7c15L) >>> 11) * 0x1.0p-53;
+    }
+
+    /* splitmix64 finaliser */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        long a = s0;
+        long b = s1;
+        long r = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return r;
+    }
+
+    /** From 0 (inclusive) to {@code bound} (exclusive). */
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /** From 0 (inclusive) to 1 (exclusive), a drop-in for Math.random. */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
@@ -15,7 +15,6 @@ import java.awt.color.ColorSpace;
 import java.awt.image.*;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -29,7 +28,7 @@ import java.util.zip.ZipInputStream;
  * @author Omar Waly
  * @author Jacherr
  */
-public class XtGraphics extends Panel implements Runnable {
+public class XtGraphics extends Panel implements Runnable, CarSounds {
     private CheckPoints stageSelectCheckpoints = null;
     /**
      *
@@ -1670,6 +1669,14 @@ public class XtGraphics extends Panel implements Runnable {
         }
     }
 
+    @Override
+    public void carfixed() {
+        if (!mutes) {
+            sm.play("carfixed");
+        }
+    }
+
+    @Override
     public void crash(float f, int i) {
         if (bfcrash == 0) {
             if (i == 0) {
@@ -3382,7 +3389,7 @@ public class XtGraphics extends Panel implements Runnable {
                 // have to ignore the duplicates here
                 while (sc[j] > GameFacts.numberOfCars - 1) {
                     HLogger.error("Car " + j + " is out of bounds");
-                    sc[j] -= ThreadLocalRandom.current().nextDouble() * 5F;
+                    sc[j] -= Medium.fx.nextDouble() * 5F;
                 }
                 // HLogger.info("sc of " + j + " is " + sc[j]);
             }
@@ -4745,6 +4752,7 @@ public class XtGraphics extends Panel implements Runnable {
         rd.drawImage(rpro, Utility.centeredImageX(rpro), 240, null);
     }
 
+    @Override
     public void skid(int i, float f) {
         if (bfcrash == 0 && bfskid == 0 && f > 150F) {
             if (i == 0) {